@@ -0,0 +1,129 @@
+package org.mcmonkey.sentinel.benchmark;
+
+import net.citizensnpcs.api.CitizensPlugin;
+import net.citizensnpcs.api.npc.NPC;
+import net.citizensnpcs.api.npc.NPCRegistry;
+import org.bukkit.entity.EntityType;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * A fake Citizens plugin with a single in-memory NPC registry (nothing is ever saved).
+ */
+public class FakeCitizens extends FakeHandler {
+
+    /**
+     * All registered NPCs.
+     */
+    public ArrayList<FakeNPC> npcs = new ArrayList<>();
+
+    public int nextId = 0;
+
+    public Object registryProxy;
+
+    public FakeCitizens() {
+        createProxy(CitizensPlugin.class);
+        registryProxy = new FakeHandler() {
+            @Override
+            public Object handle(String name, Method method, Object[] args) {
+                return handleRegistry(name, args);
+            }
+
+            @Override
+            public String describe() {
+                return "FakeNPCRegistry";
+            }
+        }.createProxy(NPCRegistry.class);
+    }
+
+    /**
+     * Creates and registers a new (unspawned) NPC.
+     */
+    public FakeNPC createNPC(EntityType type, String name) {
+        FakeNPC npc = new FakeNPC(this, nextId++, type, name);
+        npcs.add(npc);
+        return npc;
+    }
+
+    /**
+     * Gets the NPC that owns an entity, or null.
+     */
+    public FakeNPC getNPC(Object entity) {
+        FakeEntity fake = FakeEntity.of(entity);
+        return fake == null ? null : fake.npc;
+    }
+
+    private Object handleRegistry(String name, Object[] args) {
+        switch (name) {
+            case "isNPC":
+                return getNPC(args[0]) != null;
+            case "getNPC": {
+                FakeNPC npc = getNPC(args[0]);
+                return npc == null ? null : npc.proxy;
+            }
+            case "getById":
+                for (FakeNPC npc : npcs) {
+                    if (npc.id == (Integer) args[0]) {
+                        return npc.proxy;
+                    }
+                }
+                return null;
+            case "getByUniqueId":
+            case "getByUniqueIdGlobal":
+                for (FakeNPC npc : npcs) {
+                    if (npc.uuid.equals(args[0])) {
+                        return npc.proxy;
+                    }
+                }
+                return null;
+            case "createNPC":
+                for (Object arg : args) {
+                    if (arg instanceof EntityType) {
+                        return createNPC((EntityType) arg, (String) args[args.length - 1]).proxy;
+                    }
+                }
+                break;
+            case "deregister":
+                ((NPC) args[0]).destroy();
+                return null;
+            case "deregisterAll":
+                for (FakeNPC npc : new ArrayList<>(npcs)) {
+                    npc.destroy();
+                }
+                return null;
+            case "iterator":
+            case "sorted": {
+                ArrayList<NPC> result = new ArrayList<>(npcs.size());
+                for (FakeNPC npc : npcs) {
+                    result.add((NPC) npc.proxy);
+                }
+                return name.equals("iterator") ? result.iterator() : result;
+            }
+            case "getName":
+                return "fake";
+        }
+        return UNHANDLED;
+    }
+
+    @Override
+    public Object handle(String name, Method method, Object[] args) {
+        switch (name) {
+            case "getNPCRegistry":
+                return registryProxy;
+            case "getNPCRegistries":
+                return Collections.singletonList(registryProxy);
+            case "getName":
+                return "Citizens";
+            case "isEnabled":
+                return true;
+        }
+        return UNHANDLED;
+    }
+
+    @Override
+    public String describe() {
+        return "FakeCitizens";
+    }
+}
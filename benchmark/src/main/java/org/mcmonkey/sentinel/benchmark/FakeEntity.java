@@ -0,0 +1,425 @@
+package org.mcmonkey.sentinel.benchmark;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.inventory.EntityEquipment;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.UUID;
+
+/**
+ * A fake living entity: a dynamic proxy of the entity type's Bukkit interface, with position, health, equipment,
+ * and damage/death handling that fires the same Bukkit events a real server would.
+ */
+public class FakeEntity extends FakeHandler {
+
+    /**
+     * The eye height used for every fake entity.
+     */
+    public static final double EYE_HEIGHT = 1.62;
+
+    /**
+     * The next entity ID.
+     */
+    public static int nextEntityId = 1;
+
+    /**
+     * Gets the fake entity backing a proxy, or null if the object is not a fake entity.
+     */
+    public static FakeEntity of(Object entity) {
+        if (entity == null || !Proxy.isProxyClass(entity.getClass())) {
+            return null;
+        }
+        Object handler = Proxy.getInvocationHandler(entity);
+        return handler instanceof FakeEntity ? (FakeEntity) handler : null;
+    }
+
+    public int entityId = nextEntityId++;
+
+    public UUID uuid = UUID.randomUUID();
+
+    public EntityType type;
+
+    public FakeWorld world;
+
+    /**
+     * The current location (never handed out directly, only as clones).
+     */
+    public Location location;
+
+    public Vector velocity = new Vector();
+
+    public double health = 20, maxHealth = 20;
+
+    /**
+     * Damage dealt by a native {@link LivingEntity#attack(Entity)}.
+     */
+    public double attackDamage = 3;
+
+    public boolean dead = false;
+
+    /**
+     * The NPC this is the entity of, or null for a normal mob.
+     */
+    public FakeNPC npc;
+
+    public EntityDamageEvent lastDamageCause;
+
+    /**
+     * The chunk column this entity is indexed under, see {@link FakeWorld#entityMoved(FakeEntity)}.
+     */
+    public long chunkKey;
+
+    /**
+     * The tick this entity last attacked on (for mob attack cooldowns).
+     */
+    public long lastAttackTick = -1000;
+
+    public EnumMap<EquipmentSlot, ItemStack> equipment = new EnumMap<>(EquipmentSlot.class);
+
+    public Object equipmentProxy;
+
+    public FakeEntity(FakeWorld world, Location location, EntityType type) {
+        this.world = world;
+        this.location = location.clone();
+        this.type = type;
+        createProxy(type.getEntityClass());
+        equipmentProxy = new FakeHandler() {
+            @Override
+            public Object handle(String name, Method method, Object[] args) {
+                return handleEquipment(name, args);
+            }
+        }.createProxy(EntityEquipment.class);
+    }
+
+    /**
+     * Returns whether this entity is currently alive and in its world.
+     */
+    public boolean isValid() {
+        return !dead;
+    }
+
+    /**
+     * Moves the entity to a new location (same world), keeping the chunk index current.
+     */
+    public void moveTo(Location target) {
+        location.setX(target.getX());
+        location.setY(target.getY());
+        location.setZ(target.getZ());
+        location.setYaw(target.getYaw());
+        location.setPitch(target.getPitch());
+        world.entityMoved(this);
+    }
+
+    /**
+     * Moves the entity up to a given distance toward a target position, on the ground plane.
+     */
+    public void moveToward(Location target, double maxDistance, double stopDistance) {
+        double dx = target.getX() - location.getX(), dz = target.getZ() - location.getZ();
+        double distance = Math.sqrt(dx * dx + dz * dz);
+        if (distance <= stopDistance || distance < 0.0001) {
+            return;
+        }
+        double move = Math.min(maxDistance, distance - stopDistance);
+        int nextX = (int) Math.floor(location.getX() + dx / distance * move), nextZ = (int) Math.floor(location.getZ() + dz / distance * move);
+        if (world.isSolid(nextX, location.getBlockY(), nextZ)) {
+            // Blocked: slide along whichever axis is free, like a mob brushing along a wall.
+            if (!world.isSolid(nextX, location.getBlockY(), location.getBlockZ())) {
+                dz = 0;
+            }
+            else if (!world.isSolid(location.getBlockX(), location.getBlockY(), nextZ)) {
+                dx = 0;
+            }
+            else {
+                return;
+            }
+            distance = Math.max(0.0001, Math.sqrt(dx * dx + dz * dz));
+        }
+        Location next = location.clone().add(dx / distance * move, 0, dz / distance * move);
+        next.setYaw((float) Math.toDegrees(Math.atan2(-dx, dz)));
+        moveTo(next);
+    }
+
+    /**
+     * Damages the entity, firing the damage event (and the death event, if it dies).
+     */
+    public void damage(double amount, Entity source) {
+        if (dead) {
+            return;
+        }
+        if (npc != null && npc.isProtected) {
+            return;
+        }
+        EntityDamageEvent event = source == null
+                ? new EntityDamageEvent((Entity) proxy, EntityDamageEvent.DamageCause.CUSTOM, amount)
+                : new EntityDamageByEntityEvent(source, (Entity) proxy, EntityDamageEvent.DamageCause.ENTITY_ATTACK, amount);
+        world.server.eventBus.fire(event);
+        if (event.isCancelled() || dead) {
+            return;
+        }
+        lastDamageCause = event;
+        double finalDamage = Math.max(0, event.getFinalDamage());
+        if (npc != null) {
+            world.damageToNPCs += finalDamage;
+        }
+        else {
+            world.damageToMobs += finalDamage;
+        }
+        health -= finalDamage;
+        if (health <= 0) {
+            die();
+        }
+    }
+
+    /**
+     * Kills the entity, firing the death event and despawning its NPC if it has one.
+     */
+    public void die() {
+        dead = true;
+        health = 0;
+        Entity killer = lastDamageCause instanceof EntityDamageByEntityEvent ? ((EntityDamageByEntityEvent) lastDamageCause).getDamager() : null;
+        FakeEntity fakeKiller = of(killer);
+        if (npc != null) {
+            world.npcDeaths++;
+        }
+        else if (fakeKiller != null && fakeKiller.npc != null) {
+            world.npcKills++;
+        }
+        else {
+            world.otherDeaths++;
+        }
+        world.server.eventBus.fire(new EntityDeathEvent((LivingEntity) proxy, new ArrayList<>()));
+        world.removeEntity(this);
+        if (npc != null) {
+            npc.entityDied();
+        }
+    }
+
+    /**
+     * Removes the entity from its world without a death.
+     */
+    public void remove() {
+        dead = true;
+        world.removeEntity(this);
+    }
+
+    private Object handleEquipment(String name, Object[] args) {
+        EquipmentSlot slot = null;
+        if (args.length > 0 && args[0] instanceof EquipmentSlot) {
+            slot = (EquipmentSlot) args[0];
+        }
+        else if (name.endsWith("ItemInMainHand") || name.endsWith("ItemInHand")) {
+            slot = EquipmentSlot.HAND;
+        }
+        else if (name.endsWith("ItemInOffHand")) {
+            slot = EquipmentSlot.OFF_HAND;
+        }
+        else if (name.endsWith("Helmet")) {
+            slot = EquipmentSlot.HEAD;
+        }
+        else if (name.endsWith("Chestplate")) {
+            slot = EquipmentSlot.CHEST;
+        }
+        else if (name.endsWith("Leggings")) {
+            slot = EquipmentSlot.LEGS;
+        }
+        else if (name.endsWith("Boots")) {
+            slot = EquipmentSlot.FEET;
+        }
+        if (name.equals("getHolder")) {
+            return proxy;
+        }
+        if (name.equals("getArmorContents")) {
+            return new ItemStack[] { getEquipment(EquipmentSlot.FEET), getEquipment(EquipmentSlot.LEGS), getEquipment(EquipmentSlot.CHEST), getEquipment(EquipmentSlot.HEAD) };
+        }
+        if (slot == null || name.endsWith("DropChance")) {
+            return UNHANDLED;
+        }
+        if (name.startsWith("get")) {
+            return getEquipment(slot);
+        }
+        if (name.startsWith("set")) {
+            Object item = args[args.length - 1] instanceof ItemStack ? args[args.length - 1] : args.length > 1 ? args[1] : args[0];
+            equipment.put(slot, item instanceof ItemStack ? ((ItemStack) item).clone() : null);
+            return null;
+        }
+        return UNHANDLED;
+    }
+
+    /**
+     * Gets a copy of the item in an equipment slot (air if empty).
+     */
+    public ItemStack getEquipment(EquipmentSlot slot) {
+        ItemStack item = equipment.get(slot);
+        return item == null ? new ItemStack(Material.AIR) : item.clone();
+    }
+
+    private Object attributeInstance(Attribute attribute) {
+        double value;
+        switch (attribute) {
+            case GENERIC_MAX_HEALTH:
+                value = maxHealth;
+                break;
+            case GENERIC_ATTACK_DAMAGE:
+                value = attackDamage;
+                break;
+            case GENERIC_MOVEMENT_SPEED:
+                value = 0.25;
+                break;
+            default:
+                value = 0;
+        }
+        return new FakeHandler() {
+            @Override
+            public Object handle(String name, Method method, Object[] args) {
+                switch (name) {
+                    case "getAttribute":
+                        return attribute;
+                    case "getValue":
+                    case "getBaseValue":
+                    case "getDefaultValue":
+                        return value;
+                }
+                return UNHANDLED;
+            }
+        }.createProxy(AttributeInstance.class);
+    }
+
+    @Override
+    public Object handle(String name, Method method, Object[] args) {
+        switch (name) {
+            case "getUniqueId":
+                return uuid;
+            case "getEntityId":
+                return entityId;
+            case "getType":
+                return type;
+            case "getWorld":
+                return world.proxy;
+            case "getServer":
+                return world.server.proxy;
+            case "getLocation":
+                if (args.length == 1 && args[0] instanceof Location) {
+                    Location into = (Location) args[0];
+                    into.setWorld((World) world.proxy);
+                    into.setX(location.getX());
+                    into.setY(location.getY());
+                    into.setZ(location.getZ());
+                    into.setYaw(location.getYaw());
+                    into.setPitch(location.getPitch());
+                    return into;
+                }
+                return location.clone();
+            case "getEyeLocation":
+                return location.clone().add(0, EYE_HEIGHT, 0);
+            case "getEyeHeight":
+                return EYE_HEIGHT;
+            case "getHeight":
+                return 1.8;
+            case "getWidth":
+                return 0.6;
+            case "getBoundingBox":
+                return new BoundingBox(location.getX() - 0.3, location.getY(), location.getZ() - 0.3, location.getX() + 0.3, location.getY() + 1.8, location.getZ() + 0.3);
+            case "getHealth":
+                return health;
+            case "setHealth":
+                health = Math.min((Double) args[0], maxHealth);
+                if (health <= 0 && !dead) {
+                    die();
+                }
+                return null;
+            case "getMaxHealth":
+                return maxHealth;
+            case "setMaxHealth":
+                maxHealth = (Double) args[0];
+                health = Math.min(health, maxHealth);
+                return null;
+            case "getAttribute":
+                return attributeInstance((Attribute) args[0]);
+            case "isValid":
+                return isValid();
+            case "isDead":
+                return dead;
+            case "remove":
+                remove();
+                return null;
+            case "teleport":
+                if (args[0] instanceof Location) {
+                    moveTo((Location) args[0]);
+                }
+                else if (args[0] instanceof Entity) {
+                    moveTo(((Entity) args[0]).getLocation());
+                }
+                return true;
+            case "getVelocity":
+                return velocity.clone();
+            case "setVelocity":
+                velocity = ((Vector) args[0]).clone();
+                return null;
+            case "isOnGround":
+                return true;
+            case "getNearbyEntities":
+                return world.getNearby(location, (Double) args[0], (Double) args[1], (Double) args[2], this);
+            case "getEquipment":
+                return equipmentProxy;
+            case "damage":
+                damage((Double) args[0], args.length > 1 ? (Entity) args[1] : null);
+                return null;
+            case "attack": {
+                FakeEntity target = of(args[0]);
+                if (target != null && args[0] instanceof LivingEntity) {
+                    target.damage(attackDamage, (Entity) proxy);
+                }
+                return null;
+            }
+            case "hasLineOfSight": {
+                Location eye = location.clone().add(0, EYE_HEIGHT, 0);
+                Location other = ((LivingEntity) args[0]).getEyeLocation();
+                Vector relative = other.toVector().subtract(eye.toVector());
+                if (relative.lengthSquared() < 0.0001) {
+                    return true;
+                }
+                RayTraceResult hit = world.rayTrace(eye, relative, relative.length());
+                return hit == null;
+            }
+            case "hasMetadata":
+                return npc != null && "NPC".equals(args[0]);
+            case "getLastDamageCause":
+                return lastDamageCause;
+            case "setLastDamageCause":
+                lastDamageCause = (EntityDamageEvent) args[0];
+                return null;
+            case "getName":
+                return npc != null ? npc.name : type.name();
+            case "getCustomName":
+                return npc != null ? npc.name : null;
+            case "isEmpty":
+                return true;
+            case "getMaximumNoDamageTicks":
+                return 20;
+        }
+        return UNHANDLED;
+    }
+
+    @Override
+    public String describe() {
+        return "FakeEntity{" + type + "#" + entityId + (npc != null ? ",npc=" + npc.id : "") + "}";
+    }
+}
@@ -0,0 +1,117 @@
+package org.mcmonkey.sentinel.benchmark;
+
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.PluginManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * A fake {@link PluginManager} that dispatches events to registered listeners' {@link EventHandler} methods.
+ * No other plugins are ever present.
+ */
+public class FakeEventBus extends FakeHandler {
+
+    /**
+     * One registered event handler method.
+     */
+    public static class Registration {
+
+        public Listener listener;
+
+        public Method method;
+
+        public Class<?> eventType;
+
+        public EventHandler info;
+    }
+
+    /**
+     * All registered handlers, in priority order.
+     */
+    public ArrayList<Registration> registrations = new ArrayList<>();
+
+    /**
+     * The number of events fired.
+     */
+    public long eventsFired = 0;
+
+    /**
+     * The number of handler calls that threw.
+     */
+    public long handlerErrors = 0;
+
+    /**
+     * Receives any error thrown by a handler.
+     */
+    public Consumer<Throwable> errorHandler = Throwable::printStackTrace;
+
+    public FakeEventBus() {
+        createProxy(PluginManager.class);
+    }
+
+    /**
+     * Registers every {@link EventHandler} method of a listener.
+     */
+    public void register(Listener listener) {
+        for (Method method : listener.getClass().getMethods()) {
+            EventHandler info = method.getAnnotation(EventHandler.class);
+            if (info == null || method.getParameterCount() != 1 || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                continue;
+            }
+            Registration registration = new Registration();
+            registration.listener = listener;
+            registration.method = method;
+            registration.eventType = method.getParameterTypes()[0];
+            registration.info = info;
+            registrations.add(registration);
+        }
+        registrations.sort(Comparator.comparingInt(r -> r.info.priority().getSlot()));
+    }
+
+    /**
+     * Fires an event to every matching handler.
+     */
+    public <T extends Event> T fire(T event) {
+        eventsFired++;
+        for (Registration registration : registrations) {
+            if (!registration.eventType.isInstance(event)) {
+                continue;
+            }
+            if (registration.info.ignoreCancelled() && event instanceof Cancellable && ((Cancellable) event).isCancelled()) {
+                continue;
+            }
+            try {
+                registration.method.invoke(registration.listener, event);
+            }
+            catch (InvocationTargetException ex) {
+                handlerErrors++;
+                errorHandler.accept(ex.getCause());
+            }
+            catch (IllegalAccessException ex) {
+                handlerErrors++;
+                errorHandler.accept(ex);
+            }
+        }
+        return event;
+    }
+
+    @Override
+    public Object handle(String name, Method method, Object[] args) {
+        switch (name) {
+            case "registerEvents":
+                register((Listener) args[0]);
+                return null;
+            case "callEvent":
+                fire((Event) args[0]);
+                return null;
+        }
+        return UNHANDLED;
+    }
+}
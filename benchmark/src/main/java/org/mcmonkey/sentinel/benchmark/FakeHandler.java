@@ -0,0 +1,145 @@
+package org.mcmonkey.sentinel.benchmark;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Base for the harness's fake Bukkit and Citizens objects, which are dynamic proxies of the API interfaces.
+ * Subclasses implement only the methods Sentinel actually uses. Anything else returns a harmless default
+ * (zero, false, null, or an empty collection), so an unsupported call shows up as a missing behavior rather than a crash.
+ * Such calls are counted in {@link #unhandledCalls} (and reported by the harness), or fail outright in {@link #strict} mode.
+ */
+public abstract class FakeHandler implements InvocationHandler {
+
+    /**
+     * Returned by {@link #handle(String, Method, Object[])} to use the default return value.
+     */
+    public static final Object UNHANDLED = new Object();
+
+    /**
+     * How many times each unhandled method (as "Interface.method") was called, across all fake objects.
+     */
+    public static final ConcurrentHashMap<String, LongAdder> unhandledCalls = new ConcurrentHashMap<>();
+
+    /**
+     * If true, unhandled calls throw an exception instead of returning a default value.
+     */
+    public static volatile boolean strict = false;
+
+    /**
+     * The proxy object this handler backs.
+     */
+    public Object proxy;
+
+    /**
+     * Creates the proxy object for this handler, implementing the given interfaces.
+     */
+    public Object createProxy(Class<?>... interfaces) {
+        proxy = Proxy.newProxyInstance(FakeHandler.class.getClassLoader(), interfaces, this);
+        return proxy;
+    }
+
+    /**
+     * Handles one method call, or returns {@link #UNHANDLED}.
+     */
+    public abstract Object handle(String name, Method method, Object[] args) throws Throwable;
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (args == null) {
+            args = new Object[0];
+        }
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return describe();
+            }
+        }
+        Object result = handle(method.getName(), method, args);
+        if (result == UNHANDLED) {
+            String key = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+            unhandledCalls.computeIfAbsent(key, k -> new LongAdder()).increment();
+            if (strict) {
+                throw new UnsupportedOperationException("Fake " + describe() + " does not implement " + key);
+            }
+            return defaultValue(method.getReturnType());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a short description of this fake object, for toString().
+     */
+    public String describe() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Gets the total number of unhandled calls.
+     */
+    public static long getUnhandledCallCount() {
+        long total = 0;
+        for (LongAdder count : unhandledCalls.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the default return value for a method return type.
+     */
+    public static Object defaultValue(Class<?> type) {
+        if (type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        if (type.isArray()) {
+            return Array.newInstance(type.getComponentType(), 0);
+        }
+        if (type == List.class || type == Collection.class || type == Iterable.class) {
+            return new ArrayList<>();
+        }
+        if (type == Set.class) {
+            return new HashSet<>();
+        }
+        if (type == Map.class) {
+            return new HashMap<>();
+        }
+        if (type == Optional.class) {
+            return Optional.empty();
+        }
+        return null;
+    }
+}
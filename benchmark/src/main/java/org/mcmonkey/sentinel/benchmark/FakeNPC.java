@@ -0,0 +1,382 @@
+package org.mcmonkey.sentinel.benchmark;
+
+import net.citizensnpcs.api.ai.EntityTarget;
+import net.citizensnpcs.api.ai.Navigator;
+import net.citizensnpcs.api.ai.NavigatorParameters;
+import net.citizensnpcs.api.ai.TargetType;
+import net.citizensnpcs.api.npc.MetadataStore;
+import net.citizensnpcs.api.npc.NPC;
+import net.citizensnpcs.api.trait.Trait;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+/**
+ * A fake Citizens {@link NPC}: holds traits and runs their spawn/despawn callbacks like Citizens does,
+ * and has a simple straight-line navigator.
+ */
+public class FakeNPC extends FakeHandler {
+
+    /**
+     * Navigator movement per tick at a speed modifier of 1, in blocks (roughly a walking mob).
+     */
+    public static final double BASE_MOVE_PER_TICK = 0.2;
+
+    public int id;
+
+    public UUID uuid = UUID.randomUUID();
+
+    public String name;
+
+    public EntityType type;
+
+    public FakeCitizens citizens;
+
+    /**
+     * The current entity, or null when despawned.
+     */
+    public FakeEntity entity;
+
+    /**
+     * The last location the NPC was at (or was spawned to).
+     */
+    public Location storedLocation;
+
+    /**
+     * Whether the NPC is protected (Citizens' default for new NPCs).
+     */
+    public boolean isProtected = true;
+
+    public LinkedHashMap<Class<? extends Trait>, Trait> traits = new LinkedHashMap<>();
+
+    public HashMap<Object, Object> data = new HashMap<>();
+
+    public Object dataProxy;
+
+    public Object navigatorProxy;
+
+    public NavigatorParameters defaultParameters = new NavigatorParameters();
+
+    public NavigatorParameters localParameters = defaultParameters;
+
+    /**
+     * The current navigation target location, or null.
+     */
+    public Location navigationTarget;
+
+    /**
+     * The current navigation target entity, or null.
+     */
+    public Entity navigationEntity;
+
+    public boolean navigationAggressive;
+
+    public FakeNPC(FakeCitizens citizens, int id, EntityType type, String name) {
+        this.citizens = citizens;
+        this.id = id;
+        this.type = type;
+        this.name = name;
+        createProxy(NPC.class);
+        dataProxy = new FakeHandler() {
+            @Override
+            public Object handle(String name, Method method, Object[] args) {
+                switch (name) {
+                    case "get":
+                        return data.containsKey(args[0]) ? data.get(args[0]) : (args.length > 1 ? args[1] : null);
+                    case "has":
+                        return data.containsKey(args[0]);
+                    case "set":
+                    case "setPersistent":
+                        data.put(args[0], args[1]);
+                        return null;
+                    case "remove":
+                        data.remove(args[0]);
+                        return null;
+                    case "size":
+                        return data.size();
+                }
+                return UNHANDLED;
+            }
+        }.createProxy(MetadataStore.class);
+        navigatorProxy = new FakeHandler() {
+            @Override
+            public Object handle(String name, Method method, Object[] args) {
+                return handleNavigator(name, args);
+            }
+        }.createProxy(Navigator.class);
+    }
+
+    /**
+     * Returns whether the NPC currently has a live entity.
+     */
+    public boolean isSpawned() {
+        return entity != null && !entity.dead;
+    }
+
+    /**
+     * Spawns the NPC's entity and runs every trait's spawn callback.
+     */
+    public boolean spawn(Location location) {
+        if (isSpawned() || location == null) {
+            return false;
+        }
+        FakeWorld world = (FakeWorld) Proxy.getInvocationHandler(location.getWorld());
+        entity = new FakeEntity(world, location, type);
+        entity.npc = this;
+        storedLocation = location.clone();
+        world.addEntity(entity);
+        for (Trait trait : new ArrayList<>(traits.values())) {
+            trait.onSpawn();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the NPC's entity (without a death) and runs every trait's despawn callback.
+     */
+    public boolean despawn() {
+        if (entity == null) {
+            return false;
+        }
+        entity.remove();
+        afterDespawn();
+        return true;
+    }
+
+    /**
+     * Called by the entity when it dies: Citizens despawns a dead NPC.
+     */
+    public void entityDied() {
+        afterDespawn();
+    }
+
+    private void afterDespawn() {
+        storedLocation = entity.location.clone();
+        entity = null;
+        cancelNavigation();
+        for (Trait trait : new ArrayList<>(traits.values())) {
+            trait.onDespawn();
+        }
+    }
+
+    /**
+     * Despawns the NPC, removes every trait, and removes it from the registry.
+     */
+    public void destroy() {
+        despawn();
+        for (Trait trait : new ArrayList<>(traits.values())) {
+            trait.onRemove();
+        }
+        traits.clear();
+        citizens.npcs.remove(this);
+    }
+
+    /**
+     * Adds a trait, linking it and running its attach (and spawn, if spawned) callbacks.
+     */
+    public void addTrait(Trait trait) {
+        if (trait.getNPC() == null) {
+            trait.linkToNPC((NPC) proxy);
+        }
+        traits.put(trait.getClass(), trait);
+        trait.onAttach();
+        if (isSpawned()) {
+            trait.onSpawn();
+        }
+    }
+
+    /**
+     * Gets a trait, adding a new one (through its no-argument constructor) if missing.
+     */
+    public Trait getOrAddTrait(Class<? extends Trait> traitClass) throws ReflectiveOperationException {
+        Trait trait = traits.get(traitClass);
+        if (trait == null) {
+            trait = traitClass.getDeclaredConstructor().newInstance();
+            addTrait(trait);
+        }
+        return trait;
+    }
+
+    /**
+     * Stops navigation.
+     */
+    public void cancelNavigation() {
+        navigationTarget = null;
+        navigationEntity = null;
+        localParameters = defaultParameters;
+    }
+
+    /**
+     * Moves the entity one tick's worth toward its navigation target.
+     */
+    public void stepNavigation() {
+        if (!isSpawned() || (navigationTarget == null && navigationEntity == null)) {
+            return;
+        }
+        Location target;
+        if (navigationEntity != null) {
+            if (!navigationEntity.isValid() || !navigationEntity.getWorld().equals(entity.world.proxy)) {
+                cancelNavigation();
+                return;
+            }
+            target = navigationEntity.getLocation();
+        }
+        else {
+            target = navigationTarget;
+        }
+        double speed = BASE_MOVE_PER_TICK * localParameters.baseSpeed() * localParameters.speedModifier();
+        double margin = Math.max(0.5, localParameters.distanceMargin());
+        entity.moveToward(target, speed, margin);
+        if (navigationEntity == null && entity.location.distanceSquared(target) <= (margin + 0.1) * (margin + 0.1)) {
+            cancelNavigation();
+        }
+    }
+
+    private Object handleNavigator(String name, Object[] args) {
+        switch (name) {
+            case "setTarget":
+                cancelNavigation();
+                if (args.length == 0 || args[0] == null) {
+                    return null;
+                }
+                localParameters = defaultParameters.clone();
+                if (args[0] instanceof Location) {
+                    navigationTarget = ((Location) args[0]).clone();
+                }
+                else if (args[0] instanceof Entity) {
+                    navigationEntity = (Entity) args[0];
+                    navigationAggressive = args.length > 1 && Boolean.TRUE.equals(args[1]);
+                }
+                return null;
+            case "cancelNavigation":
+                cancelNavigation();
+                return null;
+            case "isNavigating":
+                return navigationTarget != null || navigationEntity != null;
+            case "isPaused":
+                return false;
+            case "canNavigateTo":
+                return true;
+            case "getDefaultParameters":
+                return defaultParameters;
+            case "getLocalParameters":
+                return localParameters;
+            case "getNPC":
+                return proxy;
+            case "getTargetType":
+                return navigationEntity != null ? TargetType.ENTITY : navigationTarget != null ? TargetType.LOCATION : null;
+            case "getTargetAsLocation":
+                return navigationEntity != null ? navigationEntity.getLocation() : navigationTarget == null ? null : navigationTarget.clone();
+            case "getEntityTarget":
+                if (navigationEntity == null) {
+                    return null;
+                }
+                Entity target = navigationEntity;
+                boolean aggressive = navigationAggressive;
+                return new FakeHandler() {
+                    @Override
+                    public Object handle(String name, Method method, Object[] args) {
+                        switch (name) {
+                            case "getTarget":
+                                return target;
+                            case "isAggressive":
+                                return aggressive;
+                        }
+                        return UNHANDLED;
+                    }
+                }.createProxy(EntityTarget.class);
+        }
+        return UNHANDLED;
+    }
+
+    @Override
+    public Object handle(String name, Method method, Object[] args) throws Throwable {
+        switch (name) {
+            case "getId":
+                return id;
+            case "getUniqueId":
+                return uuid;
+            case "getName":
+            case "getFullName":
+            case "getRawName":
+                return this.name;
+            case "getEntity":
+                return entity == null ? null : entity.proxy;
+            case "isSpawned":
+                return isSpawned();
+            case "spawn":
+                return spawn((Location) args[0]);
+            case "despawn":
+                return despawn();
+            case "destroy":
+                destroy();
+                return null;
+            case "getStoredLocation":
+                return entity != null ? entity.location.clone() : storedLocation == null ? null : storedLocation.clone();
+            case "teleport":
+                if (isSpawned()) {
+                    entity.moveTo((Location) args[0]);
+                }
+                return null;
+            case "faceLocation":
+                if (isSpawned()) {
+                    Location look = (Location) args[0];
+                    entity.location.setYaw((float) Math.toDegrees(Math.atan2(-(look.getX() - entity.location.getX()), look.getZ() - entity.location.getZ())));
+                }
+                return null;
+            case "isProtected":
+                return isProtected;
+            case "setProtected":
+                isProtected = (Boolean) args[0];
+                return null;
+            case "data":
+                return dataProxy;
+            case "getNavigator":
+                return navigatorProxy;
+            case "getOwningRegistry":
+                return citizens.registryProxy;
+            case "addTrait":
+                if (args[0] instanceof Trait) {
+                    addTrait((Trait) args[0]);
+                }
+                else {
+                    getOrAddTrait(castTraitClass(args[0]));
+                }
+                return null;
+            case "getOrAddTrait":
+            case "getTrait":
+                return getOrAddTrait(castTraitClass(args[0]));
+            case "getTraitNullable":
+                return traits.get(args[0]);
+            case "hasTrait":
+                return traits.containsKey(args[0]);
+            case "getTraits":
+                return new ArrayList<>(traits.values());
+            case "removeTrait": {
+                Trait trait = traits.remove(args[0]);
+                if (trait != null) {
+                    trait.onRemove();
+                }
+                return null;
+            }
+        }
+        return UNHANDLED;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Trait> castTraitClass(Object traitClass) {
+        return (Class<? extends Trait>) traitClass;
+    }
+
+    @Override
+    public String describe() {
+        return "FakeNPC{" + id + "," + name + "}";
+    }
+}
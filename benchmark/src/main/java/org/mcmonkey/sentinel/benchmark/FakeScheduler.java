@@ -0,0 +1,254 @@
+package org.mcmonkey.sentinel.benchmark;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * A fake {@link BukkitScheduler}: sync tasks run in order when the harness advances a tick, async tasks run on a background thread.
+ */
+public class FakeScheduler extends FakeHandler {
+
+    /**
+     * One scheduled task.
+     */
+    public class Task extends FakeHandler {
+
+        /**
+         * The task ID.
+         */
+        public int id;
+
+        /**
+         * The plugin that owns the task.
+         */
+        public Plugin owner;
+
+        /**
+         * The task body: a {@link Runnable} or a {@link Consumer} of the task.
+         */
+        public Object body;
+
+        /**
+         * The tick the task will next run on.
+         */
+        public long nextTick;
+
+        /**
+         * The repeat period in ticks, or -1 for a one-off task.
+         */
+        public long period;
+
+        /**
+         * Whether the task runs off the main thread.
+         */
+        public boolean async;
+
+        /**
+         * Whether the task was cancelled.
+         */
+        public volatile boolean cancelled;
+
+        /**
+         * Runs the task body.
+         */
+        @SuppressWarnings("unchecked")
+        public void runBody() {
+            if (body instanceof Runnable) {
+                ((Runnable) body).run();
+            }
+            else {
+                ((Consumer<BukkitTask>) body).accept((BukkitTask) proxy);
+            }
+        }
+
+        @Override
+        public Object handle(String name, Method method, Object[] args) {
+            switch (name) {
+                case "getTaskId":
+                    return id;
+                case "getOwner":
+                    return owner;
+                case "isSync":
+                    return !async;
+                case "isCancelled":
+                    return cancelled;
+                case "cancel":
+                    cancelled = true;
+                    return null;
+            }
+            return UNHANDLED;
+        }
+
+        @Override
+        public String describe() {
+            return "Task#" + id;
+        }
+    }
+
+    /**
+     * All pending tasks, in scheduling order.
+     */
+    public ArrayList<Task> tasks = new ArrayList<>();
+
+    /**
+     * The current tick number.
+     */
+    public long currentTick = 0;
+
+    /**
+     * The next task ID.
+     */
+    public int nextId = 1;
+
+    /**
+     * Runs async tasks.
+     */
+    public ExecutorService asyncExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Benchmark-Async");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Receives any error thrown by a task.
+     */
+    public Consumer<Throwable> errorHandler = Throwable::printStackTrace;
+
+    public FakeScheduler() {
+        createProxy(BukkitScheduler.class);
+    }
+
+    /**
+     * Schedules a task.
+     */
+    public Task schedule(Plugin owner, Object body, long delay, long period, boolean async) {
+        Task task = new Task();
+        task.createProxy(BukkitTask.class);
+        task.id = nextId++;
+        task.owner = owner;
+        task.body = body;
+        task.nextTick = currentTick + Math.max(1, delay);
+        task.period = period;
+        task.async = async;
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Cancels a task by ID.
+     */
+    public void cancel(int id) {
+        for (Task task : tasks) {
+            if (task.id == id) {
+                task.cancelled = true;
+            }
+        }
+    }
+
+    /**
+     * Advances one tick, running every sync task that is due (and handing due async tasks to the background thread).
+     */
+    public void tick() {
+        currentTick++;
+        ArrayList<Task> due = new ArrayList<>();
+        Iterator<Task> iterator = tasks.iterator();
+        while (iterator.hasNext()) {
+            Task task = iterator.next();
+            if (task.cancelled) {
+                iterator.remove();
+            }
+            else if (task.nextTick <= currentTick) {
+                due.add(task);
+            }
+        }
+        for (Task task : due) {
+            if (task.cancelled) {
+                continue;
+            }
+            if (task.period > 0) {
+                task.nextTick = currentTick + task.period;
+            }
+            else {
+                task.cancelled = true;
+            }
+            if (task.async) {
+                asyncExecutor.execute(() -> runSafely(task));
+            }
+            else {
+                runSafely(task);
+            }
+        }
+    }
+
+    private void runSafely(Task task) {
+        try {
+            task.runBody();
+        }
+        catch (Throwable ex) {
+            errorHandler.accept(ex);
+        }
+    }
+
+    @Override
+    public Object handle(String name, Method method, Object[] args) {
+        if (name.equals("cancelTask")) {
+            cancel((Integer) args[0]);
+            return null;
+        }
+        if (name.equals("cancelTasks")) {
+            for (Task task : tasks) {
+                if (task.owner == args[0]) {
+                    task.cancelled = true;
+                }
+            }
+            return null;
+        }
+        if (name.equals("isQueued") || name.equals("isCurrentlyRunning")) {
+            for (Task task : tasks) {
+                if (task.id == (Integer) args[0]) {
+                    return !task.cancelled;
+                }
+            }
+            return false;
+        }
+        if (!name.startsWith("run") && !name.startsWith("schedule")) {
+            return UNHANDLED;
+        }
+        // All the run.../schedule... methods: (plugin, task body, [delay], [period])
+        Plugin owner = null;
+        Object body = null;
+        ArrayList<Long> numbers = new ArrayList<>();
+        for (Object arg : args) {
+            if (arg instanceof Plugin) {
+                owner = (Plugin) arg;
+            }
+            else if (arg instanceof Runnable || arg instanceof Consumer) {
+                body = arg;
+            }
+            else if (arg instanceof Long) {
+                numbers.add((Long) arg);
+            }
+        }
+        if (body == null) {
+            return UNHANDLED;
+        }
+        long delay = numbers.isEmpty() ? 0 : numbers.get(0);
+        long period = numbers.size() < 2 ? -1 : Math.max(1, numbers.get(1));
+        Task task = schedule(owner, body, delay, period, name.contains("Async"));
+        if (method.getReturnType() == int.class) {
+            return task.id;
+        }
+        if (method.getReturnType() == void.class) {
+            return null;
+        }
+        return task.proxy;
+    }
+}
@@ -0,0 +1,120 @@
+package org.mcmonkey.sentinel.benchmark;
+
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.entity.EntityType;
+import org.bukkit.inventory.ItemFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * A fake Bukkit {@link Server}: one or more fake worlds, the fake scheduler and event bus, and nothing else.
+ */
+public class FakeServer extends FakeHandler {
+
+    public Logger logger = Logger.getLogger("SentinelBenchmark");
+
+    public FakeScheduler scheduler = new FakeScheduler();
+
+    public FakeEventBus eventBus = new FakeEventBus();
+
+    public ArrayList<FakeWorld> worlds = new ArrayList<>();
+
+    /**
+     * All live entities in every world, by UUID.
+     */
+    public HashMap<UUID, FakeEntity> entitiesById = new HashMap<>();
+
+    /**
+     * The thread the harness ticks on (the fake "main thread").
+     */
+    public Thread mainThread = Thread.currentThread();
+
+    public Object itemFactoryProxy;
+
+    public FakeServer() {
+        createProxy(Server.class);
+        itemFactoryProxy = new FakeHandler() {
+            @Override
+            public Object handle(String name, Method method, Object[] args) {
+                // ItemStack.hasItemMeta() is "!factory.equals(meta, null)", so two null metas must compare equal.
+                if (name.equals("equals") && args.length == 2) {
+                    return args[0] == args[1];
+                }
+                return UNHANDLED;
+            }
+        }.createProxy(ItemFactory.class);
+    }
+
+    /**
+     * Creates a new fake world.
+     */
+    public FakeWorld createWorld(String name) {
+        FakeWorld world = new FakeWorld(this, name);
+        worlds.add(world);
+        return world;
+    }
+
+    /**
+     * Spawns a plain (non-NPC) mob.
+     */
+    public FakeEntity spawnMob(Location location, EntityType type) {
+        FakeWorld world = (FakeWorld) Proxy.getInvocationHandler(location.getWorld());
+        FakeEntity entity = new FakeEntity(world, location, type);
+        world.addEntity(entity);
+        return entity;
+    }
+
+    @Override
+    public Object handle(String name, Method method, Object[] args) {
+        switch (name) {
+            case "getLogger":
+                return logger;
+            case "getName":
+                return "SentinelBenchmark";
+            case "getVersion":
+                return "SentinelBenchmark (MC: 1.19)";
+            case "getBukkitVersion":
+                return "1.19-R0.1-SNAPSHOT";
+            case "getScheduler":
+                return scheduler.proxy;
+            case "getPluginManager":
+                return eventBus.proxy;
+            case "getItemFactory":
+                return itemFactoryProxy;
+            case "isPrimaryThread":
+                return Thread.currentThread() == mainThread;
+            case "getOnlineMode":
+                return true;
+            case "getWorlds": {
+                ArrayList<Object> result = new ArrayList<>(worlds.size());
+                for (FakeWorld world : worlds) {
+                    result.add(world.proxy);
+                }
+                return result;
+            }
+            case "getWorld":
+                for (FakeWorld world : worlds) {
+                    if (world.name.equals(args[0]) || world.uuid.equals(args[0])) {
+                        return world.proxy;
+                    }
+                }
+                return null;
+            case "getEntity": {
+                FakeEntity entity = entitiesById.get((UUID) args[0]);
+                return entity == null ? null : entity.proxy;
+            }
+        }
+        return UNHANDLED;
+    }
+
+    @Override
+    public String describe() {
+        return "FakeServer";
+    }
+}
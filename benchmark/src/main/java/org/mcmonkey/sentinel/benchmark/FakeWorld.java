@@ -0,0 +1,360 @@
+package org.mcmonkey.sentinel.benchmark;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * A fake {@link World}: flat stone ground below y=64, optional stone obstacle blocks above it, and a chunk-column index of entities
+ * (so nearby-entity lookups cost roughly what a real server's do, rather than a scan of the whole world).
+ */
+public class FakeWorld extends FakeHandler {
+
+    /**
+     * The Y level of the ground surface (the first air block).
+     */
+    public static final int GROUND_Y = 64;
+
+    /**
+     * The world name.
+     */
+    public String name;
+
+    /**
+     * The world UUID.
+     */
+    public UUID uuid = UUID.randomUUID();
+
+    /**
+     * The owning fake server.
+     */
+    public FakeServer server;
+
+    /**
+     * All entities in the world.
+     */
+    public ArrayList<FakeEntity> entities = new ArrayList<>();
+
+    /**
+     * Entities by chunk column.
+     */
+    public HashMap<Long, ArrayList<FakeEntity>> entitiesByChunk = new HashMap<>();
+
+    /**
+     * Solid blocks placed above the ground.
+     */
+    public HashSet<Long> obstacles = new HashSet<>();
+
+    /**
+     * Combat outcome counters, updated as entities die: mobs killed by NPCs, NPC deaths, and any other deaths.
+     */
+    public long npcKills, npcDeaths, otherDeaths;
+
+    /**
+     * Total damage dealt to mobs and to NPCs.
+     */
+    public double damageToMobs, damageToNPCs;
+
+    public FakeWorld(FakeServer server, String name) {
+        this.server = server;
+        this.name = name;
+        createProxy(World.class);
+    }
+
+    /**
+     * Gets the chunk column key for a block X/Z.
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (((long) chunkX) << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the obstacle key for a block position.
+     */
+    public static long blockKey(int x, int y, int z) {
+        return (((long) x & 0x3FFFFFF) << 38) | (((long) z & 0x3FFFFFF) << 12) | ((long) y & 0xFFF);
+    }
+
+    /**
+     * Returns whether a block is solid.
+     */
+    public boolean isSolid(int x, int y, int z) {
+        return y < GROUND_Y || obstacles.contains(blockKey(x, y, z));
+    }
+
+    /**
+     * Places a solid obstacle block.
+     */
+    public void addObstacle(int x, int y, int z) {
+        obstacles.add(blockKey(x, y, z));
+    }
+
+    /**
+     * Adds an entity to the world and the chunk index.
+     */
+    public void addEntity(FakeEntity entity) {
+        entities.add(entity);
+        server.entitiesById.put(entity.uuid, entity);
+        entity.chunkKey = chunkKey(entity.location.getBlockX() >> 4, entity.location.getBlockZ() >> 4);
+        entitiesByChunk.computeIfAbsent(entity.chunkKey, k -> new ArrayList<>()).add(entity);
+    }
+
+    /**
+     * Removes an entity from the world and the chunk index.
+     */
+    public void removeEntity(FakeEntity entity) {
+        entities.remove(entity);
+        server.entitiesById.remove(entity.uuid);
+        ArrayList<FakeEntity> inChunk = entitiesByChunk.get(entity.chunkKey);
+        if (inChunk != null) {
+            inChunk.remove(entity);
+        }
+    }
+
+    /**
+     * Updates an entity's chunk index entry after it moved.
+     */
+    public void entityMoved(FakeEntity entity) {
+        long key = chunkKey(entity.location.getBlockX() >> 4, entity.location.getBlockZ() >> 4);
+        if (key == entity.chunkKey) {
+            return;
+        }
+        ArrayList<FakeEntity> inChunk = entitiesByChunk.get(entity.chunkKey);
+        if (inChunk != null) {
+            inChunk.remove(entity);
+        }
+        entity.chunkKey = key;
+        entitiesByChunk.computeIfAbsent(key, k -> new ArrayList<>()).add(entity);
+    }
+
+    /**
+     * Gets all entities whose location is within a box around a center point.
+     */
+    public List<Entity> getNearby(Location center, double x, double y, double z, FakeEntity exclude) {
+        ArrayList<Entity> result = new ArrayList<>();
+        int minChunkX = ((int) Math.floor(center.getX() - x)) >> 4, maxChunkX = ((int) Math.floor(center.getX() + x)) >> 4;
+        int minChunkZ = ((int) Math.floor(center.getZ() - z)) >> 4, maxChunkZ = ((int) Math.floor(center.getZ() + z)) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                ArrayList<FakeEntity> inChunk = entitiesByChunk.get(chunkKey(chunkX, chunkZ));
+                if (inChunk == null) {
+                    continue;
+                }
+                for (FakeEntity entity : inChunk) {
+                    if (entity == exclude) {
+                        continue;
+                    }
+                    Location loc = entity.location;
+                    if (Math.abs(loc.getX() - center.getX()) <= x && Math.abs(loc.getY() - center.getY()) <= y && Math.abs(loc.getZ() - center.getZ()) <= z) {
+                        result.add((Entity) entity.proxy);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Traces a ray against solid blocks, stepping along it in small increments.
+     */
+    public RayTraceResult rayTrace(Location start, Vector direction, double maxDistance) {
+        Vector dir = direction.clone().normalize();
+        double step = 0.1;
+        for (double dist = 0; dist <= maxDistance; dist += step) {
+            double x = start.getX() + dir.getX() * dist, y = start.getY() + dir.getY() * dist, z = start.getZ() + dir.getZ() * dist;
+            int blockX = (int) Math.floor(x), blockY = (int) Math.floor(y), blockZ = (int) Math.floor(z);
+            if (isSolid(blockX, blockY, blockZ)) {
+                return new RayTraceResult(new Vector(x, y, z), getBlock(blockX, blockY, blockZ), BlockFace.SELF);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets a fake block at a position.
+     */
+    public Block getBlock(int x, int y, int z) {
+        return (Block) new FakeBlock(x, y, z).proxy;
+    }
+
+    /**
+     * A fake {@link Block}, either stone or air.
+     */
+    public class FakeBlock extends FakeHandler {
+
+        public int x, y, z;
+
+        public FakeBlock(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            createProxy(Block.class);
+        }
+
+        @Override
+        public Object handle(String name, Method method, Object[] args) {
+            switch (name) {
+                case "getType":
+                    return isSolid(x, y, z) ? Material.STONE : Material.AIR;
+                case "isEmpty":
+                case "isPassable":
+                    return !isSolid(x, y, z);
+                case "getX":
+                    return x;
+                case "getY":
+                    return y;
+                case "getZ":
+                    return z;
+                case "getWorld":
+                    return FakeWorld.this.proxy;
+                case "getLocation":
+                    return new Location((World) FakeWorld.this.proxy, x, y, z);
+                case "getChunk":
+                    return new FakeChunk(x >> 4, z >> 4).proxy;
+                case "getRelative":
+                    if (args.length == 3) {
+                        return getBlock(x + (Integer) args[0], y + (Integer) args[1], z + (Integer) args[2]);
+                    }
+                    if (args[0] instanceof BlockFace) {
+                        BlockFace face = (BlockFace) args[0];
+                        int distance = args.length > 1 ? (Integer) args[1] : 1;
+                        return getBlock(x + face.getModX() * distance, y + face.getModY() * distance, z + face.getModZ() * distance);
+                    }
+                    break;
+            }
+            return UNHANDLED;
+        }
+
+        @Override
+        public String describe() {
+            return "FakeBlock{" + x + "," + y + "," + z + "}";
+        }
+    }
+
+    /**
+     * A fake {@link Chunk}, always loaded, whose snapshots read live from the world.
+     */
+    public class FakeChunk extends FakeHandler {
+
+        public int chunkX, chunkZ;
+
+        public FakeChunk(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            createProxy(Chunk.class);
+        }
+
+        @Override
+        public Object handle(String name, Method method, Object[] args) {
+            switch (name) {
+                case "getX":
+                    return chunkX;
+                case "getZ":
+                    return chunkZ;
+                case "getWorld":
+                    return FakeWorld.this.proxy;
+                case "isLoaded":
+                case "load":
+                    return true;
+                case "getBlock":
+                    return getBlock((chunkX << 4) + (Integer) args[0], (Integer) args[1], (chunkZ << 4) + (Integer) args[2]);
+                case "getEntities":
+                    ArrayList<FakeEntity> inChunk = entitiesByChunk.get(chunkKey(chunkX, chunkZ));
+                    Entity[] result = new Entity[inChunk == null ? 0 : inChunk.size()];
+                    for (int i = 0; i < result.length; i++) {
+                        result[i] = (Entity) inChunk.get(i).proxy;
+                    }
+                    return result;
+                case "getChunkSnapshot":
+                    return new FakeHandler() {
+                        @Override
+                        public Object handle(String name, Method method, Object[] args) {
+                            switch (name) {
+                                case "getX":
+                                    return chunkX;
+                                case "getZ":
+                                    return chunkZ;
+                                case "getWorldName":
+                                    return FakeWorld.this.name;
+                                case "getBlockType":
+                                    return isSolid((chunkX << 4) + (Integer) args[0], (Integer) args[1], (chunkZ << 4) + (Integer) args[2]) ? Material.STONE : Material.AIR;
+                                case "isSectionEmpty":
+                                    return false;
+                            }
+                            return UNHANDLED;
+                        }
+                    }.createProxy(ChunkSnapshot.class);
+            }
+            return UNHANDLED;
+        }
+    }
+
+    @Override
+    public Object handle(String name, Method method, Object[] args) {
+        switch (name) {
+            case "getName":
+                return this.name;
+            case "getUID":
+                return uuid;
+            case "getMinHeight":
+                return 0;
+            case "getMaxHeight":
+                return 256;
+            case "getHighestBlockYAt":
+                return GROUND_Y - 1;
+            case "isChunkLoaded":
+                return true;
+            case "getChunkAt":
+                if (args.length == 2) {
+                    return new FakeChunk((Integer) args[0], (Integer) args[1]).proxy;
+                }
+                if (args[0] instanceof Location) {
+                    return new FakeChunk(((Location) args[0]).getBlockX() >> 4, ((Location) args[0]).getBlockZ() >> 4).proxy;
+                }
+                break;
+            case "getBlockAt":
+                if (args.length == 3) {
+                    return getBlock((Integer) args[0], (Integer) args[1], (Integer) args[2]);
+                }
+                Location loc = (Location) args[0];
+                return getBlock(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+            case "getEntities":
+            case "getLivingEntities": {
+                ArrayList<Entity> result = new ArrayList<>(entities.size());
+                for (FakeEntity entity : entities) {
+                    result.add((Entity) entity.proxy);
+                }
+                return result;
+            }
+            case "getNearbyEntities":
+                if (args.length == 4 && args[0] instanceof Location) {
+                    return getNearby((Location) args[0], (Double) args[1], (Double) args[2], (Double) args[3], null);
+                }
+                break;
+            case "rayTraceBlocks":
+                if (args.length >= 3 && args[1] instanceof Vector) {
+                    return rayTrace((Location) args[0], (Vector) args[1], (Double) args[2]);
+                }
+                break;
+            case "spawnEntity":
+                return server.spawnMob((Location) args[0], (EntityType) args[1]).proxy;
+        }
+        return UNHANDLED;
+    }
+
+    @Override
+    public String describe() {
+        return "FakeWorld{" + name + "}";
+    }
+}
@@ -0,0 +1,492 @@
+package org.mcmonkey.sentinel.benchmark;
+
+import net.citizensnpcs.api.CitizensAPI;
+import net.citizensnpcs.api.CitizensPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.mcmonkey.sentinel.SentinelEventHandler;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+import org.mcmonkey.sentinel.metrics.SentinelBenchmark;
+import org.mcmonkey.sentinel.utilities.SentinelExecutor;
+import org.mcmonkey.sentinel.utilities.SentinelVersionCompat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Standalone Sentinel scaling benchmark: runs real Sentinel NPC updates against fake Bukkit/Citizens objects
+ * (see {@link FakeServer}) for a scripted scenario, without a live server, and reports per-tick update cost,
+ * allocations, and combat outcomes.
+ * <p>
+ * Arguments are key=value pairs, see {@link #printUsage()}.
+ */
+public class SentinelBenchmarkHarness {
+
+    /**
+     * A plugin instance that can be constructed outside of a server's plugin loader.
+     */
+    public static class HarnessPlugin extends SentinelPlugin {
+
+        public HarnessPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+            super(loader, description, dataFolder, file);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SentinelBenchmarkHarness harness = new SentinelBenchmarkHarness();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                printUsage();
+                return;
+            }
+            if (!harness.setOption(arg.substring(0, equals).trim(), arg.substring(equals + 1).trim())) {
+                System.err.println("Unknown option: " + arg);
+                printUsage();
+                return;
+            }
+        }
+        try {
+            harness.setUp();
+            harness.run();
+            harness.report();
+        }
+        finally {
+            harness.tearDown();
+        }
+    }
+
+    /**
+     * Prints the accepted arguments.
+     */
+    public static void printUsage() {
+        System.out.println("Usage: SentinelBenchmarkHarness [key=value]...");
+        System.out.println("  npcs=20           number of Sentinel NPCs");
+        System.out.println("  mobs=40           number of hostile mobs");
+        System.out.println("  ticks=1200        measured ticks");
+        System.out.println("  warmup=200        unmeasured ticks run first");
+        System.out.println("  scenario=ring     ring (NPCs in the middle, mobs around), field (random scatter), or wall (two sides of a gapped wall)");
+        System.out.println("  seed=1            random seed for placement");
+        System.out.println("  npctype=SKELETON  NPC entity type");
+        System.out.println("  mobtype=ZOMBIE    mob entity type");
+        System.out.println("  respawnmobs=true  replace killed mobs, to keep the pressure constant");
+        System.out.println("  squads=0          split NPCs across this many squads (0 for none)");
+        System.out.println("  strict=false      fail any Bukkit/Citizens call the fakes don't implement, instead of returning a default value");
+        System.out.println("  csv=<file>        write per-tick costs to a CSV file");
+        System.out.println("  summary=<file>    append one summary row to a CSV file (for scaling curves over several runs)");
+        System.out.println("  config:<path>=<value>  override a Sentinel config.yml value, e.g. 'config:random.worker threads=2'");
+    }
+
+    public int npcCount = 20, mobCount = 40, ticks = 1200, warmup = 200, squads = 0;
+
+    public long seed = 1;
+
+    public String scenario = "ring";
+
+    public EntityType npcType = EntityType.SKELETON, mobType = EntityType.ZOMBIE;
+
+    public boolean respawnMobs = true;
+
+    public String csvFile, summaryFile;
+
+    public LinkedHashMap<String, Object> configOverrides = new LinkedHashMap<>();
+
+    public File dataFolder;
+
+    public FakeServer server;
+
+    public FakeCitizens citizens;
+
+    public FakeWorld world;
+
+    public HarnessPlugin plugin;
+
+    public Random random;
+
+    public ArrayList<FakeNPC> npcs = new ArrayList<>();
+
+    public ArrayList<FakeEntity> mobs = new ArrayList<>();
+
+    /**
+     * Update time (nanoseconds), allocated bytes, and NPC update counts for each measured tick.
+     */
+    public long[] tickNanos, tickBytes, tickUpdates;
+
+    /**
+     * NPC updates that threw an exception.
+     */
+    public long updateErrors = 0;
+
+    /**
+     * Applies one key=value option, returning false if the key is unknown.
+     */
+    public boolean setOption(String key, String value) {
+        if (key.startsWith("config:")) {
+            configOverrides.put(key.substring("config:".length()), parseConfigValue(value));
+            return true;
+        }
+        switch (key.toLowerCase(Locale.ENGLISH)) {
+            case "npcs":
+                npcCount = Integer.parseInt(value);
+                return true;
+            case "mobs":
+                mobCount = Integer.parseInt(value);
+                return true;
+            case "ticks":
+                ticks = Integer.parseInt(value);
+                return true;
+            case "warmup":
+                warmup = Integer.parseInt(value);
+                return true;
+            case "squads":
+                squads = Integer.parseInt(value);
+                return true;
+            case "seed":
+                seed = Long.parseLong(value);
+                return true;
+            case "scenario":
+                scenario = value.toLowerCase(Locale.ENGLISH);
+                return scenario.equals("ring") || scenario.equals("field") || scenario.equals("wall");
+            case "npctype":
+                npcType = EntityType.valueOf(value.toUpperCase(Locale.ENGLISH));
+                return true;
+            case "mobtype":
+                mobType = EntityType.valueOf(value.toUpperCase(Locale.ENGLISH));
+                return true;
+            case "respawnmobs":
+                respawnMobs = Boolean.parseBoolean(value);
+                return true;
+            case "strict":
+                FakeHandler.strict = Boolean.parseBoolean(value);
+                return true;
+            case "csv":
+                csvFile = value;
+                return true;
+            case "summary":
+                summaryFile = value;
+                return true;
+        }
+        return false;
+    }
+
+    private static Object parseConfigValue(String value) {
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException ex) {
+            // Not an int.
+        }
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException ex) {
+            return value;
+        }
+    }
+
+    /**
+     * Sets up the fake server, loads Sentinel, and spawns the scenario.
+     */
+    public void setUp() throws Exception {
+        random = new Random(seed);
+        dataFolder = Files.createTempDirectory("sentinel-benchmark").toFile();
+        File configFile = new File(dataFolder, "config.yml");
+        try (InputStream defaultConfig = SentinelPlugin.class.getResourceAsStream("/config.yml")) {
+            Files.copy(defaultConfig, configFile.toPath());
+        }
+        if (!configOverrides.isEmpty()) {
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(configFile);
+            for (Map.Entry<String, Object> override : configOverrides.entrySet()) {
+                config.set(override.getKey(), override.getValue());
+            }
+            config.save(configFile);
+        }
+        server = new FakeServer();
+        server.scheduler.errorHandler = this::reportError;
+        server.eventBus.errorHandler = this::reportError;
+        // Must happen before anything reads the server version (SentinelVersionCompat's static init does).
+        Bukkit.setServer((Server) server.proxy);
+        citizens = new FakeCitizens();
+        CitizensAPI.setImplementation((CitizensPlugin) citizens.proxy);
+        world = server.createWorld("benchmark");
+        plugin = new HarnessPlugin(new JavaPluginLoader((Server) server.proxy), new PluginDescriptionFile("Sentinel", "benchmark", SentinelPlugin.class.getName()),
+                dataFolder, new File(dataFolder, "Sentinel.jar"));
+        // The same startup steps as SentinelPlugin.onEnable, minus commands, integrations, saved data, and metrics.
+        SentinelPlugin.instance = plugin;
+        SentinelVersionCompat.init();
+        plugin.loadConfigSettings();
+        SentinelExecutor.start(plugin.workerThreads);
+        plugin.startTickTasks();
+        server.eventBus.register(new SentinelEventHandler());
+        spawnScenario();
+    }
+
+    /**
+     * Spawns the NPCs, mobs, and any obstacles for the chosen scenario.
+     */
+    public void spawnScenario() {
+        if (scenario.equals("wall")) {
+            int halfLength = (int) Math.ceil(Math.sqrt(npcCount + mobCount) * 4) + 8;
+            for (int z = -halfLength; z <= halfLength; z++) {
+                if (Math.floorMod(z, 8) == 0) {
+                    continue; // Gaps to fight through.
+                }
+                for (int y = FakeWorld.GROUND_Y; y < FakeWorld.GROUND_Y + 3; y++) {
+                    world.addObstacle(0, y, z);
+                }
+            }
+        }
+        for (int i = 0; i < npcCount; i++) {
+            FakeNPC npc = citizens.createNPC(npcType, "Sentinel" + i);
+            SentinelTrait sentinel = new SentinelTrait();
+            npc.addTrait(sentinel);
+            sentinel.addTarget("monsters");
+            if (squads > 0) {
+                sentinel.squad = "squad" + (i % squads);
+            }
+            npc.spawn(npcLocation(i));
+            npcs.add(npc);
+        }
+        for (int i = 0; i < mobCount; i++) {
+            mobs.add(server.spawnMob(mobLocation(i), mobType));
+        }
+    }
+
+    private Location at(double x, double z) {
+        return new Location((World) world.proxy, x, FakeWorld.GROUND_Y, z);
+    }
+
+    private Location ring(double radius, int index, int count) {
+        double angle = (Math.PI * 2 * index) / Math.max(1, count);
+        return at(Math.cos(angle) * radius, Math.sin(angle) * radius);
+    }
+
+    private double fieldSize() {
+        return Math.sqrt(npcCount + mobCount) * 6 + 8;
+    }
+
+    /**
+     * Gets the spawn location of the NPC with a given index.
+     */
+    public Location npcLocation(int index) {
+        switch (scenario) {
+            case "field":
+                return at((random.nextDouble() - 0.5) * fieldSize(), (random.nextDouble() - 0.5) * fieldSize());
+            case "wall":
+                return at(-2 - random.nextDouble() * fieldSize() * 0.5, (random.nextDouble() - 0.5) * fieldSize());
+            default:
+                return ring(3 + npcCount * 0.15, index, npcCount);
+        }
+    }
+
+    /**
+     * Gets the spawn location for a mob (the index only matters for the ring scenario).
+     */
+    public Location mobLocation(int index) {
+        switch (scenario) {
+            case "field":
+                return at((random.nextDouble() - 0.5) * fieldSize(), (random.nextDouble() - 0.5) * fieldSize());
+            case "wall":
+                return at(2 + random.nextDouble() * fieldSize() * 0.5, (random.nextDouble() - 0.5) * fieldSize());
+            default:
+                return ring(20 + mobCount * 0.1, index, mobCount);
+        }
+    }
+
+    /**
+     * Runs the warmup and measured ticks.
+     */
+    public void run() {
+        tickNanos = new long[ticks];
+        tickBytes = new long[ticks];
+        tickUpdates = new long[ticks];
+        boolean measureAllocations = SentinelBenchmark.measureAllocations();
+        for (int tick = -warmup; tick < ticks; tick++) {
+            long startBytes = measureAllocations ? SentinelBenchmark.getAllocatedBytes() : 0;
+            long startNanos = System.nanoTime();
+            // Measured: everything Sentinel does in one server tick - its own scheduled tasks, then each spawned NPC's trait update.
+            server.scheduler.tick();
+            int updates = 0;
+            for (FakeNPC npc : new ArrayList<>(npcs)) {
+                if (!npc.isSpawned()) {
+                    continue;
+                }
+                SentinelTrait sentinel = (SentinelTrait) npc.traits.get(SentinelTrait.class);
+                if (sentinel == null) {
+                    continue;
+                }
+                try {
+                    sentinel.run();
+                }
+                catch (Throwable ex) {
+                    updateErrors++;
+                    reportError(ex);
+                }
+                updates++;
+            }
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = measureAllocations ? SentinelBenchmark.getAllocatedBytes() - startBytes : 0;
+            if (tick >= 0) {
+                tickNanos[tick] = nanos;
+                tickBytes[tick] = bytes;
+                tickUpdates[tick] = updates;
+            }
+            simulateWorld(tick + warmup);
+        }
+    }
+
+    /**
+     * Not measured: moves navigating NPCs, and runs the mobs' simple AI (walk to the nearest NPC and hit it).
+     */
+    public void simulateWorld(long tick) {
+        for (FakeNPC npc : npcs) {
+            npc.stepNavigation();
+        }
+        for (int i = 0; i < mobs.size(); i++) {
+            FakeEntity mob = mobs.get(i);
+            if (mob.dead) {
+                if (respawnMobs) {
+                    mob = server.spawnMob(mobLocation(i), mobType);
+                    mobs.set(i, mob);
+                }
+                continue;
+            }
+            FakeEntity nearest = null;
+            double nearestDistance = Double.MAX_VALUE;
+            for (Entity nearby : world.getNearby(mob.location, 32, 8, 32, mob)) {
+                FakeEntity other = FakeEntity.of(nearby);
+                if (other == null || other.npc == null || other.dead) {
+                    continue;
+                }
+                double distance = other.location.distanceSquared(mob.location);
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    nearest = other;
+                }
+            }
+            if (nearest == null) {
+                continue;
+            }
+            mob.moveToward(nearest.location, 0.23, 1.0);
+            if (mob.location.distanceSquared(nearest.location) <= 2.5 * 2.5 && tick - mob.lastAttackTick >= 20) {
+                mob.lastAttackTick = tick;
+                ((LivingEntity) mob.proxy).attack((LivingEntity) nearest.proxy);
+            }
+        }
+    }
+
+    private int errorsPrinted = 0;
+
+    /**
+     * Prints an error from Sentinel code (the first few in full).
+     */
+    public void reportError(Throwable ex) {
+        if (errorsPrinted++ < 5) {
+            ex.printStackTrace();
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ENGLISH, "%.3fms", nanos / 1000000.0);
+    }
+
+    /**
+     * Prints the results, and writes the CSV files if requested.
+     */
+    public void report() throws IOException {
+        long[] sorted = Arrays.copyOf(tickNanos, tickNanos.length);
+        Arrays.sort(sorted);
+        long totalNanos = 0, totalBytes = 0, totalUpdates = 0;
+        for (int i = 0; i < ticks; i++) {
+            totalNanos += tickNanos[i];
+            totalBytes += tickBytes[i];
+            totalUpdates += tickUpdates[i];
+        }
+        int measured = Math.max(1, ticks);
+        long average = totalNanos / measured;
+        System.out.println("Scenario: " + scenario + ", " + npcCount + " " + npcType + " NPCs, " + mobCount + " " + mobType + " mobs, "
+                + ticks + " ticks (+" + warmup + " warmup), seed " + seed + (squads > 0 ? ", " + squads + " squads" : ""));
+        System.out.println("NPC updates: " + totalUpdates + " (" + (totalUpdates / measured) + " per tick)");
+        System.out.println("Sentinel time per tick: average " + formatMillis(average) + ", median " + formatMillis(percentile(sorted, 0.5))
+                + ", 95th percentile " + formatMillis(percentile(sorted, 0.95)) + ", 99th percentile " + formatMillis(percentile(sorted, 0.99))
+                + ", max " + formatMillis(percentile(sorted, 1)));
+        if (SentinelBenchmark.measureAllocations()) {
+            System.out.println("Allocated per tick: " + (totalBytes / measured / 1024) + " KiB (" + (totalUpdates == 0 ? 0 : totalBytes / totalUpdates) + " bytes per NPC update)");
+        }
+        System.out.println("Combat (including warmup): " + world.npcKills + " mobs killed by NPCs, " + world.npcDeaths + " NPC deaths, "
+                + String.format(Locale.ENGLISH, "%.0f", world.damageToMobs) + " damage to mobs, " + String.format(Locale.ENGLISH, "%.0f", world.damageToNPCs) + " damage to NPCs");
+        System.out.println("Errors: " + updateErrors + " in NPC updates, " + server.eventBus.handlerErrors + " in event handlers");
+        long unhandled = FakeHandler.getUnhandledCallCount();
+        if (unhandled > 0) {
+            // Timings for code paths that hit these calls ran against stubbed-out behavior.
+            System.out.println("Unhandled fake calls (including warmup): " + unhandled + " total, by method:");
+            ArrayList<Map.Entry<String, Long>> counts = new ArrayList<>();
+            FakeHandler.unhandledCalls.forEach((method, count) -> counts.add(new AbstractMap.SimpleEntry<>(method, count.sum())));
+            counts.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            for (Map.Entry<String, Long> count : counts) {
+                System.out.println("  " + count.getKey() + ": " + count.getValue());
+            }
+        }
+        if (csvFile != null) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(csvFile), StandardCharsets.UTF_8))) {
+                out.println("tick,nanos,bytes,updates");
+                for (int i = 0; i < ticks; i++) {
+                    out.println(i + "," + tickNanos[i] + "," + tickBytes[i] + "," + tickUpdates[i]);
+                }
+            }
+        }
+        if (summaryFile != null) {
+            File summary = new File(summaryFile);
+            boolean newFile = !summary.exists() || summary.length() == 0;
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(summary, true), StandardCharsets.UTF_8))) {
+                if (newFile) {
+                    out.println("scenario,npcs,mobs,squads,ticks,avg_ns,p50_ns,p95_ns,p99_ns,max_ns,bytes_per_tick,updates_per_tick,npc_kills,npc_deaths,errors,unhandled_calls");
+                }
+                out.println(scenario + "," + npcCount + "," + mobCount + "," + squads + "," + ticks + "," + average + "," + percentile(sorted, 0.5) + ","
+                        + percentile(sorted, 0.95) + "," + percentile(sorted, 0.99) + "," + percentile(sorted, 1) + "," + (totalBytes / measured) + ","
+                        + (totalUpdates / measured) + "," + world.npcKills + "," + world.npcDeaths + "," + (updateErrors + server.eventBus.handlerErrors) + "," + unhandled);
+            }
+        }
+    }
+
+    /**
+     * Stops Sentinel's worker threads and deletes the temporary data folder.
+     */
+    public void tearDown() {
+        SentinelExecutor.stop();
+        if (server != null) {
+            server.scheduler.asyncExecutor.shutdownNow();
+        }
+        if (dataFolder != null) {
+            File[] files = dataFolder.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dataFolder.delete();
+        }
+    }
+}
@@ -12,6 +12,9 @@ import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.util.Vector;
 import org.mcmonkey.sentinel.events.SentinelAttackEvent;
+import org.mcmonkey.sentinel.metrics.SentinelFlightRecorder;
+import org.mcmonkey.sentinel.metrics.SentinelMetrics;
+import org.mcmonkey.sentinel.utilities.SentinelTracer;
 import org.mcmonkey.sentinel.utilities.SentinelVersionCompat;
 
 /**
@@ -23,9 +26,20 @@ public class SentinelAttackHelper extends SentinelHelperObject {
      * Causes the NPC to chase a target.
      */
     public void chase(LivingEntity entity) {
-        if (SentinelPlugin.debugMe) {
+        Object jfrEvent = SentinelFlightRecorder.beginPathRequest();
+        SentinelTracer.record(sentinel, SentinelTracer.Code.PATH_REQUEST, entity.getEntityId(), "chase");
+        chaseInternal(entity);
+        SentinelFlightRecorder.endPathRequest(jfrEvent, sentinel, "chase");
+    }
+
+    /**
+     * Internal chase logic.
+     */
+    private void chaseInternal(LivingEntity entity) {
+        if (sentinel.debugMe) {
             debug("Try to begin chasing " + entity.getUniqueId() + "/" + entity.getType().name());
         }
+        SentinelMetrics.pathfindingRequests.increment();
         sentinel.cleverTicks = 0;
         sentinel.chasing = entity;
         sentinel.chased = true;
@@ -84,7 +98,7 @@ public class SentinelAttackHelper extends SentinelHelperObject {
      */
     public void rechase() {
         if (sentinel.chasing != null && (itemHelper.isRanged() ? sentinel.rangedChase : sentinel.closeChase)) {
-            if (SentinelPlugin.debugMe) {
+            if (sentinel.debugMe) {
                 sentinel.debug("Re-chasing own current target");
             }
             chase(sentinel.chasing);
@@ -219,7 +233,7 @@ public class SentinelAttackHelper extends SentinelHelperObject {
         // TODO: Simplify this code!
         sentinel.stats_attackAttempts++;
         double dist = getLivingEntity().getEyeLocation().distanceSquared(entity.getEyeLocation());
-        if (SentinelPlugin.debugMe) {
+        if (sentinel.debugMe) {
             debug("tryAttack at range " + (((int) (Math.sqrt(dist) * 0.1)) * 10));
         }
         if (sentinel.autoswitch && dist > sentinel.reach * sentinel.reach) {
@@ -238,14 +252,14 @@ public class SentinelAttackHelper extends SentinelHelperObject {
         targetingHelper.addTarget(entity.getUniqueId());
         for (SentinelIntegration si : SentinelPlugin.integrations) {
             if (si.tryAttack(sentinel, entity)) {
-                if (SentinelPlugin.debugMe) {
+                if (sentinel.debugMe) {
                     debug("tryAttack overridden by integration " + si.getClass().getName());
                 }
                 return true;
             }
         }
         ItemStack weapon = itemHelper.getHeldItem();
-        if (SentinelPlugin.debugMe) {
+        if (sentinel.debugMe) {
             debug("tryAttack will try weapon " + (weapon == null ? "air" : weapon.getType().name()));
         }
         if (itemHelper.usesBow(weapon)) {
@@ -349,7 +363,7 @@ public class SentinelAttackHelper extends SentinelHelperObject {
             }
             sentinel.swingWeapon();
             entity.getWorld().strikeLightningEffect(entity.getLocation());
-            if (SentinelPlugin.debugMe) {
+            if (sentinel.debugMe) {
                 debug("Lightning hits for " + sentinel.getDamage(false));
             }
             entity.damage(sentinel.getDamage(false));
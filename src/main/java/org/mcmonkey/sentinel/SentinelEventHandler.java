@@ -19,6 +19,8 @@ import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.player.*;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.projectiles.ProjectileSource;
+import org.mcmonkey.sentinel.targeting.SentinelChatIndex;
+import org.mcmonkey.sentinel.targeting.SentinelEquipmentFingerprint;
 import org.mcmonkey.sentinel.utilities.VelocityTracker;
 
 import java.util.ArrayList;
@@ -119,22 +121,7 @@ public class SentinelEventHandler implements Listener {
         if (event.isCancelled()) {
             return;
         }
-        Bukkit.getScheduler().scheduleSyncDelayedTask(SentinelPlugin.instance, new Runnable() {
-            @Override
-            public void run() {
-                if (!event.getPlayer().isOnline()) {
-                    return;
-                }
-                for (SentinelTrait sentinel : cleanCurrentList()) {
-                    if (sentinel.allTargets.isEventTarget(sentinel, event)) {
-                        sentinel.targetingHelper.addTarget(event.getPlayer().getUniqueId());
-                    }
-                    if (sentinel.allAvoids.isEventTarget(sentinel, event)) {
-                        sentinel.targetingHelper.addAvoid(event.getPlayer().getUniqueId());
-                    }
-                }
-            }
-        });
+        SentinelChatIndex.processChat(event.getPlayer(), event.getMessage());
     }
 
     /**
@@ -293,6 +280,7 @@ public class SentinelEventHandler implements Listener {
         if (event.getEntity() instanceof Player) {
             VelocityTracker.playerVelocityEstimates.remove(dead);
         }
+        SentinelEquipmentFingerprint.remove(dead);
         for (SentinelTrait sentinel : cleanCurrentList()) {
             sentinel.whenAnEnemyDies(dead);
             sentinel.whenSomethingDies(event);
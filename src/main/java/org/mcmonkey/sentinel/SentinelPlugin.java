@@ -8,14 +8,26 @@ import net.milkbowl.vault.permission.Permission;
 import org.bukkit.*;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.EntityType;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.mcmonkey.sentinel.commands.SentinelCommand;
 import org.mcmonkey.sentinel.integration.*;
 import org.mcmonkey.sentinel.metrics.BStatsMetricsLite;
+import org.mcmonkey.sentinel.metrics.SentinelBenchmark;
+import org.mcmonkey.sentinel.metrics.SentinelFlightRecorder;
+import org.mcmonkey.sentinel.metrics.SentinelMetrics;
+import org.mcmonkey.sentinel.metrics.SentinelStatsStore;
 import org.mcmonkey.sentinel.metrics.StatsRecord;
+import org.mcmonkey.sentinel.targeting.SentinelChatIndex;
+import org.mcmonkey.sentinel.targeting.SentinelEquipmentFingerprint;
+import org.mcmonkey.sentinel.targeting.SentinelEquipmentListener;
+import org.mcmonkey.sentinel.targeting.SentinelSquadThreatMap;
 import org.mcmonkey.sentinel.targeting.SentinelTarget;
+import org.mcmonkey.sentinel.targeting.SentinelTargetProfile;
 import org.mcmonkey.sentinel.utilities.*;
 
 import java.io.*;
@@ -24,12 +36,29 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The main Sentinel plugin class.
  */
 public class SentinelPlugin extends JavaPlugin {
 
+    /**
+     * Constructs the plugin - should only be called by the server's plugin loader.
+     */
+    public SentinelPlugin() {
+    }
+
+    /**
+     * Constructs the plugin outside of a server's plugin loader (as used by the standalone benchmark harness).
+     */
+    protected SentinelPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
+
     /**
      * A map of all valid event targets.
      */
@@ -201,6 +230,66 @@ public class SentinelPlugin extends JavaPlugin {
      */
     public int arrowCleanupTime;
 
+    /**
+     * Configuration option: how many NPCs to respawn per tick at server startup.
+     */
+    public int startupRespawnsPerTick;
+
+    /**
+     * Configuration option: how often (in ticks) a dormant NPC checks whether anything relevant has come near (0 to disable dormancy).
+     */
+    public int dormancyCheckRate;
+
+    /**
+     * Configuration option: the distance from the nearest player beyond which NPCs use simplified low-detail combat (0 to disable).
+     */
+    public double lowDetailRadius;
+
+    /**
+     * Configuration option: the local port to serve Prometheus-format metrics on (0 to disable).
+     */
+    public int metricsPort;
+
+    /**
+     * Configuration option: the address to bind the metrics endpoint to.
+     */
+    public String metricsBindAddress;
+
+    /**
+     * Configuration option: whether to register a JMX MBean with Sentinel metrics.
+     */
+    public boolean metricsJmx;
+
+    /**
+     * Configuration option: how many records each thread's trace buffer holds.
+     */
+    public int traceBufferSize;
+
+    /**
+     * Configuration option: how many worker threads to use for avoidance pathfinding (0 to pathfind on the main thread).
+     */
+    public int avoidancePathThreads;
+
+    /**
+     * Configuration option: how many worker threads to use for blocking side work, when virtual threads aren't available.
+     */
+    public int workerThreads;
+
+    /**
+     * Worker pool for off-thread avoidance pathfinding, or null if disabled.
+     */
+    public ExecutorService pathingExecutor;
+
+    /**
+     * Configuration option: whether NPCs limited to a WorldGuard region only consider targets within that region.
+     */
+    public boolean worldGuardRegionLimitsTargets;
+
+    /**
+     * The WorldGuard support listener instance, if WorldGuard support is enabled.
+     */
+    public Listener worldGuardHelper;
+
     /**
      * Whether WorldGuard support is loaded and enabled.
      */
@@ -294,6 +383,16 @@ public class SentinelPlugin extends JavaPlugin {
         if(useExperimentalDamage){
             getLogger().info("Using experimental damage calculation!");
         }
+        worldGuardRegionLimitsTargets = getConfig().getBoolean("random.worldguard region limits targets", true);
+        startupRespawnsPerTick = Math.max(1, getConfig().getInt("random.startup respawns per tick", 50));
+        avoidancePathThreads = getConfig().getInt("random.avoidance path threads", 2);
+        workerThreads = getConfig().getInt("random.worker threads", 4);
+        dormancyCheckRate = getConfig().getInt("random.dormancy check rate", 40);
+        lowDetailRadius = getConfig().getDouble("random.low detail radius", 0);
+        metricsPort = getConfig().getInt("random.metrics port", 0);
+        metricsBindAddress = getConfig().getString("random.metrics bind address", "127.0.0.1");
+        metricsJmx = getConfig().getBoolean("random.metrics jmx", false);
+        traceBufferSize = getConfig().getInt("random.trace buffer size", 65536);
         tickRate = getConfig().getInt("update rate", 10);
     }
 
@@ -330,26 +429,61 @@ public class SentinelPlugin extends JavaPlugin {
             e.printStackTrace();
         }
         loadConfigSettings();
+        SentinelExecutor.start(workerThreads);
+        SentinelTargetProfile.loadAll();
+        SentinelStatsStore.load();
+        SentinelMetrics.start(metricsPort, metricsBindAddress, metricsJmx);
+        SentinelFlightRecorder.init();
+        if (avoidancePathThreads > 0 && SentinelVersionCompat.v1_13) {
+            AtomicInteger threadId = new AtomicInteger();
+            pathingExecutor = Executors.newFixedThreadPool(avoidancePathThreads, (runnable) -> {
+                Thread thread = new Thread(runnable, "Sentinel-Pathing-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
         BukkitRunnable postLoad = new BukkitRunnable() {
             @Override
             public void run() {
+                ArrayList<NPC> toSpawn = new ArrayList<>();
                 for (NPC npc : CitizensAPI.getNPCRegistry()) {
                     if (!npc.isSpawned() && npc.hasTrait(SentinelTrait.class)) {
-                        SentinelTrait sentinel = npc.getOrAddTrait(SentinelTrait.class);
-                        if (sentinel.respawnTime > 0) {
+                        toSpawn.add(npc);
+                    }
+                }
+                if (toSpawn.isEmpty()) {
+                    return;
+                }
+                // Spread the respawns over several ticks, to avoid one giant lag spike on servers with many NPCs.
+                Iterator<NPC> spawnIterator = toSpawn.iterator();
+                new BukkitRunnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < startupRespawnsPerTick && spawnIterator.hasNext(); i++) {
+                            NPC npc = spawnIterator.next();
+                            SentinelTrait sentinel = npc.getTraitNullable(SentinelTrait.class);
+                            if (sentinel == null || npc.isSpawned() || sentinel.respawnTime <= 0) {
+                                continue;
+                            }
                             if (sentinel.spawnPoint == null && npc.getStoredLocation() == null) {
                                 getLogger().warning("NPC " + npc.getId() + " has a null spawn point and can't be spawned. Perhaps the world was deleted?");
                                 continue;
                             }
                             npc.spawn(sentinel.spawnPoint == null ? npc.getStoredLocation() : sentinel.spawnPoint);
                         }
+                        if (!spawnIterator.hasNext()) {
+                            cancel();
+                        }
                     }
-                }
+                }.runTaskTimer(SentinelPlugin.this, 1, 1);
             }
         };
         postLoad.runTaskLater(this, 40);
         new SentinelCommand().buildCommandHandler(getCommand("sentinel"));
         Bukkit.getPluginManager().registerEvents(new SentinelEventHandler(), this);
+        if (SentinelVersionCompat.v1_12) {
+            new SentinelEquipmentListener();
+        }
         // bstats.org
         try {
             BStatsMetricsLite metrics = new BStatsMetricsLite(this);
@@ -445,7 +579,7 @@ public class SentinelPlugin extends JavaPlugin {
         }
         if (Bukkit.getPluginManager().getPlugin("WorldGuard") != null) {
             try {
-                new SentinelWorldGuardHelper();
+                worldGuardHelper = new SentinelWorldGuardHelper();
                 hasWorldGuard = true;
                 getLogger().info("Sentinel found WorldGuard! Adding support for it!");
             }
@@ -453,15 +587,28 @@ public class SentinelPlugin extends JavaPlugin {
                 ex.printStackTrace();
             }
         }
+        startTickTasks();
+        SentinelNMSHelper.init();
+        getLogger().info("Sentinel loaded!");
+    }
+
+    /**
+     * Starts Sentinel's global repeating tasks (the tick counter, main-thread queue, and periodic cleanups).
+     */
+    public void startTickTasks() {
         new BukkitRunnable() {
             @Override
             public void run() {
                 tickTimeTotal++;
+                SentinelExecutor.drainMainThreadQueue();
+                SentinelChatIndex.update();
             }
         }.runTaskTimer(this, 1, 1);
         Bukkit.getScheduler().scheduleSyncRepeatingTask(this, VelocityTracker::runAll, 20, 20);
-        SentinelNMSHelper.init();
-        getLogger().info("Sentinel loaded!");
+        Bukkit.getScheduler().scheduleSyncRepeatingTask(this, SentinelEquipmentFingerprint::purgeStale, 20 * 60, 20 * 60);
+        Bukkit.getScheduler().scheduleSyncRepeatingTask(this, SentinelSquadThreatMap::purgeStale, 20 * 60, 20 * 60);
+        Bukkit.getScheduler().scheduleSyncRepeatingTask(this, SentinelSnapshotBlockSource::purgeStale, 20 * 30, 20 * 30);
+        Bukkit.getScheduler().scheduleSyncRepeatingTask(this, () -> SentinelStatsStore.flush(true), SentinelStatsStore.FLUSH_RATE, SentinelStatsStore.FLUSH_RATE);
     }
 
     /**
@@ -470,6 +617,18 @@ public class SentinelPlugin extends JavaPlugin {
     @Override
     public void onDisable() {
         getLogger().info("Sentinel unloading...");
+        if (SentinelBenchmark.current != null) {
+            SentinelBenchmark.current.finish();
+        }
+        SentinelStatsStore.flush(false);
+        SentinelMetrics.stop();
+        SentinelFlightRecorder.shutdown();
+        SentinelTracer.stop();
+        SentinelExecutor.stop();
+        if (pathingExecutor != null) {
+            pathingExecutor.shutdownNow();
+            pathingExecutor = null;
+        }
         getLogger().info("Sentinel unloaded!");
     }
 
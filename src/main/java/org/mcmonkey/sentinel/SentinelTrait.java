@@ -15,9 +15,6 @@ import net.citizensnpcs.api.trait.trait.Owner;
 import net.citizensnpcs.api.trait.trait.Spawned;
 import net.citizensnpcs.api.util.DataKey;
 import net.citizensnpcs.trait.CurrentLocation;
-import net.citizensnpcs.trait.waypoint.WanderWaypointProvider;
-import net.citizensnpcs.trait.waypoint.Waypoint;
-import net.citizensnpcs.trait.waypoint.WaypointProvider;
 import net.citizensnpcs.trait.waypoint.Waypoints;
 import net.citizensnpcs.util.NMS;
 import net.citizensnpcs.util.PlayerAnimation;
@@ -34,19 +31,33 @@ import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.RegisteredListener;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.projectiles.ProjectileSource;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 import org.mcmonkey.sentinel.commands.SentinelCommand;
+import org.mcmonkey.sentinel.events.SentinelAttackEvent;
 import org.mcmonkey.sentinel.events.SentinelCombatStateChangeEvent;
 import org.mcmonkey.sentinel.events.SentinelWantsToPathEvent;
+import org.mcmonkey.sentinel.metrics.SentinelBenchmark;
+import org.mcmonkey.sentinel.metrics.SentinelCostTracker;
+import org.mcmonkey.sentinel.metrics.SentinelFlightRecorder;
+import org.mcmonkey.sentinel.metrics.SentinelMetrics;
+import org.mcmonkey.sentinel.metrics.SentinelStatsStore;
+import org.mcmonkey.sentinel.targeting.SentinelChatIndex;
+import org.mcmonkey.sentinel.targeting.SentinelSquadThreatMap;
 import org.mcmonkey.sentinel.targeting.SentinelTarget;
 import org.mcmonkey.sentinel.targeting.SentinelTargetLabel;
 import org.mcmonkey.sentinel.targeting.SentinelTargetList;
+import org.mcmonkey.sentinel.targeting.SentinelTargetProfile;
 import org.mcmonkey.sentinel.targeting.SentinelTargetingHelper;
+import org.mcmonkey.sentinel.utilities.SentinelDebugScope;
 import org.mcmonkey.sentinel.utilities.SentinelNMSHelper;
+import org.mcmonkey.sentinel.utilities.SentinelTracer;
 import org.mcmonkey.sentinel.utilities.SentinelVersionCompat;
+import org.mcmonkey.sentinel.utilities.SentinelWaypointIndex;
+import org.mcmonkey.sentinel.utilities.SentinelWorldGuardHelper;
 
 import java.util.*;
 
@@ -108,116 +119,159 @@ public class SentinelTrait extends Trait {
 
     /**
      * Statistics value: how long (in ticks) this NPC has ever been in the world, in total.
+     * Statistics values are stored by {@link SentinelStatsStore} rather than the Citizens save data.
      */
-    @Persist("stats_ticksSpawned")
     public long stats_ticksSpawned = 0;
 
     /**
      * Statistics value: how many times this NPC has spawned into the world.
      */
-    @Persist("stats_timesSpawned")
     public long stats_timesSpawned = 0;
 
     /**
      * Statistics value: how many arrows this NPC has fired.
      */
-    @Persist("stats_arrowsFired")
     public long stats_arrowsFired = 0;
 
     /**
      * Statistics value: how many potions this NPC has thrown.
      */
-    @Persist("stats_potionsThrow")
     public long stats_potionsThrown = 0;
 
     /**
      * Statistics value: how many fireballs this NPC has fired.
      */
-    @Persist("stats_fireballsFired")
     public long stats_fireballsFired = 0;
 
     /**
      * Statistics value: how many snowballs this NPC has thrown.
      */
-    @Persist("stats_snowballsThrown")
     public long stats_snowballsThrown = 0;
 
     /**
      * Statistics value: how many eggs this NPC has thrown.
      */
-    @Persist("stats_eggsThrown")
     public long stats_eggsThrown = 0;
 
     /**
      * Statistics value: how many skulls this NPC has thrown.
      */
-    @Persist("stats_skullsThrown")
     public long stats_skullsThrown = 0;
 
     /**
      * Statistics value: how many llama spits this NPC has spit.
      */
-    @Persist("stats_llamaSpitShot")
     public long stats_llamaSpitShot = 0;
 
     /**
      * Statistics value: how many shulker bullets this NPC has shot.
      */
-    @Persist("stats_shulkerBulletsShot")
     public long stats_shulkerBulletsShot = 0;
 
     /**
      * Statistics value: how many evoker fangs this NPC has spawned.
      */
-    @Persist("stats_evokerFangsSpawned")
     public long stats_evokerFangsSpawned = 0;
 
     /**
      * Statistics value: how many pearls this NPC has used.
      */
-    @Persist("stats_pearlsUsed")
     public long stats_pearlsUsed = 0;
 
     /**
      * Statistics value: how many times this NPC has punched a target.
      */
-    @Persist("stats_punches")
     public long stats_punches = 0;
 
     /**
      * Statistics value: how many attacks this NPC has attempted.
      */
-    @Persist("stats_attackAttempts")
     public long stats_attackAttempts = 0;
 
     /**
      * Statistics value: how much damage this NPC has taken.
      */
-    @Persist("stats_damageTaken")
     public double stats_damageTaken = 0;
 
     /**
      * Statistics value: how much damage this NPC has given.
      */
-    @Persist("stats_damageGiven")
     public double stats_damageGiven = 0;
 
     /**
-     * Updater for older Sentinel saves (up to 1.7.2)
+     * The first versioned Sentinel save data layout, which stored target lists as one sub-key per entry.
+     * Saves without a version predate it (up to 1.7.2), and need the legacy updater when loaded.
+     */
+    public static final int FIRST_SCHEMA_VERSION = 1;
+
+    /**
+     * The first save data layout version that stores each target list as a single encoded string (see {@link SentinelTargetList#encode()}).
+     */
+    public static final int ENCODED_TARGETS_SCHEMA_VERSION = 2;
+
+    /**
+     * The current version of the Sentinel save data layout. Saves with an older (or missing) version need legacy updates when loaded.
+     */
+    public static final int SAVE_SCHEMA_VERSION = ENCODED_TARGETS_SCHEMA_VERSION;
+
+    /**
+     * Post-load tasks waiting to run (all run together in a single task, one tick after loading).
+     */
+    private static ArrayList<Runnable> postLoadTasks = new ArrayList<>();
+
+    /**
+     * Queues a task to run shortly after NPCs finish loading. All queued tasks are batched into a single scheduled task.
+     */
+    public static void addPostLoadTask(Runnable task) {
+        if (postLoadTasks.isEmpty()) {
+            Bukkit.getScheduler().runTaskLater(SentinelPlugin.instance, SentinelTrait::runPostLoadTasks, 1);
+        }
+        postLoadTasks.add(task);
+    }
+
+    /**
+     * Runs all queued post-load tasks.
+     */
+    public static void runPostLoadTasks() {
+        ArrayList<Runnable> tasks = postLoadTasks;
+        postLoadTasks = new ArrayList<>();
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            }
+            catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Loads non-annotated data, and runs the updater for older Sentinel saves (up to 1.7.2) if needed.
      */
     @Override
     public void load(final DataKey key) {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                updateOld(key);
-            }
-        }.runTaskLater(SentinelPlugin.instance, 1);
+        SentinelStatsStore.loadFor(this, key);
+        if (key.getInt("schema_version", 0) < FIRST_SCHEMA_VERSION) {
+            addPostLoadTask(() -> updateOld(key));
+        }
     }
 
     @Override
     public void save(DataKey key) {
+        SentinelStatsStore.removeLegacyKeys(this, key);
+        int schemaVersion = key.getInt("schema_version", 0);
+        if (schemaVersion == SAVE_SCHEMA_VERSION) {
+            return;
+        }
+        key.setInt("schema_version", SAVE_SCHEMA_VERSION);
+        if (schemaVersion >= FIRST_SCHEMA_VERSION) {
+            // Target lists move to the encoded layout as they save themselves; only unversioned saves have legacy keys to remove.
+            return;
+        }
         for (DataKey subkey : key.getSubKeys()) {
+            if (subkey.name().equals("allTargets") || subkey.name().equals("allIgnores")) {
+                continue;
+            }
             if (subkey.name().equals("targets")
                     || subkey.name().equals("ignores")
                     || subkey.name().endsWith("Targets")
@@ -231,6 +285,9 @@ public class SentinelTrait extends Trait {
      * Updater for older Sentinel saves (up to 1.7.2)
      */
     public void updateOld(DataKey key) {
+        if (getTargetProfile() != null) {
+            return;
+        }
         for (DataKey subkey : key.getSubKeys()) {
             if (subkey.name().equals("targets")) {
                 for (DataKey listEntry : subkey.getSubKeys()) {
@@ -253,27 +310,76 @@ public class SentinelTrait extends Trait {
         }
     }
 
+    /**
+     * The list of targets. May be shared with a target profile: call {@link #unshareTargetLists()} before editing it directly.
+     */
     @Persist("allTargets")
     public SentinelTargetList allTargets = new SentinelTargetList();
 
+    /**
+     * The list of ignores. May be shared with a target profile: call {@link #unshareTargetLists()} before editing it directly.
+     */
     @Persist("allIgnores")
     public SentinelTargetList allIgnores = new SentinelTargetList();
 
+    /**
+     * The list of avoids. May be shared with a target profile: call {@link #unshareTargetLists()} before editing it directly.
+     */
     @Persist("allAvoids")
     public SentinelTargetList allAvoids = new SentinelTargetList();
 
     public static class SentinelTargetListPersister implements Persister<SentinelTargetList> {
         @Override
         public SentinelTargetList create(DataKey dataKey) {
-            SentinelTargetList list = PersistenceLoader.load(new SentinelTargetList(), dataKey);
-            list.init();
-            return list;
+            String profileName = dataKey.getString("profile", null);
+            if (profileName != null) {
+                SentinelTargetProfile profile = SentinelTargetProfile.getProfile(profileName);
+                SentinelTargetList list = profile == null ? null : profile.getListForKey(dataKey.name());
+                if (list != null) {
+                    return list;
+                }
+                SentinelPlugin.instance.getLogger().warning("Sentinel NPC uses target profile '" + profileName + "' which does not exist. Target list '" + dataKey.name() + "' will be empty.");
+                return new SentinelTargetList();
+            }
+            return SentinelTargetList.loadFrom(dataKey);
         }
 
         @Override
         public void save(SentinelTargetList o, DataKey dataKey) {
-            PersistenceLoader.save(o, dataKey);
+            if (o.getSharedProfile() != null) {
+                for (DataKey subKey : dataKey.getSubKeys()) {
+                    dataKey.removeKey(subKey.name());
+                }
+                dataKey.setString("profile", o.getSharedProfile().name);
+                return;
+            }
+            // Skip rewriting a list that hasn't changed, if the key already holds it.
+            String encoded = o.encode();
+            if (o.needsSaveTo(dataKey, encoded)) {
+                o.saveTo(dataKey, encoded);
+            }
+        }
+    }
+
+    /**
+     * Gets the target profile this NPC's target lists are shared from, if any.
+     */
+    public SentinelTargetProfile getTargetProfile() {
+        return allTargets.getSharedProfile();
+    }
+
+    /**
+     * Ensures this NPC has its own copy of its target lists (copy-on-write), rather than a copy shared from a target profile.
+     * Must be called before editing the target lists.
+     */
+    public void unshareTargetLists() {
+        SentinelTargetProfile profile = getTargetProfile();
+        if (profile == null) {
+            return;
         }
+        allTargets = SentinelTargetProfile.copyList(allTargets);
+        allIgnores = SentinelTargetProfile.copyList(allIgnores);
+        allAvoids = SentinelTargetProfile.copyList(allAvoids);
     }
 
     static {
@@ -284,6 +390,7 @@ public class SentinelTrait extends Trait {
      * Adds a new target (by target description string).
      */
     public void addTarget(String target) {
+        unshareTargetLists();
         new SentinelTargetLabel(target).addToList(allTargets);
     }
 
@@ -291,6 +398,7 @@ public class SentinelTrait extends Trait {
      * Adds a new ignore (by target description string).
      */
     public void addIgnore(String target) {
+        unshareTargetLists();
         new SentinelTargetLabel(target).addToList(allIgnores);
     }
 
@@ -298,6 +406,7 @@ public class SentinelTrait extends Trait {
      * Adds a new avoid-target (by target description string).
      */
     public void addAvoid(String target) {
+        unshareTargetLists();
         new SentinelTargetLabel(target).addToList(allAvoids);
     }
 
@@ -305,6 +414,7 @@ public class SentinelTrait extends Trait {
      * Removes a target (by target description string).
      */
     public void removeTarget(String target) {
+        unshareTargetLists();
         new SentinelTargetLabel(target).removeFromList(allTargets);
     }
 
@@ -312,6 +422,7 @@ public class SentinelTrait extends Trait {
      * Removes an ignore (by target description string).
      */
     public void removeIgnore(String target) {
+        unshareTargetLists();
         new SentinelTargetLabel(target).removeFromList(allIgnores);
     }
 
@@ -319,6 +430,7 @@ public class SentinelTrait extends Trait {
      * Removes an avoid-target (by target description string).
      */
     public void removeAvoid(String target) {
+        unshareTargetLists();
         new SentinelTargetLabel(target).removeFromList(allAvoids);
     }
 
@@ -620,6 +732,11 @@ public class SentinelTrait extends Trait {
      */
     public Object worldguardRegionCache = null;
 
+    /**
+     * Cache object, refer to 'worldguardRegion'.
+     */
+    public Object worldguardRegionBoundsCache = null;
+
     /**
      * The target entity this NPC is chasing (if any).
      */
@@ -640,7 +757,7 @@ public class SentinelTrait extends Trait {
             }
             return;
         }
-        if (SentinelPlugin.debugMe && !isBlocking) {
+        if (debugMe && !isBlocking) {
             debug("I'm scared! I'll block with my shield!");
         }
 
@@ -656,7 +773,7 @@ public class SentinelTrait extends Trait {
         if (!isBlocking) {
             return;
         }
-        if (SentinelPlugin.debugMe) {
+        if (debugMe) {
             debug("I'll put my shield down.");
         }
         isBlocking = false;
@@ -742,7 +859,8 @@ public class SentinelTrait extends Trait {
      * Called when this sentinel gets hurt.
      */
     public void whenImHurt(EntityDamageEvent event) {
-        if (SentinelPlugin.debugMe) {
+        wakeUp();
+        if (debugMe) {
             debug("I'm hurt! By " + event.getCause().name() + " for " + event.getFinalDamage() + " hp");
         }
         switch (event.getCause()) {
@@ -815,6 +933,7 @@ public class SentinelTrait extends Trait {
                 && event.getDamager() instanceof Player && npc.getOrAddTrait(Owner.class).isOwnedBy(event.getDamager().getUniqueId())
                 && CitizensAPI.getDefaultNPCSelector().getSelected(event.getDamager()) == npc) {
             hasShownFreshInitWarn = true;
+            allIgnores.ensureInit();
             if (allIgnores.totalTargetsCount() == 1 && allIgnores.targetsProcessed.contains(SentinelTarget.OWNER)) {
                 event.getDamager().sendMessage(SentinelCommand.prefixGood + "Notice: if this is your first time setting up this NPC, don't forget to use "
                         + SentinelCommand.colorEmphasis + "/sentinel removeignore owner" + SentinelCommand.colorBasic
@@ -889,7 +1008,7 @@ public class SentinelTrait extends Trait {
         if (!npc.isSpawned()) {
             return;
         }
-        if (SentinelPlugin.debugMe) {
+        if (debugMe) {
             debug("Damage from me to " + event.getEntityType().name() + " of cause " + event.getCause().name());
         }
         // NPCs can mis-invoke sweep damage - this is never a wanted/intended effect, so discard it asap.
@@ -908,7 +1027,7 @@ public class SentinelTrait extends Trait {
                         weaponHelper.knockback((LivingEntity) event.getEntity(), 1f);
                     }
                 }
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     debug("enforce damage value to " + event.getFinalDamage());
                 }
             }
@@ -932,7 +1051,7 @@ public class SentinelTrait extends Trait {
         }
         else{
             double damage = getDamage(false);
-            if (SentinelPlugin.debugMe) {
+            if (debugMe) {
                 debug("correct base damage to " + damage);
             }
             event.setDamage(EntityDamageEvent.DamageModifier.BASE, damage);
@@ -949,7 +1068,7 @@ public class SentinelTrait extends Trait {
         if (!npc.isSpawned()) {
             return;
         }
-        if (SentinelPlugin.debugMe) {
+        if (debugMe) {
             debug("Damage from my projectile to " + event.getEntityType().name() + " of cause " + event.getCause().name());
         }
         if (SentinelPlugin.instance.alternateDamage) {
@@ -962,12 +1081,12 @@ public class SentinelTrait extends Trait {
                         weaponHelper.knockback((LivingEntity) event.getEntity(), 1f);
                     }
                 }
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     debug("enforce damage value to " + getDamage(true));
                 }
             }
             else {
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     debug("refuse damage enforcement");
                 }
             }
@@ -982,7 +1101,7 @@ public class SentinelTrait extends Trait {
         for (EntityDamageEvent.DamageModifier mod : EntityDamageEvent.DamageModifier.values()) {
             if (mod != EntityDamageEvent.DamageModifier.BASE && event.isApplicable(mod)) {
                 event.setDamage(mod, event.getDamage(mod) * rel);
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     debug("Set damage for " + mod + " to " + event.getDamage(mod));
                 }
             }
@@ -1042,7 +1161,7 @@ public class SentinelTrait extends Trait {
         }
         if (isMe || isFriend) {
             if (attackerIsMe) {
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     debug("Ignoring damage I did to " + (isMe ? "myself." : "my friend."));
                 }
                 event.setCancelled(true);
@@ -1063,7 +1182,7 @@ public class SentinelTrait extends Trait {
                 }
             }
             if (fightback && (damager instanceof LivingEntity) && !targetingHelper.isIgnored((LivingEntity) damager)) {
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     debug("Fighting back against attacker: " + damager.getUniqueId() + "! They hurt " + (isMe ? "me!" : "my friend!"));
                 }
                 targetingHelper.addTarget(damager.getUniqueId());
@@ -1073,7 +1192,7 @@ public class SentinelTrait extends Trait {
                     }
                 }
             }
-            if (SentinelPlugin.debugMe && isMe) {
+            if (debugMe && isMe) {
                 debug("Took damage of " + event.getFinalDamage() + " with currently remaining health " + getLivingEntity().getHealth() + (isKilling ? ". This will kill me." : "."));
             }
             if (isKilling && isMe && SentinelPlugin.instance.blockEvents) {
@@ -1096,7 +1215,7 @@ public class SentinelTrait extends Trait {
             stats_damageGiven += event.getFinalDamage();
             if (!enemyDrops && event.getEntity().getType() != EntityType.PLAYER) {
                 needsDropsClear.add(event.getEntity().getUniqueId());
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     debug("This " + event.getEntity().getType() + " with id " + event.getEntity().getUniqueId() + " is being tracked for potential drops removal.");
                 }
             }
@@ -1169,6 +1288,7 @@ public class SentinelTrait extends Trait {
         guardSelectionRange = SentinelPlugin.instance.guardDistanceSelectionRange;
         if (npc.isSpawned()) {
             SentinelPlugin.instance.currentSentinelNPCs.add(this);
+            SentinelChatIndex.markDirty();
             lastEntityUUID = getLivingEntity().getUniqueId();
         }
     }
@@ -1179,6 +1299,7 @@ public class SentinelTrait extends Trait {
     @Override
     public void onRemove() {
         SentinelPlugin.instance.currentSentinelNPCs.remove(this);
+        SentinelChatIndex.markDirty();
         if (!invincible) {
             npc.setProtected(true);
         }
@@ -1470,7 +1591,7 @@ public class SentinelTrait extends Trait {
      * Marks that the NPC can see a target (Changes the state of some entity types, eg opening a shulker box).
      */
     public void specialMarkVision() {
-        if (SentinelPlugin.debugMe && !visionMarked) {
+        if (debugMe && !visionMarked) {
             debug("Target! I see you, " + (chasing == null ? "(Unknown)" : chasing.getName()));
         }
         if (SentinelVersionCompat.v1_11 && getLivingEntity().getType() == EntityType.SHULKER) {
@@ -1488,7 +1609,7 @@ public class SentinelTrait extends Trait {
      * Marks that the NPC can no longer see a target (Changes the state of some entity types, eg closing a shulker box).
      */
     public void specialUnmarkVision() {
-        if (SentinelPlugin.debugMe && visionMarked) {
+        if (debugMe && visionMarked) {
             debug("Goodbye, visible target " + (chasing == null ? "(Unknown)" : chasing.getName()));
         }
         if (SentinelVersionCompat.v1_11 && getLivingEntity().getType() == EntityType.SHULKER) {
@@ -1534,6 +1655,14 @@ public class SentinelTrait extends Trait {
         if (crsq > 0 && near != null && near.distanceSquared(loc) > crsq) {
             return false;
         }
+        // Skip firing the event when nothing other than Sentinel's own WorldGuard support is listening.
+        RegisteredListener[] listeners = SentinelWantsToPathEvent.getHandlerList().getRegisteredListeners();
+        if (listeners.length == 0) {
+            return true;
+        }
+        if (listeners.length == 1 && listeners[0].getListener() == SentinelPlugin.instance.worldGuardHelper) {
+            return SentinelWorldGuardHelper.isInRegion(this, loc);
+        }
         SentinelWantsToPathEvent event = new SentinelWantsToPathEvent(getNPC(), loc);
         Bukkit.getPluginManager().callEvent(event);
         return !event.isCancelled();
@@ -1625,7 +1754,11 @@ public class SentinelTrait extends Trait {
      * Runs a full update cycle on the NPC.
      */
     public void runUpdate() {
+        long phaseTime = System.nanoTime();
         // Basic prep and tracking
+        allTargets.ensureInit();
+        allIgnores.ensureInit();
+        allAvoids.ensureInit();
         canEnforce = true;
         ticksSinceLastBurn += SentinelPlugin.instance.tickRate;
         timeSinceAttack += SentinelPlugin.instance.tickRate;
@@ -1633,7 +1766,7 @@ public class SentinelTrait extends Trait {
         LivingEntity guarded = getGuardingEntity();
         // Protection against falling below the world
         if (getLivingEntity().getLocation().getY() <= SentinelUtilities.getMinWorldHeight(getLivingEntity().getWorld())) {
-            if (SentinelPlugin.debugMe) {
+            if (debugMe) {
                 debug("Injuring self, I'm below the map!");
             }
             getLivingEntity().damage(1);
@@ -1674,6 +1807,28 @@ public class SentinelTrait extends Trait {
         else if (otherBehaviorPaused) {
             unpauseWaypoints();
         }
+        // Low-detail combat, when no player is close enough to see the result
+        double lowDetailRadius = SentinelPlugin.instance.lowDetailRadius;
+        if (guarded == null && lowDetailRadius > 0 && !isPlayerWithin(lowDetailRadius)) {
+            phaseTime = costs.markPhase(SentinelCostTracker.PHASE_UPKEEP, phaseTime);
+            if (!lowDetail) {
+                enterLowDetail();
+            }
+            targetingHelper.updateAvoids();
+            if (targetingHelper.processLowDetailAvoidance()) {
+                needsSafeReturn = true;
+            }
+            else {
+                if (needsSafeReturn && !npc.getNavigator().isNavigating()) {
+                    returnToPost();
+                }
+                runLowDetailCombat();
+            }
+            costs.markPhase(SentinelCostTracker.PHASE_LOW_DETAIL, phaseTime);
+            return;
+        }
+        lowDetail = false;
+        phaseTime = costs.markPhase(SentinelCostTracker.PHASE_UPKEEP, phaseTime);
         // Targets updating
         targetingHelper.updateTargets();
         targetingHelper.updateAvoids();
@@ -1683,14 +1838,17 @@ public class SentinelTrait extends Trait {
                 chasing = null;
             }
         }
+        phaseTime = costs.markPhase(SentinelCostTracker.PHASE_TARGET_UPDATES, phaseTime);
         targetingHelper.processAllMultiTargets();
+        phaseTime = costs.markPhase(SentinelCostTracker.PHASE_MULTI_TARGETS, phaseTime);
         LivingEntity target = targetingHelper.findBestTarget();
+        phaseTime = costs.markPhase(SentinelCostTracker.PHASE_TARGET_SEARCH, phaseTime);
         if (target != null) {
-            if (SentinelPlugin.debugMe) {
+            if (debugMe) {
                 debug("target selected to be " + target.getName());
             }
             if (canPathTo(target.getLocation())) {
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     Location near = nearestPathPoint();
                     debug("Attack target within range of safe zone: " + (near == null ? "Any" : near.distanceSquared(target.getLocation())));
                 }
@@ -1732,7 +1890,18 @@ public class SentinelTrait extends Trait {
         }
         else if (chasing == null) {
             specialUnmarkVision();
+            SentinelSquadThreatMap squadMap = guarded == null && pathingTo == null ? SentinelSquadThreatMap.getFor(this) : null;
+            Location search = squadMap == null ? null : squadMap.getSearchLocation(this);
+            if (search != null) {
+                if (debugMe) {
+                    debug("Searching for a hidden enemy at its last known position " + search.toVector().toBlockVector().toString());
+                }
+                pathTo(search);
+                chased = true;
+                goHome = false;
+            }
         }
+        phaseTime = costs.markPhase(SentinelCostTracker.PHASE_ATTACK, phaseTime);
         // Special guarding handling
         if (guarded != null) {
             Location myLoc = getLivingEntity().getLocation();
@@ -1750,7 +1919,7 @@ public class SentinelTrait extends Trait {
                         npc.getNavigator().getDefaultParameters().stuckAction(TeleportStuckAction.INSTANCE);
                     }
                     Location picked = SentinelUtilities.pickNear(guarded.getLocation(), guardSelectionRange);
-                    if (SentinelPlugin.debugMe) {
+                    if (debugMe) {
                         debug("Guard movement chosen to go to " + picked.toVector().toBlockVector().toString());
                     }
                     npc.getNavigator().setTarget(picked);
@@ -1762,8 +1931,10 @@ public class SentinelTrait extends Trait {
             needsSafeReturn = true;
             goHome = false;
         }
+        phaseTime = costs.markPhase(SentinelCostTracker.PHASE_GUARDING, phaseTime);
         // Avoidance handling
         targetingHelper.processAvoidance();
+        phaseTime = costs.markPhase(SentinelCostTracker.PHASE_AVOIDANCE, phaseTime);
         if (pathingTo != null) {
             goHome = false;
             needsSafeReturn = true;
@@ -1776,7 +1947,7 @@ public class SentinelTrait extends Trait {
         if (goHome && chaseRange > 0 && target == null && needsSafeReturn) {
             Location near = nearestPathPoint();
             if (near != null && (chasing == null || !canPathTo(chasing.getLocation()))) {
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     if (near.distanceSquared(getLivingEntity().getLocation()) > 3 * 3) {
                         debug("screw you guys, I'm going home!");
                     }
@@ -1795,7 +1966,7 @@ public class SentinelTrait extends Trait {
                     npc.getNavigator().cancelNavigation();
                     needsSafeReturn = false;
                 }
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     if (near != null && near.distanceSquared(getLivingEntity().getLocation()) > 3 * 3) {
                         debug("I'll just stand here and hope they come out...");
                     }
@@ -1806,6 +1977,143 @@ public class SentinelTrait extends Trait {
             npc.getNavigator().cancelNavigation();
             needsSafeReturn = false;
         }
+        costs.markPhase(SentinelCostTracker.PHASE_MOVEMENT, phaseTime);
+    }
+
+    /**
+     * Whether this NPC is currently using simplified low-detail combat (because no player is near).
+     */
+    public boolean lowDetail = false;
+
+    /**
+     * Returns whether any real (non-NPC) player is within the given distance of this NPC.
+     */
+    public boolean isPlayerWithin(double distance) {
+        Location myLoc = getLivingEntity().getLocation();
+        double distanceSquared = distance * distance;
+        for (Player player : myLoc.getWorld().getPlayers()) {
+            if (!player.hasMetadata("NPC") && player.getLocation().distanceSquared(myLoc) < distanceSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Switches this NPC into low-detail combat: drops any chase and heads back to its post (if any).
+     */
+    public void enterLowDetail() {
+        lowDetail = true;
+        if (debugMe) {
+            debug("No players near, switching to low-detail combat.");
+        }
+        specialUnmarkVision();
+        chasing = null;
+        pathingTo = null;
+        cleverTicks = 0;
+        if (needsSafeReturn) {
+            returnToPost();
+        }
+    }
+
+    /**
+     * Heads back to the nearest point on this NPC's path (if chasing is enabled), or stops moving, for low-detail combat.
+     */
+    public void returnToPost() {
+        Location near = chaseRange > 0 ? nearestPathPoint() : null;
+        if (near != null) {
+            npc.getNavigator().setTarget(near);
+            autoSpeedModifier();
+        }
+        else if (npc.getNavigator().isNavigating()) {
+            npc.getNavigator().cancelNavigation();
+        }
+        needsSafeReturn = false;
+        chased = false;
+    }
+
+    /**
+     * Runs simplified low-detail combat: picks the nearest valid target within reach (or range, if ranged; players only if they are current targets, eg from fightback),
+     * and damages it as an attack from this NPC at the normal attack rate (so armor, kill credit, drops, and stats apply as normal).
+     * Damage from mobs attacking this NPC is resolved the same way, from their attack damage and this NPC's armor.
+     * No line-of-sight checks, projectiles, or pathfinding are used.
+     */
+    public void runLowDetailCombat() {
+        targetingHelper.updateTargets();
+        LivingEntity self = getLivingEntity();
+        Location pos = self.getLocation();
+        takeLowDetailDamage(self, pos);
+        if (!self.isValid()) {
+            return;
+        }
+        boolean ranged = itemHelper.isRanged();
+        double maxDist = ranged ? range : reach;
+        LivingEntity target = null;
+        double closest = maxDist * maxDist;
+        for (Entity loopEnt : targetingHelper.getNearbyTargetCandidates(pos)) {
+            if (!(loopEnt instanceof LivingEntity) || loopEnt.isDead()) {
+                continue;
+            }
+            if (loopEnt instanceof Player && !targetingHelper.isCurrentTarget(loopEnt.getUniqueId())) {
+                continue;
+            }
+            double dist = loopEnt.getLocation().distanceSquared(pos);
+            if (dist < closest && targetingHelper.shouldTarget((LivingEntity) loopEnt)) {
+                closest = dist;
+                target = (LivingEntity) loopEnt;
+            }
+        }
+        if (target == null) {
+            return;
+        }
+        if (timeSinceAttack < (ranged ? attackRateRanged : attackRate)) {
+            return;
+        }
+        SentinelAttackEvent sat = new SentinelAttackEvent(npc, target);
+        Bukkit.getPluginManager().callEvent(sat);
+        if (sat.isCancelled()) {
+            return;
+        }
+        timeSinceAttack = 0;
+        stats_attackAttempts++;
+        double damage = getDamage(ranged);
+        if (debugMe) {
+            debug("Low-detail attack on " + target.getType().name() + " for " + damage);
+        }
+        faceLocation(target.getEyeLocation());
+        target.damage(damage, self);
+    }
+
+    /**
+     * Applies the damage this NPC is expected to take over one update from mobs attacking it in melee (their attack damage per second, reduced by this NPC's armor).
+     * The damage is taken directly from health, so that armor is not applied a second time.
+     */
+    public void takeLowDetailDamage(LivingEntity self, Location pos) {
+        if (invincible) {
+            return;
+        }
+        double total = 0;
+        for (Entity entity : self.getNearbyEntities(3, 3, 3)) {
+            if (!(entity instanceof Mob) || entity.isDead() || ((Mob) entity).getTarget() != self) {
+                continue;
+            }
+            if (entity.getLocation().distanceSquared(pos) > 3 * 3) {
+                continue;
+            }
+            if (((Mob) entity).getAttribute(Attribute.GENERIC_ATTACK_DAMAGE) == null) {
+                continue;
+            }
+            total += ((Mob) entity).getAttribute(Attribute.GENERIC_ATTACK_DAMAGE).getValue();
+        }
+        if (total <= 0) {
+            return;
+        }
+        double damage = total * (1 - getArmor(self)) * SentinelPlugin.instance.tickRate / 20.0;
+        if (debugMe) {
+            debug("Low-detail damage taken from attackers: " + damage);
+        }
+        stats_damageTaken += damage;
+        self.setHealth(Math.max(0, self.getHealth() - damage));
     }
 
     /**
@@ -1830,6 +2138,11 @@ public class SentinelTrait extends Trait {
         return getLivingEntity().getLocation();
     }
 
+    /**
+     * Spatial index of this NPC's waypoints, for {@link #nearestPathPoint()}.
+     */
+    public SentinelWaypointIndex waypointIndex = new SentinelWaypointIndex();
+
     /**
      * Gets the nearest pathing point to this NPC.
      */
@@ -1840,45 +2153,105 @@ public class SentinelTrait extends Trait {
         if (getGuarding() != null) {
             return null;
         }
-        Location baseloc = getLivingEntity().getLocation();
-        Location nearest = null;
-        double dist = MAX_DIST;
         Waypoints wp = npc.getOrAddTrait(Waypoints.class);
-        if (wp.getCurrentProvider() instanceof WaypointProvider.EnumerableWaypointProvider) {
-            for (Waypoint wayp : ((WaypointProvider.EnumerableWaypointProvider) wp.getCurrentProvider()).waypoints()) {
-                Location l = wayp.getLocation();
-                if (!l.getWorld().equals(baseloc.getWorld())) {
-                    continue;
-                }
-                double d = baseloc.distanceSquared(l);
-                if (d < dist) {
-                    dist = d;
-                    nearest = l;
+        return waypointIndex.nearest(wp.getCurrentProvider(), getLivingEntity().getLocation(), MAX_DIST);
+    }
+
+    /**
+     * Tick counter for the {@code run} method.
+     */
+    public int cTick = 0;
+
+    /**
+     * Tracks the CPU cost of this NPC's updates (see '/sentinel top').
+     */
+    public SentinelCostTracker costs = new SentinelCostTracker();
+
+    /**
+     * Whether this NPC is currently dormant (idle with nothing relevant nearby), and thus skipping its regular updates.
+     */
+    public boolean dormant = false;
+
+    /**
+     * The server tick at which to next check whether this NPC should go dormant (or wake up, if dormant).
+     */
+    public long nextDormancyCheck = 0;
+
+    /**
+     * Wakes the NPC from dormancy (if dormant), so that it resumes regular updates immediately.
+     */
+    public void wakeUp() {
+        if (!dormant) {
+            return;
+        }
+        dormant = false;
+        SentinelTracer.record(this, SentinelTracer.Code.DORMANCY, 0, null);
+        cTick = SentinelPlugin.instance.tickRate;
+        nextDormancyCheck = SentinelPlugin.instance.tickTimeTotal + SentinelPlugin.instance.dormancyCheckRate;
+        if (debugMe) {
+            debug("Waking up from dormancy.");
+        }
+    }
+
+    /**
+     * Gets the range within which a player or relevant entity keeps this NPC awake.
+     */
+    public double getDormancyWakeRange() {
+        return Math.max(range, Math.max(avoidRange, greetRange));
+    }
+
+    /**
+     * Returns whether a nearby entity is relevant enough to keep this NPC awake: any real player,
+     * or any entity that could be targeted or avoided.
+     */
+    public boolean isDormancyRelevant(LivingEntity entity) {
+        if (entity instanceof Player && !entity.hasMetadata("NPC")) {
+            return true;
+        }
+        HashSet<SentinelTarget> possible = SentinelPlugin.entityToTargets.get(entity.getType());
+        if (possible != null) {
+            allTargets.ensureInit();
+            allAvoids.ensureInit();
+            for (SentinelTarget poss : possible) {
+                if (allTargets.targetsProcessed.contains(poss) || allAvoids.targetsProcessed.contains(poss)) {
+                    return true;
                 }
             }
         }
-        else if (wp.getCurrentProvider() instanceof WanderWaypointProvider) {
-            for (Location loc : ((WanderWaypointProvider) wp.getCurrentProvider()).getRegionCentres()) {
-                if (!loc.getWorld().equals(baseloc.getWorld())) {
-                    continue;
-                }
-                double d = baseloc.distanceSquared(loc);
-                if (d < dist) {
-                    dist = d;
-                    nearest = loc;
-                }
+        // Only fall back to the full target checks if the lists have anything that isn't a plain entity type.
+        if (allTargets.totalTargetsCount() > allTargets.targets.size() || !allTargets.byMultiple.isEmpty()) {
+            if (targetingHelper.shouldTarget(entity)) {
+                return true;
             }
         }
-        else {
-            return null;
+        if (allAvoids.totalTargetsCount() > allAvoids.targets.size() || !allAvoids.byMultiple.isEmpty()) {
+            if (targetingHelper.shouldAvoid(entity)) {
+                return true;
+            }
         }
-        return nearest;
+        return false;
     }
 
     /**
-     * Tick counter for the {@code run} method.
+     * Returns whether this NPC has nothing to do and nothing relevant nearby, and so can go dormant.
      */
-    public int cTick = 0;
+    public boolean shouldBeDormant() {
+        if (chasing != null || otherBehaviorPaused || getGuarding() != null
+                || !targetingHelper.currentTargets.isEmpty() || !targetingHelper.currentAvoids.isEmpty()) {
+            return false;
+        }
+        LivingEntity entity = getLivingEntity();
+        if (entity.getHealth() < entity.getMaxHealth()) {
+            return false;
+        }
+        double wakeRange = getDormancyWakeRange();
+        for (Entity nearby : entity.getNearbyEntities(wakeRange, wakeRange, wakeRange)) {
+            if (nearby instanceof LivingEntity && nearby != entity && isDormancyRelevant((LivingEntity) nearby)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     /**
      * Called every tick to run Sentinel updates if needed.
@@ -1889,10 +2262,59 @@ public class SentinelTrait extends Trait {
             return;
         }
         stats_ticksSpawned++;
+        int dormancyCheckRate = SentinelPlugin.instance.dormancyCheckRate;
+        if (dormant) {
+            if (dormancyCheckRate <= 0) {
+                wakeUp();
+            }
+            else if (SentinelPlugin.instance.tickTimeTotal < nextDormancyCheck) {
+                return;
+            }
+            else if (shouldBeDormant()) {
+                nextDormancyCheck = SentinelPlugin.instance.tickTimeTotal + dormancyCheckRate;
+                return;
+            }
+            else {
+                wakeUp();
+            }
+        }
         cTick++;
         if (cTick >= SentinelPlugin.instance.tickRate) {
             cTick = 0;
-            runUpdate();
+            refreshDebug();
+            SentinelBenchmark benchmark = SentinelBenchmark.current;
+            long startBytes = benchmark != null && SentinelBenchmark.measureAllocations() ? SentinelBenchmark.getAllocatedBytes() : 0;
+            long phasedBefore = costs.getPhasedNanos();
+            long startNanos = System.nanoTime();
+            Object jfrEvent = SentinelFlightRecorder.beginUpdate(costs);
+            SentinelCostTracker.active = costs;
+            try {
+                runUpdate();
+            }
+            finally {
+                SentinelCostTracker.active = null;
+            }
+            long nanos = System.nanoTime() - startNanos;
+            costs.recordUpdate(nanos, phasedBefore);
+            SentinelFlightRecorder.endUpdate(jfrEvent, this);
+            SentinelTracer.record(this, SentinelTracer.Code.UPDATE, nanos, null);
+            SentinelMetrics.updates.increment();
+            if (SentinelMetrics.enabled) {
+                SentinelMetrics.updateLatency.observe(nanos);
+            }
+            if (benchmark != null) {
+                benchmark.recordUpdate(nanos, SentinelBenchmark.measureAllocations() ? SentinelBenchmark.getAllocatedBytes() - startBytes : 0);
+            }
+            if (dormancyCheckRate > 0 && npc.isSpawned() && SentinelPlugin.instance.tickTimeTotal >= nextDormancyCheck) {
+                nextDormancyCheck = SentinelPlugin.instance.tickTimeTotal + dormancyCheckRate;
+                if (shouldBeDormant()) {
+                    dormant = true;
+                    SentinelTracer.record(this, SentinelTracer.Code.DORMANCY, 1, null);
+                    if (debugMe) {
+                        debug("Nothing relevant nearby, going dormant.");
+                    }
+                }
+            }
         }
     }
 
@@ -1912,7 +2334,9 @@ public class SentinelTrait extends Trait {
     @Override
     public void onSpawn() {
         isBlocking = false;
+        dormant = false;
         lastEntityUUID = getLivingEntity().getUniqueId();
+        refreshDebug();
         stats_timesSpawned++;
         setHealth(health);
         setInvincible(invincible);
@@ -1921,6 +2345,7 @@ public class SentinelTrait extends Trait {
             respawnMe = null;
         }
         SentinelPlugin.instance.currentSentinelNPCs.add(this);
+        SentinelChatIndex.markDirty();
     }
 
     /**
@@ -1965,6 +2390,12 @@ public class SentinelTrait extends Trait {
             return;
         }
         double dist = event.getTo().distanceSquared(getLivingEntity().getLocation());
+        if (dormant) {
+            double wakeRange = getDormancyWakeRange();
+            if (dist < wakeRange * wakeRange) {
+                wakeUp();
+            }
+        }
         boolean known = greetedAlready.contains(event.getPlayer().getUniqueId());
         if (dist < greetRange * greetRange && !known && targetingHelper.canSee(event.getPlayer())) {
             greetedAlready.add(event.getPlayer().getUniqueId());
@@ -1999,17 +2430,33 @@ public class SentinelTrait extends Trait {
         if (!needsDropsClear.contains(mightDie)) {
             return;
         }
-        if (SentinelPlugin.debugMe) {
+        if (debugMe) {
             debug("ID " + mightDie + " is no longer being tracked.");
         }
         needsDropsClear.remove(mightDie);
     }
 
+    /**
+     * Whether debug output is enabled for this NPC (see {@link SentinelDebugScope}, and {@link SentinelTracer#tracesDebug(SentinelTrait)}). Refreshed each update.
+     */
+    public boolean debugMe = false;
+
+    /**
+     * Updates whether debug output is enabled for this NPC.
+     */
+    public void refreshDebug() {
+        debugMe = SentinelPlugin.debugMe || SentinelTracer.tracesDebug(this) || (SentinelDebugScope.isActive() && SentinelDebugScope.includes(this));
+    }
+
     /**
      * Outputs a debug message (if debug is enabled).
      */
     public void debug(String message) {
-        if (SentinelPlugin.debugMe) {
+        if (debugMe) {
+            if (SentinelTracer.tracesDebug(this)) {
+                SentinelTracer.record(this, SentinelTracer.Code.MESSAGE, 0, message);
+                return;
+            }
             SentinelPlugin.instance.getLogger().info("Sentinel Debug: " + npc.getId() + "/" + npc.getName() + ": " + message);
         }
     }
@@ -2041,7 +2488,7 @@ public class SentinelTrait extends Trait {
      * Called when the NPC dies.
      */
     public void whenWeDie(EntityDeathEvent event) {
-        if (SentinelPlugin.debugMe) {
+        if (debugMe) {
             debug("Died! Death event received.");
         }
         event.getDrops().clear();
@@ -2084,7 +2531,7 @@ public class SentinelTrait extends Trait {
         if (needsDropsClear.contains(id)) {
             needsDropsClear.remove(id);
             if (event.getEntity().getType() != EntityType.PLAYER) {
-                if (SentinelPlugin.debugMe) {
+                if (debugMe) {
                     debug("A " + event.getEntity().getType() + " with id " + id + " died. Clearing its drops.");
                 }
                 event.getDrops().clear();
@@ -2092,7 +2539,7 @@ public class SentinelTrait extends Trait {
             }
         }
         else {
-            if (SentinelPlugin.debugMe) {
+            if (debugMe) {
                 debug("A " + event.getEntity().getType() + " with id " + id + " died, but that's none of my business.");
             }
         }
@@ -2163,6 +2610,7 @@ public class SentinelTrait extends Trait {
         targetingHelper.currentTargets.clear();
         targetingHelper.currentAvoids.clear();
         SentinelPlugin.instance.currentSentinelNPCs.remove(this);
+        SentinelChatIndex.markDirty();
     }
 
     /**
@@ -2171,7 +2619,7 @@ public class SentinelTrait extends Trait {
     public void setHealth(double heal) {
         health = heal;
         if (npc.isSpawned()) {
-            if (SentinelPlugin.debugMe) {
+            if (debugMe) {
                 debug("Setting spawned NPC health to " + health);
             }
             getLivingEntity().setMaxHealth(health);
@@ -2193,6 +2641,7 @@ public class SentinelTrait extends Trait {
     public boolean validateOnList() {
         if (npc == null || !npc.isSpawned() || getLivingEntity() == null) {
             SentinelPlugin.instance.currentSentinelNPCs.remove(this);
+            SentinelChatIndex.markDirty();
             return false;
         }
         return true;
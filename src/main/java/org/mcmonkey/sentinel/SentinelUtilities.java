@@ -17,6 +17,8 @@ import org.bukkit.inventory.*;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.util.RayTraceResult;
 import org.bukkit.util.Vector;
+import org.mcmonkey.sentinel.metrics.SentinelFlightRecorder;
+import org.mcmonkey.sentinel.metrics.SentinelMetrics;
 import org.mcmonkey.sentinel.utilities.SentinelVersionCompat;
 import org.mcmonkey.sentinel.utilities.VelocityTracker;
 
@@ -173,28 +175,89 @@ public class SentinelUtilities {
     }
 
     /**
-     * Look up table for pre-compiled regex values.
+     * Maximum number of compiled regexes to keep in {@link #regexes}.
      */
-    public static HashMap<String, Pattern> regexes = new HashMap<>(128);
+    public static final int REGEX_CACHE_SIZE = 1024;
+
+    /**
+     * Look up table for pre-compiled regex values. Bounded (least recently used values are dropped first).
+     * Compiled target lists hold their own patterns, so this mostly serves one-off lookups.
+     * Synchronize on the map when accessing it directly, as it can be used from off-thread work.
+     */
+    public static HashMap<String, Pattern> regexes = new LinkedHashMap<String, Pattern>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > REGEX_CACHE_SIZE;
+        }
+    };
 
     /**
      * Gets a compiled regex pattern for a string of the regex.
      * More efficient than recompiling every-time due to lookup-table usage.
      */
     public static Pattern regexFor(String input) {
-        Pattern result = regexes.get(input);
+        HashMap<String, Pattern> cache = regexes;
+        Pattern result;
+        synchronized (cache) {
+            result = cache.get(input);
+        }
         if (result != null) {
+            SentinelMetrics.regexCacheHits.increment();
             return result;
         }
+        SentinelMetrics.regexCacheMisses.increment();
         result = Pattern.compile(input, Pattern.CASE_INSENSITIVE);
-        regexes.put(input, result);
+        synchronized (cache) {
+            cache.put(input, result);
+        }
         return result;
     }
 
+    /**
+     * Returns whether a regex value is a plain literal (printable ASCII with no regex special characters),
+     * meaning it can be matched with a simple case-insensitive substring check.
+     */
+    public static boolean isLiteralRegex(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c < ' ' || c > '~' || "\\^$.|?*+()[]{}".indexOf(c) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lowercases only the ASCII letters of a string (matching the case folding of {@link Pattern#CASE_INSENSITIVE}).
+     * Returns null if the string contains a line terminator (which a '.*' regex wouldn't match across).
+     */
+    public static String asciiLowerCaseSingleLine(String text) {
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return null;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars == null ? text : new String(chars);
+    }
+
     /**
      * Returns whether a regex value match the string.
      */
     public static boolean isRegexTarget(String name, String regex) {
+        if (isLiteralRegex(regex)) {
+            String lowerName = asciiLowerCaseSingleLine(name);
+            if (lowerName != null) {
+                return lowerName.contains(asciiLowerCaseSingleLine(regex));
+            }
+        }
         Pattern pattern = SentinelUtilities.regexFor(".*" + regex + ".*");
         return pattern.matcher(name).matches();
     }
@@ -531,10 +594,16 @@ public class SentinelUtilities {
      * Does a line-of-sight check between entities, allowing for transparent blocks (like glass).
      */
     public static boolean checkLineOfSightWithTransparency(LivingEntity start, LivingEntity end) {
+        Object jfrEvent = SentinelFlightRecorder.beginLineOfSight();
+        boolean result;
         if (!SentinelVersionCompat.v1_13) {
-            return start.hasLineOfSight(end);
+            result = start.hasLineOfSight(end);
         }
-        return checkLineOfSightWithTransparency(start.getEyeLocation(), end.getEyeLocation());
+        else {
+            result = checkLineOfSightWithTransparency(start.getEyeLocation(), end.getEyeLocation());
+        }
+        SentinelFlightRecorder.endLineOfSight(jfrEvent, start, end, result, !SentinelVersionCompat.v1_13);
+        return result;
     }
 
     /**
@@ -17,8 +17,11 @@ import org.bukkit.potion.PotionData;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionType;
 import org.bukkit.util.Vector;
+import org.mcmonkey.sentinel.metrics.SentinelFlightRecorder;
+import org.mcmonkey.sentinel.metrics.SentinelMetrics;
 import org.mcmonkey.sentinel.targeting.SentinelTarget;
 import org.mcmonkey.sentinel.utilities.SentinelNMSHelper;
+import org.mcmonkey.sentinel.utilities.SentinelTracer;
 import org.mcmonkey.sentinel.utilities.SentinelVersionCompat;
 
 import java.util.Collection;
@@ -29,6 +32,15 @@ import java.util.HashMap;
  */
 public class SentinelWeaponHelper extends SentinelHelperObject {
 
+    /**
+     * Records a fired projectile to the metrics, flight recorder, and tracer.
+     */
+    public void recordProjectile(String projectile) {
+        SentinelMetrics.projectilesFired.increment();
+        SentinelFlightRecorder.projectileFired(sentinel, projectile);
+        SentinelTracer.record(sentinel, SentinelTracer.Code.PROJECTILE, 0, projectile);
+    }
+
     public static final EntityType LINGERING_POTION, TIPPED_ARROW;
 
     static {
@@ -55,6 +67,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
             potion.setType(Material.SPLASH_POTION);
         }
         sentinel.stats_potionsThrown++;
+        recordProjectile("potion");
         HashMap.SimpleEntry<Location, Vector> start = sentinel.getLaunchDetail(target, lead);
         Entity entpotion;
         if (SentinelVersionCompat.v1_14 || !SentinelVersionCompat.v1_9) {
@@ -95,6 +108,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
         }
         Vector velocity = sentinel.fixForAcc(baseVelocity);
         sentinel.stats_arrowsFired++;
+        recordProjectile("arrow");
         Entity arrow;
         if (SentinelVersionCompat.v1_9) {
             if (SentinelVersionCompat.v1_14) {
@@ -118,7 +132,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
                     if (type.getItemMeta() instanceof PotionMeta) {
                         PotionData data = ((PotionMeta) type.getItemMeta()).getBasePotionData();
                         if (data.getType() == null || data.getType() == PotionType.UNCRAFTABLE) {
-                            if (SentinelPlugin.debugMe) {
+                            if (sentinel.debugMe) {
                                 sentinel.debug("Potion data '" + data + "' for '" + type.toString() + "' is invalid.");
                             }
                         }
@@ -167,6 +181,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
     public void fireSnowball(Location target) {
         sentinel.swingWeapon();
         sentinel.stats_snowballsThrown++;
+        recordProjectile("snowball");
         sentinel.faceLocation(target);
         Vector forward = getLivingEntity().getEyeLocation().getDirection();
         Location spawnAt = getLivingEntity().getEyeLocation().clone().add(forward.clone().multiply(sentinel.firingMinimumRange()));
@@ -184,6 +199,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
         }
         sentinel.swingWeapon();
         sentinel.stats_arrowsFired++;
+        recordProjectile("arrow");
         sentinel.faceLocation(target);
         Vector forward = getLivingEntity().getEyeLocation().getDirection();
         Location spawnAt = getLivingEntity().getEyeLocation().clone().add(forward.clone().multiply(sentinel.firingMinimumRange() + 2));
@@ -201,6 +217,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
     public void fireEgg(Location target) {
         sentinel.swingWeapon();
         sentinel.stats_eggsThrown++;
+        recordProjectile("egg");
         sentinel.faceLocation(target);
         Vector forward = getLivingEntity().getEyeLocation().getDirection();
         Location spawnAt = getLivingEntity().getEyeLocation().clone().add(forward.clone().multiply(sentinel.firingMinimumRange()));
@@ -217,6 +234,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
         sentinel.faceLocation(target.getEyeLocation());
         // TODO: Maybe require entity is-on-ground?
         sentinel.stats_pearlsUsed++;
+        recordProjectile("ender_pearl");
         target.setVelocity(target.getVelocity().add(new Vector(0, sentinel.getDamage(true), 0)));
     }
 
@@ -226,6 +244,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
     public void fireFireball(Location target) {
         sentinel.swingWeapon();
         sentinel.stats_fireballsFired++;
+        recordProjectile("fireball");
         sentinel.faceLocation(target);
         Vector forward = getLivingEntity().getEyeLocation().getDirection();
         Location spawnAt = getLivingEntity().getEyeLocation().clone().add(forward.clone().multiply(sentinel.firingMinimumRange()));
@@ -240,6 +259,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
     public void fireSkull(Location target) {
         sentinel.swingWeapon();
         sentinel.stats_skullsThrown++;
+        recordProjectile("wither_skull");
         sentinel.faceLocation(target);
         Vector forward = getLivingEntity().getEyeLocation().getDirection();
         Location spawnAt = getLivingEntity().getEyeLocation().clone().add(forward.clone().multiply(sentinel.firingMinimumRange()));
@@ -254,6 +274,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
     public void fireLlamaSpit(Location target) {
         sentinel.swingWeapon();
         sentinel.stats_llamaSpitShot++;
+        recordProjectile("llama_spit");
         sentinel.faceLocation(target);
         Vector forward = getLivingEntity().getEyeLocation().getDirection();
         Location spawnAt = getLivingEntity().getEyeLocation().clone().add(forward.clone().multiply(sentinel.firingMinimumRange()));
@@ -268,6 +289,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
     public void fireShulkerBullet(LivingEntity entity) {
         sentinel.swingWeapon();
         sentinel.stats_shulkerBulletsShot++;
+        recordProjectile("shulker_bullet");
         sentinel.faceLocation(entity.getEyeLocation());
         Vector forward = getLivingEntity().getEyeLocation().getDirection();
         Location spawnAt = getLivingEntity().getEyeLocation().clone().add(forward.clone().multiply(sentinel.firingMinimumRange()));
@@ -283,6 +305,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
     public void fireEvokerFangs(Location target) {
         sentinel.swingWeapon();
         sentinel.stats_evokerFangsSpawned++;
+        recordProjectile("evoker_fangs");
         sentinel.faceLocation(target);
         if (SentinelVersionCompat.v1_13) {
             getLivingEntity().getWorld().spawnParticle(Particle.SPELL, getLivingEntity().getEyeLocation().add(0, 1, 0), 10, 1, 1, 1);
@@ -314,7 +337,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
         sentinel.stats_punches++;
         if (SentinelPlugin.instance.workaroundDamage) {
             double damage = sentinel.getDamage(false);
-            if (SentinelPlugin.debugMe) {
+            if (sentinel.debugMe) {
                 debug("workaround damage value at " + damage + " yields " + ((damage * (1.0 - sentinel.getArmor(entity)))));
             }
             if (!sentinel.enemyDrops) {
@@ -340,7 +363,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
                 }
             }
             double damage = sentinel.getDamage(false);
-            if (SentinelPlugin.debugMe) {
+            if (sentinel.debugMe) {
                 debug("Punch/natural for " + damage);
             }
             entity.damage(damage, getLivingEntity());
@@ -403,7 +426,7 @@ public class SentinelWeaponHelper extends SentinelHelperObject {
         relative.setX(relative.getX() * force);
         relative.setZ(relative.getZ() * force);
         entity.setVelocity(entity.getVelocity().multiply(0.25).add(relative));
-        if (SentinelPlugin.debugMe) {
+        if (sentinel.debugMe) {
             debug("applied knockback velocity adder of " + relative);
         }
     }
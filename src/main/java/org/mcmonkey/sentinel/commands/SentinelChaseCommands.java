@@ -64,6 +64,7 @@ public class SentinelChaseCommands {
         }
         if (args.argsLength() <= 1) {
             sentinel.worldguardRegionCache = null;
+            sentinel.worldguardRegionBoundsCache = null;
             sentinel.worldguardRegion = null;
             sender.sendMessage(SentinelCommand.prefixGood + "WorldGuard region limit disabled.");
             return;
@@ -75,6 +76,7 @@ public class SentinelChaseCommands {
         }
         sentinel.worldguardRegion = args.getString(1);
         sentinel.worldguardRegionCache = region;
+        sentinel.worldguardRegionBoundsCache = null;
         sender.sendMessage(SentinelCommand.prefixGood + "WorldGuard region limit set!");
     }
 
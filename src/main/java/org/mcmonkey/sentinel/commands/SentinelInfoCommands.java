@@ -4,18 +4,29 @@ import net.citizensnpcs.api.CitizensAPI;
 import net.citizensnpcs.api.command.Command;
 import net.citizensnpcs.api.command.CommandContext;
 import net.citizensnpcs.api.command.Requirements;
+import net.citizensnpcs.api.npc.NPC;
 import net.citizensnpcs.api.util.Paginator;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
 import org.mcmonkey.sentinel.SentinelPlugin;
 import org.mcmonkey.sentinel.SentinelTrait;
+import org.mcmonkey.sentinel.metrics.SentinelBenchmark;
+import org.mcmonkey.sentinel.metrics.SentinelCostTracker;
+import org.mcmonkey.sentinel.metrics.SentinelStatsStore;
+import org.mcmonkey.sentinel.utilities.SentinelDebugScope;
+import org.mcmonkey.sentinel.utilities.SentinelTracer;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.UUID;
 
 public class SentinelInfoCommands {
 
@@ -124,14 +135,265 @@ public class SentinelInfoCommands {
         sender.sendMessage(SentinelCommand.prefixGood + "Damage Taken: " + SentinelCommand.colorEmphasis + sentinel.stats_damageTaken);
         double minutesSpawned = sentinel.stats_ticksSpawned / (20.0 * 60.0);
         sender.sendMessage(SentinelCommand.prefixGood + "Minutes spawned: " + SentinelCommand.colorEmphasis + twoDigitFormat.format(minutesSpawned));
+        SentinelStatsStore.StatsValues record = SentinelStatsStore.getRecord(sentinel);
+        if (record != null) {
+            long minute = SentinelStatsStore.currentMinute();
+            sendStatsHistory(sender, "Attack attempts", record, SentinelStatsStore.SERIES_ATTACKS, minute);
+            sendStatsHistory(sender, "Damage given", record, SentinelStatsStore.SERIES_DAMAGE_GIVEN, minute);
+            sendStatsHistory(sender, "Damage taken", record, SentinelStatsStore.SERIES_DAMAGE_TAKEN, minute);
+        }
+    }
+
+    /**
+     * Sends a line of recent history (rates and trend) for one stats series.
+     */
+    public static void sendStatsHistory(CommandSender sender, String label, SentinelStatsStore.StatsValues record, int series, long minute) {
+        double lastFiveMinutes = record.sumMinutes(series, 5, minute);
+        double lastHour = record.sumMinutes(series, 60, minute);
+        double lastDay = record.sumHours(series, 24, minute / 60);
+        double hourlyAverage = lastDay / 24;
+        String trend = lastHour > hourlyAverage * 1.1 ? "rising" : (lastHour < hourlyAverage * 0.9 ? "falling" : "steady");
+        sender.sendMessage(SentinelCommand.prefixGood + label + " per minute (last 5 min): " + SentinelCommand.colorEmphasis + twoDigitFormat.format(lastFiveMinutes / 5)
+                + SentinelCommand.colorBasic + ", last hour: " + SentinelCommand.colorEmphasis + twoDigitFormat.format(lastHour)
+                + SentinelCommand.colorBasic + ", last 24 hours: " + SentinelCommand.colorEmphasis + twoDigitFormat.format(lastDay)
+                + SentinelCommand.colorBasic + " (" + trend + ")");
     }
 
-    @Command(aliases = {"sentinel"}, usage = "debug",
-            desc = "Toggles debugging.",
-            modifiers = {"debug"}, permission = "sentinel.debug", min = 1, max = 1)
+    @Command(aliases = {"sentinel"}, usage = "debug ['npc' [ID]...]/['near' [RADIUS]]/['off']",
+            desc = "Toggles debugging, for all NPCs or only selected ones.",
+            modifiers = {"debug"}, permission = "sentinel.debug", min = 1)
     public void debug(CommandContext args, CommandSender sender) {
-        SentinelPlugin.debugMe = !SentinelPlugin.debugMe;
-        sender.sendMessage(SentinelCommand.prefixGood + "Toggled: " + SentinelPlugin.debugMe + "!");
+        if (args.argsLength() == 1) {
+            SentinelPlugin.debugMe = !SentinelPlugin.debugMe;
+            SentinelDebugScope.refreshAll();
+            sender.sendMessage(SentinelCommand.prefixGood + "Toggled: " + SentinelPlugin.debugMe + "!");
+            return;
+        }
+        String mode = args.getString(1).toLowerCase();
+        if (mode.equals("off")) {
+            SentinelPlugin.debugMe = false;
+            SentinelDebugScope.clear();
+            SentinelDebugScope.refreshAll();
+            sender.sendMessage(SentinelCommand.prefixGood + "Debugging disabled for all NPCs.");
+        }
+        else if (mode.equals("npc")) {
+            ArrayList<Integer> ids = new ArrayList<>();
+            if (args.argsLength() == 2) {
+                NPC selected = CitizensAPI.getDefaultNPCSelector().getSelected(sender);
+                if (selected == null) {
+                    sender.sendMessage(SentinelCommand.prefixBad + "No NPC selected, and no NPC IDs given.");
+                    return;
+                }
+                ids.add(selected.getId());
+            }
+            for (int i = 2; i < args.argsLength(); i++) {
+                try {
+                    ids.add(Integer.parseInt(args.getString(i)));
+                }
+                catch (NumberFormatException ex) {
+                    sender.sendMessage(SentinelCommand.prefixBad + "Invalid NPC ID: " + args.getString(i));
+                    return;
+                }
+            }
+            for (int id : ids) {
+                if (!SentinelDebugScope.npcIds.remove(id)) {
+                    SentinelDebugScope.npcIds.add(id);
+                }
+            }
+            SentinelDebugScope.refreshAll();
+            sender.sendMessage(SentinelCommand.prefixGood + "Now debugging NPC IDs: " + SentinelCommand.colorEmphasis + SentinelDebugScope.npcIds);
+        }
+        else if (mode.equals("near")) {
+            if (!(sender instanceof Player)) {
+                sender.sendMessage(SentinelCommand.prefixBad + "Only players can debug NPCs near themselves.");
+                return;
+            }
+            UUID id = ((Player) sender).getUniqueId();
+            if (id.equals(SentinelDebugScope.nearPlayer) && args.argsLength() == 2) {
+                SentinelDebugScope.nearPlayer = null;
+                SentinelDebugScope.refreshAll();
+                sender.sendMessage(SentinelCommand.prefixGood + "No longer debugging NPCs near you.");
+                return;
+            }
+            double radius = 16;
+            if (args.argsLength() > 2) {
+                try {
+                    radius = Double.parseDouble(args.getString(2));
+                }
+                catch (NumberFormatException ex) {
+                    sender.sendMessage(SentinelCommand.prefixBad + "Invalid radius: " + args.getString(2));
+                    return;
+                }
+            }
+            SentinelDebugScope.nearPlayer = id;
+            SentinelDebugScope.nearRadius = radius;
+            SentinelDebugScope.refreshAll();
+            sender.sendMessage(SentinelCommand.prefixGood + "Now debugging NPCs within " + SentinelCommand.colorEmphasis + radius
+                    + SentinelCommand.colorBasic + " blocks of you.");
+        }
+        else {
+            sender.sendMessage(SentinelCommand.prefixBad + "Unknown debug mode. Use 'npc', 'near', or 'off'.");
+        }
+    }
+
+    @Command(aliases = {"sentinel"}, usage = "top [COUNT]/['reset'/'detail']",
+            desc = "Lists the Sentinel NPCs that cost the most server time, and what they spend it on.",
+            modifiers = {"top"}, permission = "sentinel.top", min = 1, max = 2)
+    public void top(CommandContext args, CommandSender sender) {
+        if (args.argsLength() > 1 && args.getString(1).equalsIgnoreCase("reset")) {
+            for (SentinelTrait sentinel : SentinelPlugin.instance.currentSentinelNPCs) {
+                sentinel.costs.reset();
+            }
+            sender.sendMessage(SentinelCommand.prefixGood + "Cost tracking reset for all NPCs.");
+            return;
+        }
+        if (args.argsLength() > 1 && args.getString(1).equalsIgnoreCase("detail")) {
+            SentinelCostTracker.detailed = !SentinelCostTracker.detailed;
+            sender.sendMessage(SentinelCommand.prefixGood + "Per-target-category cost tracking is now " + (SentinelCostTracker.detailed ? "enabled." : "disabled."));
+            return;
+        }
+        int count = 10;
+        if (args.argsLength() > 1) {
+            try {
+                count = Integer.parseInt(args.getString(1));
+            }
+            catch (NumberFormatException ex) {
+                sender.sendMessage(SentinelCommand.prefixBad + "Invalid number input.");
+                return;
+            }
+        }
+        ArrayList<SentinelTrait> sentinels = new ArrayList<>(SentinelPlugin.instance.currentSentinelNPCs);
+        sentinels.sort((a, b) -> Long.compare(b.costs.totalNanos, a.costs.totalNanos));
+        long allNanos = 0;
+        for (SentinelTrait sentinel : sentinels) {
+            allNanos += sentinel.costs.totalNanos;
+        }
+        if (allNanos == 0) {
+            sender.sendMessage(SentinelCommand.prefixBad + "No NPC update costs have been tracked yet.");
+            return;
+        }
+        sender.sendMessage(SentinelCommand.prefixGood + "Most expensive Sentinel NPCs (total " + SentinelCommand.colorEmphasis + formatMillis(allNanos)
+                + SentinelCommand.colorBasic + ", per-category tracking " + (SentinelCostTracker.detailed ? "on" : "off - use '/sentinel top detail'") + "):");
+        for (int i = 0; i < count && i < sentinels.size(); i++) {
+            SentinelCostTracker costs = sentinels.get(i).costs;
+            if (costs.totalNanos == 0) {
+                break;
+            }
+            int topPhase = costs.getTopPhase();
+            StringBuilder line = new StringBuilder();
+            line.append(SentinelCommand.prefixGood).append("NPC ").append(sentinels.get(i).getNPC().getId()).append(" (").append(ChatColor.RESET)
+                    .append(sentinels.get(i).getNPC().getFullName()).append(SentinelCommand.colorBasic).append("): ").append(SentinelCommand.colorEmphasis)
+                    .append(percent(costs.totalNanos, allNanos)).append(SentinelCommand.colorBasic).append(" of all, ").append(SentinelCommand.colorEmphasis)
+                    .append(formatMillis(costs.totalNanos / Math.max(1, costs.updates))).append(SentinelCommand.colorBasic).append(" per update, ")
+                    .append(SentinelCommand.colorEmphasis).append(percent(costs.phaseNanos[topPhase], costs.totalNanos)).append(SentinelCommand.colorBasic)
+                    .append(" in ").append(SentinelCostTracker.PHASE_NAMES[topPhase]);
+            String topCategory = costs.getTopCategory();
+            if (topCategory != null) {
+                line.append(", ").append(SentinelCommand.colorEmphasis).append(percent(costs.categoryNanos.get(topCategory), costs.totalNanos))
+                        .append(SentinelCommand.colorBasic).append(" in ").append(topCategory).append(" targets");
+            }
+            sender.sendMessage(line.toString());
+        }
+    }
+
+    private static String percent(long part, long total) {
+        return (int) (part * 100.0 / Math.max(1, total)) + "%";
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.3fms", nanos / 1000000.0);
+    }
+
+    @Command(aliases = {"sentinel"}, usage = "benchmark [TICKS] [NPCS] [MOBS] [MOB_TYPE]",
+            desc = "Measures Sentinel update costs over a number of ticks, optionally with temporary NPC copies and mobs.",
+            modifiers = {"benchmark"}, permission = "sentinel.benchmark", min = 1, max = 5)
+    public void benchmark(CommandContext args, CommandSender sender) {
+        if (SentinelBenchmark.current != null) {
+            sender.sendMessage(SentinelCommand.prefixBad + "A benchmark is already running.");
+            return;
+        }
+        int ticks, npcs, mobs;
+        try {
+            ticks = args.argsLength() > 1 ? Integer.parseInt(args.getString(1)) : 200;
+            npcs = args.argsLength() > 2 ? Integer.parseInt(args.getString(2)) : 0;
+            mobs = args.argsLength() > 3 ? Integer.parseInt(args.getString(3)) : 0;
+        }
+        catch (NumberFormatException ex) {
+            sender.sendMessage(SentinelCommand.prefixBad + "Invalid number input.");
+            return;
+        }
+        if (ticks <= 0 || npcs < 0 || mobs < 0) {
+            sender.sendMessage(SentinelCommand.prefixBad + "Numbers must not be negative, and ticks must be above zero.");
+            return;
+        }
+        EntityType mobType = EntityType.ZOMBIE;
+        if (args.argsLength() > 4) {
+            try {
+                mobType = EntityType.valueOf(args.getString(4).toUpperCase());
+            }
+            catch (IllegalArgumentException ex) {
+                sender.sendMessage(SentinelCommand.prefixBad + "Unknown entity type.");
+                return;
+            }
+        }
+        SentinelBenchmark benchmark = new SentinelBenchmark(sender, ticks);
+        if (npcs > 0 || mobs > 0) {
+            NPC selected = CitizensAPI.getDefaultNPCSelector().getSelected(sender);
+            SentinelTrait sentinel = selected == null ? null : selected.getTraitNullable(SentinelTrait.class);
+            if (sentinel == null || !selected.isSpawned()) {
+                sender.sendMessage(SentinelCommand.prefixBad + "Select a spawned Sentinel NPC to use as the scenario template.");
+                return;
+            }
+            benchmark.spawnScenario(sentinel, npcs, mobs, mobType);
+        }
+        benchmark.start();
+        sender.sendMessage(SentinelCommand.prefixGood + "Benchmark started for " + ticks + " ticks...");
+    }
+
+    @Command(aliases = {"sentinel"}, usage = "trace ['start'/'stop'/'dump'] [FILTERS]",
+            desc = "Records a trace of NPC activity to an in-memory buffer, and dumps it to a file.",
+            modifiers = {"trace"}, permission = "sentinel.trace", min = 2)
+    public void trace(CommandContext args, CommandSender sender) {
+        String action = args.getString(1).toLowerCase();
+        if (action.equals("start")) {
+            HashSet<Integer> npcs = new HashSet<>();
+            HashSet<String> categories = new HashSet<>();
+            for (int i = 2; i < args.argsLength(); i++) {
+                String filter = args.getString(i).toLowerCase();
+                if (filter.startsWith("npc:")) {
+                    try {
+                        npcs.add(Integer.parseInt(filter.substring("npc:".length())));
+                    }
+                    catch (NumberFormatException ex) {
+                        sender.sendMessage(SentinelCommand.prefixBad + "Invalid NPC ID: " + filter.substring("npc:".length()));
+                        return;
+                    }
+                }
+                else {
+                    categories.add(filter);
+                }
+            }
+            SentinelTracer.start(npcs, categories, SentinelPlugin.instance.traceBufferSize);
+            SentinelDebugScope.refreshAll();
+            sender.sendMessage(SentinelCommand.prefixGood + "Trace started" + (npcs.isEmpty() && categories.isEmpty() ? "." : " with filters: "
+                    + SentinelCommand.colorEmphasis + npcs + " " + categories));
+        }
+        else if (action.equals("stop")) {
+            if (!SentinelTracer.enabled) {
+                sender.sendMessage(SentinelCommand.prefixBad + "No trace is running.");
+                return;
+            }
+            SentinelTracer.stop();
+            SentinelDebugScope.refreshAll();
+            sender.sendMessage(SentinelCommand.prefixGood + "Trace stopped. Use '/sentinel trace dump' to write it to file.");
+        }
+        else if (action.equals("dump")) {
+            sender.sendMessage(SentinelCommand.prefixGood + "Writing trace...");
+            SentinelTracer.dump(sender);
+        }
+        else {
+            sender.sendMessage(SentinelCommand.prefixBad + "Unknown trace action. Use 'start', 'stop', or 'dump'.");
+        }
     }
 
     @Command(aliases = {"sentinel"}, usage = "reload",
@@ -14,6 +14,7 @@ import org.mcmonkey.sentinel.SentinelPlugin;
 import org.mcmonkey.sentinel.SentinelTrait;
 import org.mcmonkey.sentinel.targeting.SentinelTargetLabel;
 import org.mcmonkey.sentinel.targeting.SentinelTargetList;
+import org.mcmonkey.sentinel.targeting.SentinelTargetProfile;
 
 import java.util.Collection;
 import java.util.UUID;
@@ -106,6 +107,7 @@ public class SentinelTargetCommands {
         if (!testLabel(sender, targetLabel)) {
             return;
         }
+        sentinel.unshareTargetLists();
         if (targetLabel.addToList(sentinel.allTargets)) {
             sender.sendMessage(SentinelCommand.prefixGood + "Tracking new target!");
         }
@@ -123,6 +125,7 @@ public class SentinelTargetCommands {
         if (!testLabel(sender, targetLabel)) {
             return;
         }
+        sentinel.unshareTargetLists();
         if (targetLabel.removeFromList(sentinel.allTargets)) {
             sender.sendMessage(SentinelCommand.prefixGood + "No longer tracking that target!");
         }
@@ -140,6 +143,7 @@ public class SentinelTargetCommands {
         if (!testLabel(sender, targetLabel)) {
             return;
         }
+        sentinel.unshareTargetLists();
         if (targetLabel.addToList(sentinel.allIgnores)) {
             sender.sendMessage(SentinelCommand.prefixGood + "Ignoring new target!");
         }
@@ -157,6 +161,7 @@ public class SentinelTargetCommands {
         if (!testLabel(sender, targetLabel)) {
             return;
         }
+        sentinel.unshareTargetLists();
         if (targetLabel.removeFromList(sentinel.allIgnores)) {
             sender.sendMessage(SentinelCommand.prefixGood + "No longer ignoring that target!");
         }
@@ -174,6 +179,7 @@ public class SentinelTargetCommands {
         if (!testLabel(sender, targetLabel)) {
             return;
         }
+        sentinel.unshareTargetLists();
         if (targetLabel.addToList(sentinel.allAvoids)) {
             sender.sendMessage(SentinelCommand.prefixGood + "Avoiding a new target!");
         }
@@ -191,6 +197,7 @@ public class SentinelTargetCommands {
         if (!testLabel(sender, targetLabel)) {
             return;
         }
+        sentinel.unshareTargetLists();
         if (targetLabel.removeFromList(sentinel.allAvoids)) {
             sender.sendMessage(SentinelCommand.prefixGood + "No longer avoiding that target!");
         }
@@ -407,4 +414,101 @@ public class SentinelTargetCommands {
             sender.sendMessage(SentinelCommand.prefixGood + "Avoid-return point updated!");
         }
     }
+
+    @Command(aliases = {"sentinel"}, usage = "profile ['apply'/'create'/'detach'] [NAME]",
+            desc = "Shows or changes the shared target profile of the NPC.",
+            modifiers = {"profile"}, permission = "sentinel.profile", min = 1, max = 3)
+    @Requirements(livingEntity = true, ownership = true, traits = {SentinelTrait.class})
+    public void profile(CommandContext args, CommandSender sender, SentinelTrait sentinel) {
+        String action = args.argsLength() > 1 ? args.getString(1).toLowerCase() : "";
+        if (action.equals("detach")) {
+            if (sentinel.getTargetProfile() == null) {
+                sender.sendMessage(SentinelCommand.prefixBad + "NPC is not using a target profile!");
+                return;
+            }
+            sentinel.unshareTargetLists();
+            sender.sendMessage(SentinelCommand.prefixGood + "NPC now has its own copy of the target lists.");
+            return;
+        }
+        if ((!action.equals("apply") && !action.equals("create")) || args.argsLength() <= 2) {
+            SentinelTargetProfile current = sentinel.getTargetProfile();
+            sender.sendMessage(SentinelCommand.prefixGood + "Current target profile: " + SentinelCommand.colorEmphasis + (current == null ? "None" : current.name));
+            sender.sendMessage(SentinelCommand.prefixGood + "Use '/sentinel profile apply NAME', '/sentinel profile create NAME', or '/sentinel profile detach'.");
+            return;
+        }
+        String name = args.getString(2);
+        SentinelTargetProfile profile = SentinelTargetProfile.getProfile(name);
+        if (action.equals("create")) {
+            if (profile != null) {
+                sender.sendMessage(SentinelCommand.prefixBad + "A target profile by that name already exists! Use '/sentinel profiles delete NAME' first.");
+                return;
+            }
+            SentinelTargetProfile.createFrom(name, sentinel).applyTo(sentinel);
+            sender.sendMessage(SentinelCommand.prefixGood + "Target profile created from this NPC's target lists, and applied to this NPC.");
+            return;
+        }
+        if (profile == null) {
+            sender.sendMessage(SentinelCommand.prefixBad + "Unknown target profile! Use '/sentinel profiles' to see all profiles.");
+            return;
+        }
+        profile.applyTo(sentinel);
+        sender.sendMessage(SentinelCommand.prefixGood + "Target profile applied!");
+    }
+
+    @Command(aliases = {"sentinel"}, usage = "profiles ['delete' NAME]/['add'/'remove' NAME 'target'/'ignore'/'avoid' TYPE]",
+            desc = "Lists all shared target profiles, deletes one, or edits one in place (for every NPC using it).",
+            modifiers = {"profiles"}, permission = "sentinel.profiles", min = 1, max = 5)
+    public void profiles(CommandContext args, CommandSender sender) {
+        if (args.argsLength() > 1 && (args.getString(1).equalsIgnoreCase("add") || args.getString(1).equalsIgnoreCase("remove"))) {
+            if (args.argsLength() <= 4) {
+                sender.sendMessage(SentinelCommand.prefixBad + "Use '/sentinel profiles " + args.getString(1).toLowerCase() + " NAME target/ignore/avoid TYPE'.");
+                return;
+            }
+            SentinelTargetProfile profile = SentinelTargetProfile.getProfile(args.getString(2));
+            if (profile == null) {
+                sender.sendMessage(SentinelCommand.prefixBad + "Unknown target profile!");
+                return;
+            }
+            SentinelTargetList list = profile.getListForType(args.getString(3));
+            if (list == null) {
+                sender.sendMessage(SentinelCommand.prefixBad + "Unknown list! Must be 'target', 'ignore', or 'avoid'.");
+                return;
+            }
+            SentinelTargetLabel targetLabel = new SentinelTargetLabel(args.getString(4));
+            if (!testLabel(sender, targetLabel)) {
+                return;
+            }
+            boolean add = args.getString(1).equalsIgnoreCase("add");
+            if (add ? !targetLabel.addToList(list) : !targetLabel.removeFromList(list)) {
+                sender.sendMessage(SentinelCommand.prefixBad + (add ? "The profile already has that entry!" : "The profile does not have that entry!"));
+                return;
+            }
+            SentinelTargetProfile.saveAll();
+            sender.sendMessage(SentinelCommand.prefixGood + "Target profile updated, for all " + SentinelCommand.colorEmphasis + profile.getUsers().size()
+                    + SentinelCommand.colorBasic + " NPC(s) using it.");
+            return;
+        }
+        if (args.argsLength() > 2 && args.getString(1).equalsIgnoreCase("delete")) {
+            SentinelTargetProfile profile = SentinelTargetProfile.getProfile(args.getString(2));
+            if (profile == null) {
+                sender.sendMessage(SentinelCommand.prefixBad + "Unknown target profile!");
+                return;
+            }
+            for (SentinelTrait sentinel : profile.getUsers()) {
+                sentinel.unshareTargetLists();
+            }
+            SentinelTargetProfile.profiles.remove(profile.name);
+            SentinelTargetProfile.saveAll();
+            sender.sendMessage(SentinelCommand.prefixGood + "Target profile deleted. Any NPCs that were using it keep their own copy of its target lists.");
+            return;
+        }
+        if (SentinelTargetProfile.profiles.isEmpty()) {
+            sender.sendMessage(SentinelCommand.prefixGood + "No target profiles exist. Use '/sentinel profile create NAME' to create one.");
+            return;
+        }
+        for (SentinelTargetProfile profile : SentinelTargetProfile.profiles.values()) {
+            sender.sendMessage(SentinelCommand.prefixGood + SentinelCommand.colorEmphasis + profile.name + SentinelCommand.colorBasic
+                    + ": used by " + SentinelCommand.colorEmphasis + profile.getUsers().size() + SentinelCommand.colorBasic + " NPC(s)");
+        }
+    }
 }
@@ -0,0 +1,277 @@
+package org.mcmonkey.sentinel.metrics;
+
+import net.citizensnpcs.api.CitizensAPI;
+import net.citizensnpcs.api.npc.NPC;
+import net.citizensnpcs.api.persistence.PersistenceLoader;
+import net.citizensnpcs.api.util.MemoryDataKey;
+import org.bukkit.Location;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+import org.mcmonkey.sentinel.commands.SentinelCommand;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Measures the cost of Sentinel NPC updates on a live server over a number of ticks,
+ * optionally within a scripted scenario (temporary copies of an NPC fighting temporary hostile mobs).
+ * Reports per-tick update time, allocations, and combat outcomes.
+ */
+public class SentinelBenchmark extends BukkitRunnable {
+
+    /**
+     * The currently running benchmark, if any.
+     */
+    public static SentinelBenchmark current;
+
+    /**
+     * The bean used for per-thread allocation measurement, or null if unsupported by the JVM.
+     */
+    private static com.sun.management.ThreadMXBean allocationBean;
+
+    static {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+                allocationBean = (com.sun.management.ThreadMXBean) bean;
+                allocationBean.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        catch (Throwable ex) {
+            allocationBean = null;
+        }
+    }
+
+    /**
+     * Returns how many bytes the current thread has allocated so far, or -1 if unsupported.
+     */
+    public static long getAllocatedBytes() {
+        if (allocationBean == null) {
+            return -1;
+        }
+        return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Whether allocations should be measured (requires JVM support).
+     */
+    public static boolean measureAllocations() {
+        return allocationBean != null;
+    }
+
+    /**
+     * Who to send the report to.
+     */
+    public CommandSender sender;
+
+    /**
+     * Update time (nanoseconds) for each benchmark tick.
+     */
+    public long[] tickNanos;
+
+    /**
+     * Allocated bytes for each benchmark tick.
+     */
+    public long[] tickBytes;
+
+    /**
+     * The current benchmark tick index.
+     */
+    public int tick = 0;
+
+    /**
+     * Accumulated values for the current tick, added to by {@link #recordUpdate(long, long)}.
+     */
+    public long currentNanos, currentBytes;
+
+    /**
+     * Total count of NPC updates recorded.
+     */
+    public long updates;
+
+    /**
+     * Temporary NPCs spawned for this benchmark.
+     */
+    public ArrayList<NPC> spawnedNPCs = new ArrayList<>();
+
+    /**
+     * Temporary mobs spawned for this benchmark.
+     */
+    public ArrayList<LivingEntity> spawnedMobs = new ArrayList<>();
+
+    /**
+     * Stats of each Sentinel NPC at the start of the benchmark: attack attempts, damage given, damage taken.
+     */
+    public HashMap<SentinelTrait, double[]> startStats = new HashMap<>();
+
+    public SentinelBenchmark(CommandSender sender, int ticks) {
+        this.sender = sender;
+        tickNanos = new long[ticks];
+        tickBytes = new long[ticks];
+    }
+
+    /**
+     * Records the cost of one NPC update.
+     */
+    public void recordUpdate(long nanos, long bytes) {
+        currentNanos += nanos;
+        currentBytes += bytes;
+        updates++;
+    }
+
+    /**
+     * Creates a temporary NPC with the same entity type and Sentinel settings as the template.
+     * The NPC is marked to never be saved, so an interrupted benchmark can't leave it behind in saves.yml.
+     */
+    public NPC createTemporaryCopy(SentinelTrait template) {
+        NPC templateNPC = template.getNPC();
+        NPC npc = CitizensAPI.getNPCRegistry().createNPC(templateNPC.getEntity().getType(), templateNPC.getName());
+        npc.data().set(NPC.Metadata.SHOULD_SAVE, false);
+        MemoryDataKey key = new MemoryDataKey();
+        PersistenceLoader.save(template, key);
+        template.save(key);
+        // Same order Citizens uses when loading a trait from saved data.
+        SentinelTrait sentinel = new SentinelTrait();
+        sentinel.linkToNPC(npc);
+        PersistenceLoader.load(sentinel, key);
+        sentinel.load(key);
+        npc.addTrait(sentinel);
+        return npc;
+    }
+
+    /**
+     * Spawns the scenario: temporary copies of the template NPC in a ring around it, and hostile mobs in a wider ring.
+     */
+    public void spawnScenario(SentinelTrait template, int npcCount, int mobCount, EntityType mobType) {
+        Location center = template.getLivingEntity().getLocation();
+        for (int i = 0; i < npcCount; i++) {
+            NPC copy = createTemporaryCopy(template);
+            copy.spawn(ringLocation(center, 3, i, npcCount));
+            spawnedNPCs.add(copy);
+        }
+        double mobDistance = Math.max(6, template.range * 0.75);
+        for (int i = 0; i < mobCount; i++) {
+            Entity mob = center.getWorld().spawnEntity(ringLocation(center, mobDistance, i, mobCount), mobType);
+            if (mob instanceof LivingEntity) {
+                spawnedMobs.add((LivingEntity) mob);
+            }
+            else {
+                mob.remove();
+            }
+        }
+    }
+
+    private static Location ringLocation(Location center, double radius, int index, int count) {
+        double angle = (Math.PI * 2 * index) / Math.max(1, count);
+        Location loc = center.clone().add(Math.cos(angle) * radius, 0, Math.sin(angle) * radius);
+        loc.setY(loc.getWorld().getHighestBlockYAt(loc) + 1);
+        return loc;
+    }
+
+    /**
+     * Starts the benchmark.
+     */
+    public void start() {
+        current = this;
+        for (SentinelTrait sentinel : SentinelPlugin.instance.currentSentinelNPCs) {
+            startStats.put(sentinel, new double[] { sentinel.stats_attackAttempts, sentinel.stats_damageGiven, sentinel.stats_damageTaken });
+        }
+        runTaskTimer(SentinelPlugin.instance, 1, 1);
+    }
+
+    @Override
+    public void run() {
+        tickNanos[tick] = currentNanos;
+        tickBytes[tick] = currentBytes;
+        currentNanos = 0;
+        currentBytes = 0;
+        tick++;
+        if (tick >= tickNanos.length) {
+            finish();
+        }
+    }
+
+    /**
+     * Stops the benchmark, reports results, and removes anything spawned for it.
+     */
+    public void finish() {
+        cancel();
+        current = null;
+        double attacks = 0, damageGiven = 0, damageTaken = 0;
+        for (SentinelTrait sentinel : SentinelPlugin.instance.currentSentinelNPCs) {
+            double[] start = startStats.get(sentinel);
+            if (start != null) {
+                attacks += sentinel.stats_attackAttempts - start[0];
+                damageGiven += sentinel.stats_damageGiven - start[1];
+                damageTaken += sentinel.stats_damageTaken - start[2];
+            }
+        }
+        int mobsKilled = 0;
+        for (LivingEntity mob : spawnedMobs) {
+            if (mob.isDead()) {
+                mobsKilled++;
+            }
+            else {
+                mob.remove();
+            }
+        }
+        int npcsKilled = 0;
+        for (NPC npc : spawnedNPCs) {
+            if (!npc.isSpawned()) {
+                npcsKilled++;
+            }
+            SentinelStatsStore.remove(npc.getUniqueId());
+            npc.destroy();
+        }
+        long[] sorted = Arrays.copyOf(tickNanos, tick);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long nanos : sorted) {
+            total += nanos;
+        }
+        long totalBytes = 0;
+        for (int i = 0; i < tick; i++) {
+            totalBytes += tickBytes[i];
+        }
+        int ticks = Math.max(1, tick);
+        sender.sendMessage(SentinelCommand.prefixGood + "Benchmark complete: " + SentinelCommand.colorEmphasis + tick + SentinelCommand.colorBasic
+                + " ticks, " + SentinelCommand.colorEmphasis + updates + SentinelCommand.colorBasic + " NPC updates, "
+                + SentinelCommand.colorEmphasis + SentinelPlugin.instance.currentSentinelNPCs.size() + SentinelCommand.colorBasic + " NPCs.");
+        sender.sendMessage(SentinelCommand.prefixGood + "Update time per tick: average " + SentinelCommand.colorEmphasis + formatMillis(total / ticks)
+                + SentinelCommand.colorBasic + ", median " + SentinelCommand.colorEmphasis + formatMillis(percentile(sorted, 0.5))
+                + SentinelCommand.colorBasic + ", 95th percentile " + SentinelCommand.colorEmphasis + formatMillis(percentile(sorted, 0.95))
+                + SentinelCommand.colorBasic + ", max " + SentinelCommand.colorEmphasis + formatMillis(percentile(sorted, 1)));
+        if (measureAllocations()) {
+            sender.sendMessage(SentinelCommand.prefixGood + "Allocated per tick: " + SentinelCommand.colorEmphasis + (totalBytes / ticks / 1024) + " KiB"
+                    + SentinelCommand.colorBasic + " (" + SentinelCommand.colorEmphasis + (updates == 0 ? 0 : totalBytes / updates) + " bytes"
+                    + SentinelCommand.colorBasic + " per NPC update)");
+        }
+        sender.sendMessage(SentinelCommand.prefixGood + "Attack attempts: " + SentinelCommand.colorEmphasis + (long) attacks
+                + SentinelCommand.colorBasic + ", damage given: " + SentinelCommand.colorEmphasis + (long) damageGiven
+                + SentinelCommand.colorBasic + ", damage taken: " + SentinelCommand.colorEmphasis + (long) damageTaken);
+        if (!spawnedNPCs.isEmpty() || !spawnedMobs.isEmpty()) {
+            sender.sendMessage(SentinelCommand.prefixGood + "Scenario: " + SentinelCommand.colorEmphasis + mobsKilled + "/" + spawnedMobs.size()
+                    + SentinelCommand.colorBasic + " mobs killed, " + SentinelCommand.colorEmphasis + npcsKilled + "/" + spawnedNPCs.size()
+                    + SentinelCommand.colorBasic + " NPC copies killed.");
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.3fms", nanos / 1000000.0);
+    }
+}
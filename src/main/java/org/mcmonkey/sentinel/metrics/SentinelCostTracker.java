@@ -0,0 +1,170 @@
+package org.mcmonkey.sentinel.metrics;
+
+import java.util.HashMap;
+
+/**
+ * Tracks how much CPU time (in nanoseconds) a single Sentinel NPC's updates take, broken down by update phase,
+ * and (when detailed tracking is enabled) by target list category.
+ */
+public class SentinelCostTracker {
+
+    /**
+     * Update phase IDs.
+     */
+    public static final int PHASE_UPKEEP = 0, PHASE_TARGET_UPDATES = 1, PHASE_MULTI_TARGETS = 2, PHASE_TARGET_SEARCH = 3,
+            PHASE_ATTACK = 4, PHASE_GUARDING = 5, PHASE_AVOIDANCE = 6, PHASE_MOVEMENT = 7, PHASE_LOW_DETAIL = 8, PHASE_OTHER = 9;
+
+    /**
+     * Display names of each update phase, indexed by phase ID.
+     */
+    public static final String[] PHASE_NAMES = new String[] { "upkeep", "target updates", "multi-targets", "target search",
+            "attack", "guarding", "avoidance", "movement", "low-detail combat", "other" };
+
+    /**
+     * Whether per-target-category tracking is enabled (adds some overhead to every target check, so is off by default).
+     */
+    public static boolean detailed = false;
+
+    /**
+     * The tracker of the NPC currently running an update (main thread only), or null if none.
+     */
+    public static SentinelCostTracker active;
+
+    /**
+     * How many target checks are currently recording category costs (main thread only, so at most one).
+     */
+    private static int detailDepth = 0;
+
+    /**
+     * Begins a target check, returning the tracker it should record category costs into,
+     * or null if detailed tracking is off or the check is nested in another one (eg a target list evaluated by an integration),
+     * so that nested time is only counted once, by the outer check.
+     * A non-null result must be passed to {@link #endDetail(SentinelCostTracker)} when the check finishes.
+     */
+    public static SentinelCostTracker beginDetail() {
+        SentinelCostTracker tracker = detailed ? active : null;
+        if (tracker == null || detailDepth > 0) {
+            return null;
+        }
+        detailDepth++;
+        tracker.markTime = System.nanoTime();
+        return tracker;
+    }
+
+    /**
+     * Ends a target check started by {@link #beginDetail()}.
+     */
+    public static void endDetail(SentinelCostTracker tracker) {
+        if (tracker != null) {
+            detailDepth--;
+        }
+    }
+
+    /**
+     * Adds the time since the previous mark (or the start of the target check) to a target category of the tracker, if the tracker isn't null.
+     */
+    public static void mark(SentinelCostTracker tracker, String category) {
+        if (tracker == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        tracker.categoryNanos.merge(category, now - tracker.markTime, Long::sum);
+        tracker.markTime = now;
+    }
+
+    /**
+     * The time of the last category mark in the current target check.
+     */
+    private long markTime;
+
+    /**
+     * Total nanoseconds spent in each update phase, indexed by phase ID.
+     */
+    public long[] phaseNanos = new long[PHASE_NAMES.length];
+
+    /**
+     * Total nanoseconds spent in each target list category (only filled while detailed tracking is on).
+     */
+    public HashMap<String, Long> categoryNanos = new HashMap<>();
+
+    /**
+     * Total nanoseconds spent in updates.
+     */
+    public long totalNanos;
+
+    /**
+     * How many updates have been tracked.
+     */
+    public long updates;
+
+    /**
+     * Adds the time since 'start' to an update phase, and returns the current time.
+     */
+    public long markPhase(int phase, long start) {
+        long now = System.nanoTime();
+        phaseNanos[phase] += now - start;
+        if (SentinelMetrics.enabled) {
+            SentinelMetrics.phaseLatency[phase].observe(now - start);
+        }
+        return now;
+    }
+
+    /**
+     * Records one full update that took the given time, where 'phasedBefore' is the value of {@link #getPhasedNanos()} from before the update.
+     * Any time not accounted to a specific phase goes into {@link #PHASE_OTHER}.
+     */
+    public void recordUpdate(long nanos, long phasedBefore) {
+        totalNanos += nanos;
+        updates++;
+        phaseNanos[PHASE_OTHER] += Math.max(0, nanos - (getPhasedNanos() - phasedBefore));
+    }
+
+    /**
+     * Returns the total nanoseconds accounted to phases so far.
+     */
+    public long getPhasedNanos() {
+        long phased = 0;
+        for (long phase : phaseNanos) {
+            phased += phase;
+        }
+        return phased;
+    }
+
+    /**
+     * Returns the ID of the most expensive phase.
+     */
+    public int getTopPhase() {
+        int top = 0;
+        for (int i = 1; i < phaseNanos.length; i++) {
+            if (phaseNanos[i] > phaseNanos[top]) {
+                top = i;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Returns the name of the most expensive target category, or null if none tracked.
+     */
+    public String getTopCategory() {
+        String top = null;
+        long topNanos = 0;
+        for (HashMap.Entry<String, Long> entry : categoryNanos.entrySet()) {
+            if (entry.getValue() > topNanos) {
+                top = entry.getKey();
+                topNanos = entry.getValue();
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Clears all tracked costs.
+     */
+    public void reset() {
+        phaseNanos = new long[PHASE_NAMES.length];
+        categoryNanos.clear();
+        totalNanos = 0;
+        updates = 0;
+    }
+}
@@ -0,0 +1,132 @@
+package org.mcmonkey.sentinel.metrics;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+import org.mcmonkey.sentinel.SentinelUtilities;
+
+import java.util.UUID;
+
+/**
+ * Emits Java Flight Recorder events for Sentinel (see {@link SentinelJfrEvents}), when the JVM supports JFR and a recording is running.
+ * When no recording is running, every method here costs a single field check.
+ * Event objects are passed around as plain Objects, so that callers never reference JFR types (which don't exist on older Java 8 releases).
+ */
+public class SentinelFlightRecorder {
+
+    /**
+     * Whether the JVM supports JFR (and the event types registered successfully).
+     */
+    public static boolean available = false;
+
+    /**
+     * Whether any JFR recording is currently running.
+     */
+    public static volatile boolean recording = false;
+
+    /**
+     * Registers the Sentinel event types, if JFR is available.
+     */
+    public static void init() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+        }
+        catch (ClassNotFoundException ex) {
+            return;
+        }
+        try {
+            SentinelJfrEvents.register();
+            available = true;
+        }
+        catch (Throwable ex) {
+            SentinelPlugin.instance.getLogger().warning("Failed to register Java Flight Recorder events: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Stops tracking JFR recording state.
+     */
+    public static void shutdown() {
+        if (available) {
+            SentinelJfrEvents.unregister();
+            available = false;
+        }
+    }
+
+    /**
+     * Begins a Sentinel update event. Returns null if not recording.
+     */
+    public static Object beginUpdate(SentinelCostTracker costs) {
+        if (!recording) {
+            return null;
+        }
+        return SentinelJfrEvents.beginUpdate(costs);
+    }
+
+    /**
+     * Ends a Sentinel update event (if not null), and commits it if it's above the threshold.
+     */
+    public static void endUpdate(Object event, SentinelTrait sentinel) {
+        if (event != null) {
+            SentinelJfrEvents.endUpdate(event, sentinel);
+        }
+    }
+
+    /**
+     * Records a target (by entity UUID) being acquired by an NPC. The entity is only looked up while recording.
+     */
+    public static void targetAcquired(SentinelTrait sentinel, UUID targetId) {
+        if (recording) {
+            Entity target = SentinelUtilities.getEntityForID(targetId);
+            SentinelJfrEvents.targetAcquired(sentinel.getNPC().getId(), target == null ? "unknown" : target.getType().name(), targetId.toString());
+        }
+    }
+
+    /**
+     * Begins a line-of-sight check event. Returns null if not recording.
+     */
+    public static Object beginLineOfSight() {
+        if (!recording) {
+            return null;
+        }
+        return SentinelJfrEvents.beginLineOfSight();
+    }
+
+    /**
+     * Ends a line-of-sight check event (if not null).
+     */
+    public static void endLineOfSight(Object event, LivingEntity start, LivingEntity end, boolean result, boolean cached) {
+        if (event != null) {
+            SentinelJfrEvents.endLineOfSight(event, start.getEyeLocation().distance(end.getEyeLocation()), result, cached);
+        }
+    }
+
+    /**
+     * Begins a path request event. Returns null if not recording.
+     */
+    public static Object beginPathRequest() {
+        if (!recording) {
+            return null;
+        }
+        return SentinelJfrEvents.beginPathRequest();
+    }
+
+    /**
+     * Ends a path request event (if not null). Kind is "chase" or "avoidance".
+     */
+    public static void endPathRequest(Object event, SentinelTrait sentinel, String kind) {
+        if (event != null) {
+            SentinelJfrEvents.endPathRequest(event, sentinel.getNPC().getId(), kind);
+        }
+    }
+
+    /**
+     * Records a projectile fired (or thrown) by an NPC.
+     */
+    public static void projectileFired(SentinelTrait sentinel, String projectile) {
+        if (recording) {
+            SentinelJfrEvents.projectileFired(sentinel.getNPC().getId(), projectile);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.mcmonkey.sentinel.metrics;
+
+import jdk.jfr.*;
+import org.mcmonkey.sentinel.SentinelTrait;
+
+/**
+ * Java Flight Recorder event types for Sentinel.
+ * Only use via {@link SentinelFlightRecorder}, which checks that the JVM supports JFR before this class is ever loaded.
+ */
+public class SentinelJfrEvents {
+
+    @Name("org.mcmonkey.sentinel.Update")
+    @Label("Sentinel Update")
+    @Description("A full Sentinel NPC update, with the time spent in each phase.")
+    @Category("Sentinel")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static class UpdateEvent extends Event {
+
+        @Label("NPC ID")
+        public int npcId;
+
+        @Label("NPC Name")
+        public String npcName;
+
+        @Label("Upkeep") @Timespan
+        public long upkeep;
+
+        @Label("Target Updates") @Timespan
+        public long targetUpdates;
+
+        @Label("Multi-Targets") @Timespan
+        public long multiTargets;
+
+        @Label("Target Search") @Timespan
+        public long targetSearch;
+
+        @Label("Attack") @Timespan
+        public long attack;
+
+        @Label("Guarding") @Timespan
+        public long guarding;
+
+        @Label("Avoidance") @Timespan
+        public long avoidance;
+
+        @Label("Movement") @Timespan
+        public long movement;
+
+        @Label("Low-Detail Combat") @Timespan
+        public long lowDetail;
+    }
+
+    @Name("org.mcmonkey.sentinel.TargetAcquired")
+    @Label("Sentinel Target Acquired")
+    @Category("Sentinel")
+    @StackTrace(false)
+    public static class TargetAcquiredEvent extends Event {
+
+        @Label("NPC ID")
+        public int npcId;
+
+        @Label("Target Type")
+        public String targetType;
+
+        @Label("Target UUID")
+        public String targetId;
+    }
+
+    @Name("org.mcmonkey.sentinel.LineOfSightCheck")
+    @Label("Sentinel Line-Of-Sight Check")
+    @Category("Sentinel")
+    @Threshold("100 us")
+    public static class LineOfSightEvent extends Event {
+
+        @Label("Distance")
+        public double distance;
+
+        @Label("Result")
+        public boolean result;
+
+        @Label("Vanilla Cached Check")
+        @Description("Whether the check used the server's own (cached) line-of-sight check, rather than a transparency-aware ray trace.")
+        public boolean cached;
+    }
+
+    @Name("org.mcmonkey.sentinel.PathRequest")
+    @Label("Sentinel Path Request")
+    @Category("Sentinel")
+    @Threshold("100 us")
+    public static class PathRequestEvent extends Event {
+
+        @Label("NPC ID")
+        public int npcId;
+
+        @Label("Kind")
+        public String kind;
+    }
+
+    @Name("org.mcmonkey.sentinel.ProjectileFired")
+    @Label("Sentinel Projectile Fired")
+    @Category("Sentinel")
+    @StackTrace(false)
+    public static class ProjectileFiredEvent extends Event {
+
+        @Label("NPC ID")
+        public int npcId;
+
+        @Label("Projectile")
+        public String projectile;
+    }
+
+    private static final FlightRecorderListener listener = new FlightRecorderListener() {
+        @Override
+        public void recordingStateChanged(Recording recording) {
+            updateRecordingState();
+        }
+    };
+
+    /**
+     * Registers the event types, and starts tracking whether any recording is running.
+     */
+    public static void register() {
+        FlightRecorder.register(UpdateEvent.class);
+        FlightRecorder.register(TargetAcquiredEvent.class);
+        FlightRecorder.register(LineOfSightEvent.class);
+        FlightRecorder.register(PathRequestEvent.class);
+        FlightRecorder.register(ProjectileFiredEvent.class);
+        FlightRecorder.addListener(listener);
+        updateRecordingState();
+    }
+
+    /**
+     * Stops tracking recording state.
+     */
+    public static void unregister() {
+        FlightRecorder.removeListener(listener);
+        SentinelFlightRecorder.recording = false;
+    }
+
+    private static void updateRecordingState() {
+        boolean running = false;
+        if (FlightRecorder.isInitialized()) {
+            for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+                if (recording.getState() == RecordingState.RUNNING) {
+                    running = true;
+                    break;
+                }
+            }
+        }
+        SentinelFlightRecorder.recording = running;
+    }
+
+    public static Object beginUpdate(SentinelCostTracker costs) {
+        UpdateEvent event = new UpdateEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        // Phase fields hold the starting totals until the event ends.
+        long[] phases = costs.phaseNanos;
+        event.upkeep = phases[SentinelCostTracker.PHASE_UPKEEP];
+        event.targetUpdates = phases[SentinelCostTracker.PHASE_TARGET_UPDATES];
+        event.multiTargets = phases[SentinelCostTracker.PHASE_MULTI_TARGETS];
+        event.targetSearch = phases[SentinelCostTracker.PHASE_TARGET_SEARCH];
+        event.attack = phases[SentinelCostTracker.PHASE_ATTACK];
+        event.guarding = phases[SentinelCostTracker.PHASE_GUARDING];
+        event.avoidance = phases[SentinelCostTracker.PHASE_AVOIDANCE];
+        event.movement = phases[SentinelCostTracker.PHASE_MOVEMENT];
+        event.lowDetail = phases[SentinelCostTracker.PHASE_LOW_DETAIL];
+        event.begin();
+        return event;
+    }
+
+    public static void endUpdate(Object eventObject, SentinelTrait sentinel) {
+        UpdateEvent event = (UpdateEvent) eventObject;
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        long[] phases = sentinel.costs.phaseNanos;
+        event.npcId = sentinel.getNPC().getId();
+        event.npcName = sentinel.getNPC().getName();
+        event.upkeep = phases[SentinelCostTracker.PHASE_UPKEEP] - event.upkeep;
+        event.targetUpdates = phases[SentinelCostTracker.PHASE_TARGET_UPDATES] - event.targetUpdates;
+        event.multiTargets = phases[SentinelCostTracker.PHASE_MULTI_TARGETS] - event.multiTargets;
+        event.targetSearch = phases[SentinelCostTracker.PHASE_TARGET_SEARCH] - event.targetSearch;
+        event.attack = phases[SentinelCostTracker.PHASE_ATTACK] - event.attack;
+        event.guarding = phases[SentinelCostTracker.PHASE_GUARDING] - event.guarding;
+        event.avoidance = phases[SentinelCostTracker.PHASE_AVOIDANCE] - event.avoidance;
+        event.movement = phases[SentinelCostTracker.PHASE_MOVEMENT] - event.movement;
+        event.lowDetail = phases[SentinelCostTracker.PHASE_LOW_DETAIL] - event.lowDetail;
+        event.commit();
+    }
+
+    public static void targetAcquired(int npcId, String targetType, String targetId) {
+        TargetAcquiredEvent event = new TargetAcquiredEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.npcId = npcId;
+        event.targetType = targetType;
+        event.targetId = targetId;
+        event.commit();
+    }
+
+    public static Object beginLineOfSight() {
+        LineOfSightEvent event = new LineOfSightEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void endLineOfSight(Object eventObject, double distance, boolean result, boolean cached) {
+        LineOfSightEvent event = (LineOfSightEvent) eventObject;
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.distance = distance;
+        event.result = result;
+        event.cached = cached;
+        event.commit();
+    }
+
+    public static Object beginPathRequest() {
+        PathRequestEvent event = new PathRequestEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void endPathRequest(Object eventObject, int npcId, String kind) {
+        PathRequestEvent event = (PathRequestEvent) eventObject;
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.npcId = npcId;
+        event.kind = kind;
+        event.commit();
+    }
+
+    public static void projectileFired(int npcId, String projectile) {
+        ProjectileFiredEvent event = new ProjectileFiredEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.npcId = npcId;
+        event.projectile = projectile;
+        event.commit();
+    }
+}
@@ -0,0 +1,363 @@
+package org.mcmonkey.sentinel.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+import org.mcmonkey.sentinel.SentinelUtilities;
+
+import javax.management.ObjectName;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics about Sentinel internals (update costs, target acquisition, caches, and backlogs).
+ * Counters are always collected (they're very cheap). Latency histograms and the exports
+ * (a Prometheus text HTTP endpoint, and a JMX MBean) are only active when enabled in the config.
+ */
+public class SentinelMetrics implements SentinelMetricsMBean {
+
+    /**
+     * A simple fixed-bucket latency histogram, safe to write from one thread and read from another.
+     */
+    public static class Histogram {
+
+        /**
+         * Bucket upper bounds, in nanoseconds.
+         */
+        public static final long[] BOUNDS = new long[] { 1000, 5000, 10000, 50000, 100000, 500000, 1000000, 5000000, 10000000, 50000000 };
+
+        /**
+         * Count of observations within each bucket (non-cumulative), with one extra for anything above the last bound.
+         */
+        public LongAdder[] counts = new LongAdder[BOUNDS.length + 1];
+
+        /**
+         * Total of all observed values, in nanoseconds.
+         */
+        public LongAdder sum = new LongAdder();
+
+        public Histogram() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records one observation.
+         */
+        public void observe(long nanos) {
+            int bucket = 0;
+            while (bucket < BOUNDS.length && nanos > BOUNDS[bucket]) {
+                bucket++;
+            }
+            counts[bucket].increment();
+            sum.add(nanos);
+        }
+
+        /**
+         * Appends this histogram in Prometheus text format.
+         */
+        public void write(StringBuilder output, String name, String labels) {
+            String prefix = labels == null ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += counts[i].sum();
+                output.append(name).append("_bucket{").append(prefix).append("le=\"").append(BOUNDS[i] / 1e9).append("\"} ").append(cumulative).append('\n');
+            }
+            cumulative += counts[BOUNDS.length].sum();
+            output.append(name).append("_bucket{").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+            String plainLabels = labels == null ? "" : "{" + labels + "}";
+            output.append(name).append("_sum").append(plainLabels).append(' ').append(sum.sum() / 1e9).append('\n');
+            output.append(name).append("_count").append(plainLabels).append(' ').append(cumulative).append('\n');
+        }
+    }
+
+    /**
+     * Whether latency histograms and exports are enabled.
+     */
+    public static boolean enabled = false;
+
+    /**
+     * Counters.
+     */
+    public static final LongAdder updates = new LongAdder(), targetsAcquired = new LongAdder(), lineOfSightChecks = new LongAdder(),
+            projectilesFired = new LongAdder(), pathfindingRequests = new LongAdder(),
+            itemVerdictHits = new LongAdder(), itemVerdictMisses = new LongAdder(), snapshotHits = new LongAdder(), snapshotMisses = new LongAdder(),
+            regexCacheHits = new LongAdder(), regexCacheMisses = new LongAdder();
+
+    /**
+     * Latency of full NPC updates.
+     */
+    public static final Histogram updateLatency = new Histogram();
+
+    /**
+     * Latency of each update phase, indexed by {@link SentinelCostTracker} phase ID.
+     */
+    public static final Histogram[] phaseLatency = new Histogram[SentinelCostTracker.PHASE_NAMES.length];
+
+    static {
+        for (int i = 0; i < phaseLatency.length; i++) {
+            phaseLatency[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Gauges, refreshed from the main thread once per second.
+     */
+    public static volatile int sentinelCount, dormantCount, lowDetailCount, schedulerPendingTasks, pathingQueueSize;
+
+    /**
+     * Update rate over the last gauge refresh period.
+     */
+    public static volatile double updatesPerSecond;
+
+    private static long lastGaugeUpdates, lastGaugeTime;
+
+    private static HttpServer server;
+
+    private static ExecutorService serverExecutor;
+
+    private static BukkitRunnable gaugeTask;
+
+    private static ObjectName mbeanName;
+
+    /**
+     * Starts the metrics exports, as configured. Call {@link #stop()} first if already started.
+     */
+    public static void start(int port, String bindAddress, boolean jmx) {
+        enabled = port > 0 || jmx;
+        if (!enabled) {
+            return;
+        }
+        lastGaugeTime = System.nanoTime();
+        gaugeTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                refreshGauges();
+            }
+        };
+        gaugeTask.runTaskTimer(SentinelPlugin.instance, 20, 20);
+        if (port > 0) {
+            try {
+                server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+                server.createContext("/metrics", (exchange) -> {
+                    byte[] response = writePrometheus().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, response.length);
+                    try (OutputStream output = exchange.getResponseBody()) {
+                        output.write(response);
+                    }
+                });
+                serverExecutor = Executors.newSingleThreadExecutor((runnable) -> {
+                    Thread thread = new Thread(runnable, "Sentinel-Metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                server.setExecutor(serverExecutor);
+                server.start();
+                SentinelPlugin.instance.getLogger().info("Sentinel metrics available at http://" + bindAddress + ":" + port + "/metrics");
+            }
+            catch (Exception ex) {
+                SentinelPlugin.instance.getLogger().warning("Failed to start Sentinel metrics endpoint on port " + port + ": " + ex.getMessage());
+                server = null;
+            }
+        }
+        if (jmx) {
+            try {
+                mbeanName = new ObjectName("org.mcmonkey.sentinel:type=Metrics");
+                if (!ManagementFactory.getPlatformMBeanServer().isRegistered(mbeanName)) {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(new SentinelMetrics(), mbeanName);
+                }
+            }
+            catch (Exception ex) {
+                SentinelPlugin.instance.getLogger().warning("Failed to register Sentinel metrics MBean: " + ex.getMessage());
+                mbeanName = null;
+            }
+        }
+    }
+
+    /**
+     * Stops any running metrics exports.
+     */
+    public static void stop() {
+        enabled = false;
+        if (gaugeTask != null) {
+            gaugeTask.cancel();
+            gaugeTask = null;
+        }
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (serverExecutor != null) {
+            serverExecutor.shutdownNow();
+            serverExecutor = null;
+        }
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            }
+            catch (Exception ex) {
+                // Already gone.
+            }
+            mbeanName = null;
+        }
+    }
+
+    /**
+     * Refreshes the gauge values. Must be called from the main thread.
+     */
+    public static void refreshGauges() {
+        int count = 0, dormant = 0, lowDetail = 0;
+        for (SentinelTrait sentinel : SentinelPlugin.instance.currentSentinelNPCs) {
+            count++;
+            if (sentinel.dormant) {
+                dormant++;
+            }
+            if (sentinel.lowDetail) {
+                lowDetail++;
+            }
+        }
+        sentinelCount = count;
+        dormantCount = dormant;
+        lowDetailCount = lowDetail;
+        schedulerPendingTasks = Bukkit.getScheduler().getPendingTasks().size();
+        pathingQueueSize = SentinelPlugin.instance.pathingExecutor instanceof ThreadPoolExecutor
+                ? ((ThreadPoolExecutor) SentinelPlugin.instance.pathingExecutor).getQueue().size() : 0;
+        long now = System.nanoTime(), total = updates.sum();
+        updatesPerSecond = (total - lastGaugeUpdates) / Math.max(0.001, (now - lastGaugeTime) / 1e9);
+        lastGaugeUpdates = total;
+        lastGaugeTime = now;
+    }
+
+    private static void writeValue(StringBuilder output, String name, String type, String help, double value) {
+        output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        output.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        output.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format.
+     */
+    public static String writePrometheus() {
+        StringBuilder output = new StringBuilder(4096);
+        writeValue(output, "sentinel_updates_total", "counter", "Total Sentinel NPC updates run.", updates.sum());
+        writeValue(output, "sentinel_targets_acquired_total", "counter", "Total targets acquired by Sentinel NPCs.", targetsAcquired.sum());
+        writeValue(output, "sentinel_line_of_sight_checks_total", "counter", "Total line-of-sight ray checks.", lineOfSightChecks.sum());
+        writeValue(output, "sentinel_projectiles_fired_total", "counter", "Total projectiles fired or thrown by Sentinel NPCs.", projectilesFired.sum());
+        writeValue(output, "sentinel_pathfinding_requests_total", "counter", "Total chase and avoidance pathfinding requests.", pathfindingRequests.sum());
+        writeValue(output, "sentinel_item_verdict_cache_hits_total", "counter", "Item target verdict cache hits.", itemVerdictHits.sum());
+        writeValue(output, "sentinel_item_verdict_cache_misses_total", "counter", "Item target verdict cache misses.", itemVerdictMisses.sum());
+        writeValue(output, "sentinel_snapshot_cache_hits_total", "counter", "Chunk snapshot cache hits.", snapshotHits.sum());
+        writeValue(output, "sentinel_snapshot_cache_misses_total", "counter", "Chunk snapshot cache misses.", snapshotMisses.sum());
+        writeValue(output, "sentinel_regex_cache_hits_total", "counter", "Compiled regex cache hits.", regexCacheHits.sum());
+        writeValue(output, "sentinel_regex_cache_misses_total", "counter", "Compiled regex cache misses.", regexCacheMisses.sum());
+        writeValue(output, "sentinel_regex_cache_size", "gauge", "Compiled regexes currently cached.", SentinelUtilities.regexes.size());
+        writeValue(output, "sentinel_npcs", "gauge", "Current spawned Sentinel NPCs.", sentinelCount);
+        writeValue(output, "sentinel_npcs_dormant", "gauge", "Current dormant Sentinel NPCs.", dormantCount);
+        writeValue(output, "sentinel_npcs_low_detail", "gauge", "Current Sentinel NPCs in low-detail combat.", lowDetailCount);
+        writeValue(output, "sentinel_scheduler_pending_tasks", "gauge", "Pending server scheduler tasks (all plugins).", schedulerPendingTasks);
+        writeValue(output, "sentinel_pathing_queue_size", "gauge", "Queued background pathfinding jobs.", pathingQueueSize);
+        output.append("# HELP sentinel_update_seconds Time taken by full Sentinel NPC updates.\n# TYPE sentinel_update_seconds histogram\n");
+        updateLatency.write(output, "sentinel_update_seconds", null);
+        output.append("# HELP sentinel_phase_seconds Time taken by each Sentinel NPC update phase.\n# TYPE sentinel_phase_seconds histogram\n");
+        for (int i = 0; i < phaseLatency.length; i++) {
+            phaseLatency[i].write(output, "sentinel_phase_seconds", "phase=\"" + SentinelCostTracker.PHASE_NAMES[i] + "\"");
+        }
+        return output.toString();
+    }
+
+    private static double hitRate(LongAdder hits, LongAdder misses) {
+        long hitCount = hits.sum(), total = hitCount + misses.sum();
+        return total == 0 ? 0 : hitCount / (double) total;
+    }
+
+    @Override
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    @Override
+    public double getUpdatesPerSecond() {
+        return updatesPerSecond;
+    }
+
+    @Override
+    public double getAverageUpdateMillis() {
+        long count = updates.sum();
+        return count == 0 ? 0 : updateLatency.sum.sum() / 1e6 / count;
+    }
+
+    @Override
+    public long getTargetsAcquired() {
+        return targetsAcquired.sum();
+    }
+
+    @Override
+    public long getLineOfSightChecks() {
+        return lineOfSightChecks.sum();
+    }
+
+    @Override
+    public long getProjectilesFired() {
+        return projectilesFired.sum();
+    }
+
+    @Override
+    public long getPathfindingRequests() {
+        return pathfindingRequests.sum();
+    }
+
+    @Override
+    public double getItemVerdictCacheHitRate() {
+        return hitRate(itemVerdictHits, itemVerdictMisses);
+    }
+
+    @Override
+    public double getSnapshotCacheHitRate() {
+        return hitRate(snapshotHits, snapshotMisses);
+    }
+
+    @Override
+    public double getRegexCacheHitRate() {
+        return hitRate(regexCacheHits, regexCacheMisses);
+    }
+
+    @Override
+    public int getRegexCacheSize() {
+        return SentinelUtilities.regexes.size();
+    }
+
+    @Override
+    public int getSentinelCount() {
+        return sentinelCount;
+    }
+
+    @Override
+    public int getDormantCount() {
+        return dormantCount;
+    }
+
+    @Override
+    public int getLowDetailCount() {
+        return lowDetailCount;
+    }
+
+    @Override
+    public int getSchedulerPendingTasks() {
+        return schedulerPendingTasks;
+    }
+
+    @Override
+    public int getPathingQueueSize() {
+        return pathingQueueSize;
+    }
+}
@@ -0,0 +1,39 @@
+package org.mcmonkey.sentinel.metrics;
+
+/**
+ * JMX management interface for {@link SentinelMetrics}.
+ */
+public interface SentinelMetricsMBean {
+
+    long getUpdates();
+
+    double getUpdatesPerSecond();
+
+    double getAverageUpdateMillis();
+
+    long getTargetsAcquired();
+
+    long getLineOfSightChecks();
+
+    long getProjectilesFired();
+
+    long getPathfindingRequests();
+
+    double getItemVerdictCacheHitRate();
+
+    double getSnapshotCacheHitRate();
+
+    double getRegexCacheHitRate();
+
+    int getRegexCacheSize();
+
+    int getSentinelCount();
+
+    int getDormantCount();
+
+    int getLowDetailCount();
+
+    int getSchedulerPendingTasks();
+
+    int getPathingQueueSize();
+}
@@ -0,0 +1,567 @@
+package org.mcmonkey.sentinel.metrics;
+
+import net.citizensnpcs.api.CitizensAPI;
+import net.citizensnpcs.api.npc.NPC;
+import net.citizensnpcs.api.npc.NPCRegistry;
+import net.citizensnpcs.api.util.DataKey;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+import org.mcmonkey.sentinel.utilities.SentinelExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Stores the 'stats_' statistics values of all Sentinel NPCs, separately from the Citizens NPC save data.
+ * Each NPC has one fixed-width binary record in 'stats.dat' (totals, plus per-minute and per-hour history buckets for a few key values).
+ * Changed records are collected on the main thread each minute, and written in place from an async task.
+ * Writes are queued and always applied in the order they were collected, so an older batch can never overwrite a newer one.
+ * Records of NPCs that no longer exist are dropped, and the file compacted, on the next flush.
+ */
+public class SentinelStatsStore {
+
+    /**
+     * The names of all 'long' statistics values, in record order (matching their Citizens save keys).
+     */
+    public static final String[] LONG_STATS = new String[] { "stats_ticksSpawned", "stats_timesSpawned", "stats_arrowsFired", "stats_potionsThrown",
+            "stats_fireballsFired", "stats_snowballsThrown", "stats_eggsThrown", "stats_skullsThrown", "stats_llamaSpitShot", "stats_shulkerBulletsShot",
+            "stats_evokerFangsSpawned", "stats_pearlsUsed", "stats_punches", "stats_attackAttempts" };
+
+    /**
+     * The names of all 'double' statistics values, in record order (matching their Citizens save keys).
+     */
+    public static final String[] DOUBLE_STATS = new String[] { "stats_damageTaken", "stats_damageGiven" };
+
+    /**
+     * How often (in ticks) to flush changed stats. Also the sampling rate of the per-minute history buckets.
+     */
+    public static final long FLUSH_RATE = 20 * 60;
+
+    /**
+     * Series tracked in history buckets: attack attempts, damage given, damage taken.
+     */
+    public static final int SERIES_ATTACKS = 0, SERIES_DAMAGE_GIVEN = 1, SERIES_DAMAGE_TAKEN = 2, SERIES_COUNT = 3;
+
+    /**
+     * How many per-minute and per-hour history buckets are kept.
+     */
+    public static final int MINUTE_BUCKETS = 60, HOUR_BUCKETS = 24;
+
+    /**
+     * File header values.
+     */
+    public static final int FILE_MAGIC = 0x534E5354, FILE_VERSION = 1, HEADER_SIZE = 12;
+
+    /**
+     * Size in bytes of one record: UUID, totals, bucket anchors, then float buckets for each series.
+     */
+    public static final int RECORD_SIZE = 16 + 8 * LONG_STATS.length + 8 * DOUBLE_STATS.length + 8 + 8 + 4 * SERIES_COUNT * (MINUTE_BUCKETS + HOUR_BUCKETS);
+
+    /**
+     * Represents the stored statistics values of one NPC.
+     */
+    public static class StatsValues {
+
+        /**
+         * The 'long' values, in order of {@link #LONG_STATS}.
+         */
+        public long[] longs = new long[LONG_STATS.length];
+
+        /**
+         * The 'double' values, in order of {@link #DOUBLE_STATS}.
+         */
+        public double[] doubles = new double[DOUBLE_STATS.length];
+
+        /**
+         * The record slot index in the file, or -1 if not yet assigned.
+         */
+        public int slot = -1;
+
+        /**
+         * The absolute minute and hour number (since the epoch) of the most recent history buckets.
+         */
+        public long minuteAnchor, hourAnchor;
+
+        /**
+         * History buckets per series, as circular arrays indexed by absolute minute/hour number.
+         */
+        public float[][] minuteBuckets = new float[SERIES_COUNT][MINUTE_BUCKETS], hourBuckets = new float[SERIES_COUNT][HOUR_BUCKETS];
+
+        /**
+         * Reads the current values of a Sentinel NPC.
+         */
+        public static StatsValues readFrom(SentinelTrait sentinel) {
+            StatsValues values = new StatsValues();
+            values.longs = new long[] { sentinel.stats_ticksSpawned, sentinel.stats_timesSpawned, sentinel.stats_arrowsFired, sentinel.stats_potionsThrown,
+                    sentinel.stats_fireballsFired, sentinel.stats_snowballsThrown, sentinel.stats_eggsThrown, sentinel.stats_skullsThrown, sentinel.stats_llamaSpitShot,
+                    sentinel.stats_shulkerBulletsShot, sentinel.stats_evokerFangsSpawned, sentinel.stats_pearlsUsed, sentinel.stats_punches, sentinel.stats_attackAttempts };
+            values.doubles = new double[] { sentinel.stats_damageTaken, sentinel.stats_damageGiven };
+            return values;
+        }
+
+        /**
+         * Applies these values to a Sentinel NPC.
+         */
+        public void applyTo(SentinelTrait sentinel) {
+            sentinel.stats_ticksSpawned = longs[0];
+            sentinel.stats_timesSpawned = longs[1];
+            sentinel.stats_arrowsFired = longs[2];
+            sentinel.stats_potionsThrown = longs[3];
+            sentinel.stats_fireballsFired = longs[4];
+            sentinel.stats_snowballsThrown = longs[5];
+            sentinel.stats_eggsThrown = longs[6];
+            sentinel.stats_skullsThrown = longs[7];
+            sentinel.stats_llamaSpitShot = longs[8];
+            sentinel.stats_shulkerBulletsShot = longs[9];
+            sentinel.stats_evokerFangsSpawned = longs[10];
+            sentinel.stats_pearlsUsed = longs[11];
+            sentinel.stats_punches = longs[12];
+            sentinel.stats_attackAttempts = longs[13];
+            sentinel.stats_damageTaken = doubles[0];
+            sentinel.stats_damageGiven = doubles[1];
+        }
+
+        /**
+         * Returns whether these values have the same totals as another set of values.
+         */
+        public boolean matches(StatsValues other) {
+            return other != null && Arrays.equals(longs, other.longs) && Arrays.equals(doubles, other.doubles);
+        }
+
+        /**
+         * Gets the total value of a history series.
+         */
+        public double getSeries(int series) {
+            switch (series) {
+                case SERIES_ATTACKS:
+                    return longs[13];
+                case SERIES_DAMAGE_GIVEN:
+                    return doubles[1];
+                case SERIES_DAMAGE_TAKEN:
+                    return doubles[0];
+            }
+            return 0;
+        }
+
+        /**
+         * Moves the history buckets forward to the given minute, clearing any buckets that were skipped over.
+         */
+        public void advanceTo(long minute) {
+            long hour = minute / 60;
+            if (minute > minuteAnchor) {
+                for (long m = Math.max(minuteAnchor + 1, minute - MINUTE_BUCKETS + 1); m <= minute; m++) {
+                    for (int series = 0; series < SERIES_COUNT; series++) {
+                        minuteBuckets[series][(int) (m % MINUTE_BUCKETS)] = 0;
+                    }
+                }
+                minuteAnchor = minute;
+            }
+            if (hour > hourAnchor) {
+                for (long h = Math.max(hourAnchor + 1, hour - HOUR_BUCKETS + 1); h <= hour; h++) {
+                    for (int series = 0; series < SERIES_COUNT; series++) {
+                        hourBuckets[series][(int) (h % HOUR_BUCKETS)] = 0;
+                    }
+                }
+                hourAnchor = hour;
+            }
+        }
+
+        /**
+         * Takes over history from a previous set of values, and adds the change in each series since then to the current buckets.
+         */
+        public void recordSince(StatsValues previous, long minute) {
+            if (previous != null) {
+                slot = previous.slot;
+                minuteAnchor = previous.minuteAnchor;
+                hourAnchor = previous.hourAnchor;
+                minuteBuckets = previous.minuteBuckets;
+                hourBuckets = previous.hourBuckets;
+            }
+            advanceTo(minute);
+            if (previous == null) {
+                // No earlier sample to compare against, so history starts from here.
+                return;
+            }
+            for (int series = 0; series < SERIES_COUNT; series++) {
+                double delta = getSeries(series) - previous.getSeries(series);
+                if (delta > 0) {
+                    minuteBuckets[series][(int) (minute % MINUTE_BUCKETS)] += delta;
+                    hourBuckets[series][(int) ((minute / 60) % HOUR_BUCKETS)] += delta;
+                }
+            }
+        }
+
+        /**
+         * Sums the per-minute history of a series over the given number of most recent minutes (up to {@link #MINUTE_BUCKETS}).
+         */
+        public double sumMinutes(int series, int minutes, long now) {
+            double total = 0;
+            for (long m = now - Math.min(minutes, MINUTE_BUCKETS) + 1; m <= now; m++) {
+                if (m <= minuteAnchor && m > minuteAnchor - MINUTE_BUCKETS) {
+                    total += minuteBuckets[series][(int) (m % MINUTE_BUCKETS)];
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Sums the per-hour history of a series over the given number of most recent hours (up to {@link #HOUR_BUCKETS}).
+         */
+        public double sumHours(int series, int hours, long nowHour) {
+            double total = 0;
+            for (long h = nowHour - Math.min(hours, HOUR_BUCKETS) + 1; h <= nowHour; h++) {
+                if (h <= hourAnchor && h > hourAnchor - HOUR_BUCKETS) {
+                    total += hourBuckets[series][(int) (h % HOUR_BUCKETS)];
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Writes this record (in fixed-width binary form) to a buffer.
+         */
+        public void write(UUID id, ByteBuffer buffer) {
+            buffer.putLong(id.getMostSignificantBits());
+            buffer.putLong(id.getLeastSignificantBits());
+            for (long value : longs) {
+                buffer.putLong(value);
+            }
+            for (double value : doubles) {
+                buffer.putDouble(value);
+            }
+            buffer.putLong(minuteAnchor);
+            buffer.putLong(hourAnchor);
+            for (int series = 0; series < SERIES_COUNT; series++) {
+                for (float value : minuteBuckets[series]) {
+                    buffer.putFloat(value);
+                }
+                for (float value : hourBuckets[series]) {
+                    buffer.putFloat(value);
+                }
+            }
+        }
+
+        /**
+         * Reads a record (in fixed-width binary form) from a buffer.
+         */
+        public static StatsValues read(ByteBuffer buffer, UUID[] idOutput) {
+            StatsValues values = new StatsValues();
+            idOutput[0] = new UUID(buffer.getLong(), buffer.getLong());
+            for (int i = 0; i < LONG_STATS.length; i++) {
+                values.longs[i] = buffer.getLong();
+            }
+            for (int i = 0; i < DOUBLE_STATS.length; i++) {
+                values.doubles[i] = buffer.getDouble();
+            }
+            values.minuteAnchor = buffer.getLong();
+            values.hourAnchor = buffer.getLong();
+            for (int series = 0; series < SERIES_COUNT; series++) {
+                for (int i = 0; i < MINUTE_BUCKETS; i++) {
+                    values.minuteBuckets[series][i] = buffer.getFloat();
+                }
+                for (int i = 0; i < HOUR_BUCKETS; i++) {
+                    values.hourBuckets[series][i] = buffer.getFloat();
+                }
+            }
+            return values;
+        }
+    }
+
+    /**
+     * A pending write of one record to file.
+     */
+    public static class PendingWrite {
+
+        /**
+         * The record slot index.
+         */
+        public int slot;
+
+        /**
+         * The encoded record data.
+         */
+        public byte[] data;
+    }
+
+    /**
+     * A batch of record writes collected by one flush.
+     */
+    public static class WriteBatch {
+
+        /**
+         * The records to write.
+         */
+        public ArrayList<PendingWrite> writes = new ArrayList<>();
+
+        /**
+         * How many record slots are in use as of this batch (the file is truncated to match).
+         */
+        public int slotCount;
+    }
+
+    /**
+     * Batches waiting to be written, in the order they were collected.
+     */
+    private static final ConcurrentLinkedQueue<WriteBatch> writeQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The latest known stored values for every NPC, by NPC UUID.
+     */
+    public static HashMap<UUID, StatsValues> records = new HashMap<>();
+
+    /**
+     * How many record slots are in use in the file.
+     */
+    public static int slotCount = 0;
+
+    /**
+     * The stats data file.
+     */
+    public static File file;
+
+    /**
+     * Lock object for file writes.
+     */
+    private static final Object fileLock = new Object();
+
+    /**
+     * Gets the current absolute minute number.
+     */
+    public static long currentMinute() {
+        return System.currentTimeMillis() / (1000L * 60L);
+    }
+
+    /**
+     * Loads all stored stats from file. Must be called before any NPCs load.
+     */
+    public static void load() {
+        file = new File(SentinelPlugin.instance.getDataFolder(), "stats.dat");
+        records.clear();
+        slotCount = 0;
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (!isValidHeader(buffer)) {
+                SentinelPlugin.instance.getLogger().warning("Sentinel stats file 'stats.dat' is invalid or from an unknown version, and will be replaced.");
+                needsFullWrite = true;
+                return;
+            }
+            UUID[] id = new UUID[1];
+            while (buffer.remaining() >= RECORD_SIZE) {
+                StatsValues values = StatsValues.read(buffer, id);
+                values.slot = slotCount++;
+                records.put(id[0], values);
+            }
+        }
+        catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns whether the buffer starts with a valid file header for the current version (and moves past the header).
+     */
+    public static boolean isValidHeader(ByteBuffer buffer) {
+        return buffer.remaining() >= HEADER_SIZE && buffer.getInt() == FILE_MAGIC && buffer.getInt() == FILE_VERSION && buffer.getInt() == RECORD_SIZE;
+    }
+
+    /**
+     * Whether all records must be written out on the next flush (eg after replacing an invalid file).
+     */
+    public static boolean needsFullWrite = false;
+
+    /**
+     * Whether records have been removed since the last flush, so the file needs compacting.
+     */
+    public static boolean needsCompact = false;
+
+    /**
+     * Removes the stored stats record of an NPC (eg a temporary NPC). Its slot is freed on the next flush.
+     */
+    public static void remove(UUID id) {
+        if (records.remove(id) != null) {
+            needsCompact = true;
+        }
+    }
+
+    /**
+     * Returns whether an NPC's stats should be stored: it must be a Sentinel, and not a temporary NPC that Citizens doesn't save.
+     */
+    public static boolean shouldStore(NPC npc) {
+        return npc.hasTrait(SentinelTrait.class) && npc.data().get(NPC.Metadata.SHOULD_SAVE, true);
+    }
+
+    /**
+     * Gets the stored stats record for an NPC, if any.
+     */
+    public static StatsValues getRecord(SentinelTrait sentinel) {
+        return records.get(sentinel.getNPC().getUniqueId());
+    }
+
+    /**
+     * Applies stored stats to a Sentinel NPC as it loads.
+     * If the NPC has no stored stats, legacy values from the Citizens save data key are used (if any).
+     */
+    public static void loadFor(SentinelTrait sentinel, DataKey key) {
+        StatsValues values = records.get(sentinel.getNPC().getUniqueId());
+        if (values != null) {
+            values.applyTo(sentinel);
+            return;
+        }
+        if (!key.keyExists(LONG_STATS[0])) {
+            return;
+        }
+        values = new StatsValues();
+        for (int i = 0; i < LONG_STATS.length; i++) {
+            values.longs[i] = key.getLong(LONG_STATS[i], 0);
+        }
+        for (int i = 0; i < DOUBLE_STATS.length; i++) {
+            values.doubles[i] = key.getDouble(DOUBLE_STATS[i], 0);
+        }
+        values.applyTo(sentinel);
+    }
+
+    /**
+     * Removes legacy stats keys from an NPC's Citizens save data (once the stats are safely in the stats store).
+     */
+    public static void removeLegacyKeys(SentinelTrait sentinel, DataKey key) {
+        if (!key.keyExists(LONG_STATS[0]) || !records.containsKey(sentinel.getNPC().getUniqueId())) {
+            return;
+        }
+        for (String stat : LONG_STATS) {
+            key.removeKey(stat);
+        }
+        for (String stat : DOUBLE_STATS) {
+            key.removeKey(stat);
+        }
+    }
+
+    /**
+     * Collects changed stats from all saved Sentinel NPCs in every NPC registry (updating history buckets), and writes the changed records to file.
+     * Records of NPCs that no longer exist are dropped, and the remaining records moved down to fill the freed slots.
+     * If 'async' is false, this and any earlier queued writes are completed before returning.
+     */
+    public static void flush(boolean async) {
+        if (file == null) {
+            return;
+        }
+        long minute = currentMinute();
+        ArrayList<NPC> npcs = new ArrayList<>();
+        HashSet<UUID> live = new HashSet<>();
+        for (NPCRegistry registry : CitizensAPI.getNPCRegistries()) {
+            for (NPC npc : registry) {
+                if (shouldStore(npc)) {
+                    npcs.add(npc);
+                    live.add(npc.getUniqueId());
+                }
+            }
+        }
+        if (records.keySet().removeIf(id -> !live.contains(id))) {
+            needsCompact = true;
+        }
+        boolean compacted = needsCompact;
+        if (needsCompact) {
+            needsCompact = false;
+            slotCount = 0;
+            for (StatsValues values : records.values()) {
+                values.slot = slotCount++;
+            }
+            needsFullWrite = true;
+        }
+        WriteBatch batch = new WriteBatch();
+        ArrayList<PendingWrite> writes = batch.writes;
+        for (NPC npc : npcs) {
+            SentinelTrait sentinel = npc.getTraitNullable(SentinelTrait.class);
+            StatsValues previous = records.get(npc.getUniqueId());
+            StatsValues values = StatsValues.readFrom(sentinel);
+            if (values.matches(previous) && !needsFullWrite) {
+                continue;
+            }
+            values.recordSince(previous, minute);
+            if (values.slot == -1) {
+                values.slot = slotCount++;
+            }
+            records.put(npc.getUniqueId(), values);
+            PendingWrite write = new PendingWrite();
+            write.slot = values.slot;
+            write.data = new byte[RECORD_SIZE];
+            values.write(npc.getUniqueId(), ByteBuffer.wrap(write.data));
+            writes.add(write);
+        }
+        if (needsFullWrite) {
+            needsFullWrite = false;
+            HashSet<Integer> written = new HashSet<>();
+            for (PendingWrite write : writes) {
+                written.add(write.slot);
+            }
+            for (Map.Entry<UUID, StatsValues> entry : records.entrySet()) {
+                if (!written.contains(entry.getValue().slot)) {
+                    PendingWrite write = new PendingWrite();
+                    write.slot = entry.getValue().slot;
+                    write.data = new byte[RECORD_SIZE];
+                    entry.getValue().write(entry.getKey(), ByteBuffer.wrap(write.data));
+                    writes.add(write);
+                }
+            }
+        }
+        batch.slotCount = slotCount;
+        boolean hasWork = !writes.isEmpty() || compacted;
+        if (hasWork) {
+            writeQueue.add(batch);
+        }
+        if (async) {
+            if (hasWork) {
+                SentinelExecutor.runAsync(SentinelStatsStore::writeQueued);
+            }
+        }
+        else {
+            writeQueued();
+        }
+    }
+
+    /**
+     * Writes all queued batches, in order. Whichever thread gets the file lock first writes everything queued so far.
+     */
+    public static void writeQueued() {
+        synchronized (fileLock) {
+            WriteBatch batch;
+            while ((batch = writeQueue.poll()) != null) {
+                writeRecords(batch.writes, batch.slotCount);
+            }
+        }
+    }
+
+    /**
+     * Writes records into their fixed slots in the stats file, then truncates it to the given number of slots.
+     * If the file has no valid header (new, invalid, or from another version), it is emptied and a new header written first.
+     */
+    public static void writeRecords(List<PendingWrite> writes, int slotCount) {
+        synchronized (fileLock) {
+            try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+                byte[] header = new byte[HEADER_SIZE];
+                if (output.length() < HEADER_SIZE || output.read(header) != HEADER_SIZE || !isValidHeader(ByteBuffer.wrap(header))) {
+                    output.setLength(0);
+                    output.seek(0);
+                    output.writeInt(FILE_MAGIC);
+                    output.writeInt(FILE_VERSION);
+                    output.writeInt(RECORD_SIZE);
+                }
+                for (PendingWrite write : writes) {
+                    output.seek(HEADER_SIZE + (long) write.slot * RECORD_SIZE);
+                    output.write(write.data);
+                }
+                output.setLength(HEADER_SIZE + (long) slotCount * RECORD_SIZE);
+            }
+            catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
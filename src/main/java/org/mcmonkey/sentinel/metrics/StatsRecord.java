@@ -2,6 +2,7 @@ package org.mcmonkey.sentinel.metrics;
 
 import org.bukkit.Bukkit;
 import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.utilities.SentinelExecutor;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
@@ -12,12 +13,12 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 
-public class StatsRecord extends Thread {
+public class StatsRecord implements Runnable {
 
     public static void trigger() {
         StatsRecord recorder = new StatsRecord();
         recorder.gather();
-        recorder.start();
+        SentinelExecutor.runAsync(recorder);
     }
 
     public static String hash_md5(byte[] bytes) {
@@ -0,0 +1,192 @@
+package org.mcmonkey.sentinel.targeting;
+
+import org.bukkit.entity.Player;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+import org.mcmonkey.sentinel.utilities.SentinelExecutor;
+import org.mcmonkey.sentinel.utilities.SentinelPhraseMatcher;
+
+import java.util.*;
+
+/**
+ * Index of every 'event:message:' target and avoid phrase across all current Sentinel NPCs, so chat messages can be matched on the async chat thread.
+ * Only NPCs with a matching phrase are checked (for line-of-sight, on the main thread) when a player chats.
+ * The index is rebuilt on the main thread whenever the set of phrases changes.
+ */
+public class SentinelChatIndex {
+
+    /**
+     * How often (in ticks) to check for phrase changes that weren't flagged with {@link #markDirty()}.
+     */
+    public static final long CHANGE_CHECK_RATE = 10;
+
+    /**
+     * One 'message:' phrase on one NPC.
+     */
+    public static class Entry {
+
+        /**
+         * The NPC with the phrase.
+         */
+        public final SentinelTrait sentinel;
+
+        /**
+         * The lowercased phrase.
+         */
+        public final String phrase;
+
+        /**
+         * Whether this is an avoid phrase (rather than a target phrase).
+         */
+        public final boolean avoid;
+
+        public Entry(SentinelTrait sentinel, String phrase, boolean avoid) {
+            this.sentinel = sentinel;
+            this.phrase = phrase;
+            this.avoid = avoid;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) other;
+            return sentinel == entry.sentinel && avoid == entry.avoid && phrase.equals(entry.phrase);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(sentinel) * 31 + phrase.hashCode() + (avoid ? 1 : 0);
+        }
+    }
+
+    /**
+     * An immutable compiled index.
+     */
+    public static class Index {
+
+        /**
+         * All entries, in the same order as the matcher's phrases.
+         */
+        public final List<Entry> entries;
+
+        /**
+         * Matcher for the entry phrases.
+         */
+        public final SentinelPhraseMatcher matcher;
+
+        /**
+         * Entries with an empty phrase, which match any message.
+         */
+        public final List<Entry> matchAll;
+
+        public Index(List<Entry> entries) {
+            this.entries = entries;
+            ArrayList<String> phrases = new ArrayList<>(entries.size());
+            ArrayList<Entry> empty = new ArrayList<>();
+            for (Entry entry : entries) {
+                phrases.add(entry.phrase);
+                if (entry.phrase.isEmpty()) {
+                    empty.add(entry);
+                }
+            }
+            matcher = new SentinelPhraseMatcher(phrases);
+            matchAll = empty;
+        }
+    }
+
+    /**
+     * The current index (replaced as a whole on rebuild, so it can be read from any thread).
+     */
+    public static volatile Index current = new Index(Collections.emptyList());
+
+    /**
+     * Whether the index needs rebuilding at the next tick.
+     */
+    public static volatile boolean dirty = true;
+
+    /**
+     * Flags the index for rebuilding at the next tick (call after changing any NPC's target or avoid lists).
+     */
+    public static void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Collects the current phrase entries from all Sentinel NPCs. Main thread only.
+     */
+    public static ArrayList<Entry> collectEntries() {
+        ArrayList<Entry> entries = new ArrayList<>();
+        for (SentinelTrait sentinel : SentinelPlugin.instance.currentSentinelNPCs) {
+            addEntries(entries, sentinel, sentinel.allTargets, false);
+            addEntries(entries, sentinel, sentinel.allAvoids, true);
+        }
+        return entries;
+    }
+
+    private static void addEntries(ArrayList<Entry> entries, SentinelTrait sentinel, SentinelTargetList list, boolean avoid) {
+        list.ensureInit();
+        for (String event : list.byEvent) {
+            if (event.startsWith("message:")) {
+                entries.add(new Entry(sentinel, event.substring("message:".length()).toLowerCase(), avoid));
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index if it was flagged dirty, or (every {@link #CHANGE_CHECK_RATE} ticks) if the phrases changed. Main thread only.
+     */
+    public static void update() {
+        if (!dirty && SentinelPlugin.instance.tickTimeTotal % CHANGE_CHECK_RATE != 0) {
+            return;
+        }
+        dirty = false;
+        ArrayList<Entry> entries = collectEntries();
+        if (!entries.equals(current.entries)) {
+            current = new Index(entries);
+        }
+    }
+
+    /**
+     * Matches a chat message against the index (from any thread), and if any NPC has a matching phrase,
+     * queues a single main-thread task to target (or avoid) the player for each of those NPCs that can see them.
+     */
+    public static void processChat(Player player, String message) {
+        Index index = current;
+        if (index.entries.isEmpty()) {
+            return;
+        }
+        LinkedHashSet<Entry> matched = new LinkedHashSet<>(index.matchAll);
+        if (!index.matcher.isEmpty()) {
+            BitSet found = index.matcher.findAll(message.toLowerCase());
+            for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+                matched.add(index.entries.get(i));
+            }
+        }
+        if (matched.isEmpty()) {
+            return;
+        }
+        SentinelExecutor.runOnMainThread(() -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            HashSet<SentinelTrait> targeted = new HashSet<>(), avoided = new HashSet<>();
+            for (Entry entry : matched) {
+                SentinelTrait sentinel = entry.sentinel;
+                if (!(entry.avoid ? avoided : targeted).add(sentinel)) {
+                    continue;
+                }
+                if (!sentinel.getNPC().isSpawned() || !sentinel.targetingHelper.canSee(player)) {
+                    continue;
+                }
+                if (entry.avoid) {
+                    sentinel.targetingHelper.addAvoid(player.getUniqueId());
+                }
+                else {
+                    sentinel.targetingHelper.addTarget(player.getUniqueId());
+                }
+            }
+        });
+    }
+}
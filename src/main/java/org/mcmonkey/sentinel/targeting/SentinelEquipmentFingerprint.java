@@ -0,0 +1,216 @@
+package org.mcmonkey.sentinel.targeting;
+
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.EntityEquipment;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelUtilities;
+
+import java.util.*;
+
+/**
+ * Tracks a cheap per-entity fingerprint of equipment and inventory contents (material, display name, and lore per slot).
+ * Fingerprints are shared by all NPCs, so that item-target verdicts can be reused until the relevant slots actually change.
+ * Slots are recaptured when an equipment change event flags them (see {@link SentinelEquipmentListener}),
+ * or otherwise periodically (to catch changes made by other plugins, which don't fire events).
+ */
+public class SentinelEquipmentFingerprint {
+
+    /**
+     * Slot category: main hand item.
+     */
+    public static final int CATEGORY_HELD = 0;
+
+    /**
+     * Slot category: offhand item.
+     */
+    public static final int CATEGORY_OFFHAND = 1;
+
+    /**
+     * Slot category: worn armor (helmet, chestplate, leggings, boots).
+     */
+    public static final int CATEGORY_ARMOR = 2;
+
+    /**
+     * Slot category: inventory storage contents.
+     */
+    public static final int CATEGORY_INVENTORY = 3;
+
+    /**
+     * How many slot categories exist.
+     */
+    public static final int CATEGORY_COUNT = 4;
+
+    /**
+     * How long (in ticks) an unused fingerprint is retained before being purged.
+     */
+    public static final long PURGE_AGE = 20 * 60;
+
+    /**
+     * How often (in ticks) a player's fingerprint is recaptured without an event flagging a change.
+     */
+    public static final long PLAYER_RECHECK_RATE = 100;
+
+    /**
+     * How often (in ticks) a non-player entity's (or NPC's) fingerprint is recaptured without an event flagging a change.
+     */
+    public static final long MOB_RECHECK_RATE = 20;
+
+    /**
+     * Value of {@link #capturedTick} for a category that needs to be recaptured at next use.
+     */
+    public static final long NOT_CAPTURED = -1;
+
+    /**
+     * Whether equipment change events are being tracked. If not, fingerprints are recaptured every tick.
+     */
+    public static boolean eventDriven = false;
+
+    /**
+     * Map of entity UUIDs to their current fingerprint.
+     */
+    public static HashMap<UUID, SentinelEquipmentFingerprint> fingerprints = new HashMap<>();
+
+    /**
+     * Global version counter, to ensure versions are never reused between entities or after a purge.
+     */
+    private static long versionCounter = 0;
+
+    /**
+     * Gets the fingerprint object for an entity (creating it if needed).
+     */
+    public static SentinelEquipmentFingerprint getFor(LivingEntity entity) {
+        SentinelEquipmentFingerprint result = fingerprints.get(entity.getUniqueId());
+        if (result == null) {
+            result = new SentinelEquipmentFingerprint();
+            fingerprints.put(entity.getUniqueId(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the current version of one slot category for an entity.
+     * The version changes only when the category's contents change.
+     */
+    public static long getVersion(LivingEntity entity, int category) {
+        return getFor(entity).version(entity, category);
+    }
+
+    /**
+     * Removes the fingerprint for an entity (eg when it dies).
+     */
+    public static void remove(UUID id) {
+        fingerprints.remove(id);
+    }
+
+    /**
+     * Flags slot categories of an entity's fingerprint as changed, so they are recaptured at next use.
+     */
+    public static void markChanged(UUID id, int... categories) {
+        SentinelEquipmentFingerprint print = fingerprints.get(id);
+        if (print == null) {
+            return;
+        }
+        for (int category : categories) {
+            print.capturedTick[category] = NOT_CAPTURED;
+        }
+    }
+
+    /**
+     * Removes any fingerprints that have not been used recently.
+     */
+    public static void purgeStale() {
+        long now = SentinelPlugin.instance.tickTimeTotal;
+        fingerprints.values().removeIf(print -> print.lastUsed + PURGE_AGE < now);
+    }
+
+    /**
+     * The per-category slot data (three ints per slot: material ordinal, name hash, lore hash).
+     */
+    public int[][] slotData = new int[CATEGORY_COUNT][];
+
+    /**
+     * The per-category current version.
+     */
+    public long[] versions = new long[CATEGORY_COUNT];
+
+    /**
+     * The per-category server tick the data was last captured on.
+     */
+    public long[] capturedTick = new long[] { NOT_CAPTURED, NOT_CAPTURED, NOT_CAPTURED, NOT_CAPTURED };
+
+    /**
+     * The server tick this fingerprint was last used on.
+     */
+    public long lastUsed;
+
+    /**
+     * Gets the current version of one slot category, recapturing the slot data if it was flagged as changed or is due for a recheck.
+     */
+    public long version(LivingEntity entity, int category) {
+        long now = SentinelPlugin.instance.tickTimeTotal;
+        lastUsed = now;
+        if (capturedTick[category] != NOT_CAPTURED) {
+            // NPCs can be Player entities, but their equipment changes don't fire events
+            long recheckRate = !eventDriven ? 1 : (entity instanceof Player && !entity.hasMetadata("NPC") ? PLAYER_RECHECK_RATE : MOB_RECHECK_RATE);
+            if (now - capturedTick[category] < recheckRate) {
+                return versions[category];
+            }
+        }
+        capturedTick[category] = now;
+        int[] data = capture(entity, category);
+        if (slotData[category] == null || !Arrays.equals(slotData[category], data)) {
+            slotData[category] = data;
+            versions[category] = ++versionCounter;
+        }
+        return versions[category];
+    }
+
+    /**
+     * Captures the raw slot data for one category of an entity.
+     */
+    public static int[] capture(LivingEntity entity, int category) {
+        EntityEquipment equipment = entity.getEquipment();
+        switch (category) {
+            case CATEGORY_HELD:
+                return captureItems(SentinelUtilities.getHeldItem(entity));
+            case CATEGORY_OFFHAND:
+                return captureItems(SentinelUtilities.getOffhandItem(entity));
+            case CATEGORY_ARMOR:
+                if (equipment == null) {
+                    return new int[0];
+                }
+                return captureItems(equipment.getHelmet(), equipment.getChestplate(), equipment.getLeggings(), equipment.getBoots());
+            case CATEGORY_INVENTORY:
+                if (!(entity instanceof InventoryHolder)) {
+                    return new int[0];
+                }
+                return captureItems(((InventoryHolder) entity).getInventory().getStorageContents());
+        }
+        return new int[0];
+    }
+
+    /**
+     * Builds the slot data array for a set of items.
+     */
+    public static int[] captureItems(ItemStack... items) {
+        int[] result = new int[items.length * 3];
+        for (int i = 0; i < items.length; i++) {
+            ItemStack item = items[i];
+            if (SentinelUtilities.isAir(item)) {
+                result[i * 3] = -1;
+                continue;
+            }
+            result[i * 3] = item.getType().ordinal();
+            if (item.hasItemMeta()) {
+                ItemMeta meta = item.getItemMeta();
+                result[i * 3 + 1] = meta.hasDisplayName() ? meta.getDisplayName().hashCode() : 0;
+                result[i * 3 + 2] = meta.hasLore() ? meta.getLore().hashCode() : 0;
+            }
+        }
+        return result;
+    }
+}
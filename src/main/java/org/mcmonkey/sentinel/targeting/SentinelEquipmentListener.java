@@ -0,0 +1,106 @@
+package org.mcmonkey.sentinel.targeting;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockDispenseArmorEvent;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.EntityShootBowEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.*;
+import org.mcmonkey.sentinel.SentinelPlugin;
+
+import static org.mcmonkey.sentinel.targeting.SentinelEquipmentFingerprint.*;
+
+/**
+ * Listens for events that change an entity's equipment or inventory, and flags the entity's equipment fingerprint for recapture.
+ * This allows player fingerprints to be rechecked only rarely otherwise (see {@link SentinelEquipmentFingerprint#PLAYER_RECHECK_RATE}).
+ * Only registered on 1.12 and newer (as some of these events don't exist on older versions).
+ */
+public class SentinelEquipmentListener implements Listener {
+
+    public SentinelEquipmentListener() {
+        Bukkit.getPluginManager().registerEvents(this, SentinelPlugin.instance);
+        eventDriven = true;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemHeld(PlayerItemHeldEvent event) {
+        markChanged(event.getPlayer(), CATEGORY_HELD);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSwapHands(PlayerSwapHandItemsEvent event) {
+        markChanged(event.getPlayer(), CATEGORY_HELD, CATEGORY_OFFHAND);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        markChanged(event.getWhoClicked(), CATEGORY_HELD, CATEGORY_OFFHAND, CATEGORY_ARMOR, CATEGORY_INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        markChanged(event.getWhoClicked(), CATEGORY_HELD, CATEGORY_OFFHAND, CATEGORY_ARMOR, CATEGORY_INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDropItem(PlayerDropItemEvent event) {
+        markChanged(event.getPlayer(), CATEGORY_HELD, CATEGORY_INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickupItem(EntityPickupItemEvent event) {
+        markChanged(event.getEntity(), CATEGORY_HELD, CATEGORY_OFFHAND, CATEGORY_ARMOR, CATEGORY_INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInteract(PlayerInteractEvent event) {
+        // Covers equipping armor by right-click, and using up the last of a held stack (placing, throwing, etc.)
+        markChanged(event.getPlayer(), CATEGORY_HELD, CATEGORY_OFFHAND, CATEGORY_ARMOR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onConsume(PlayerItemConsumeEvent event) {
+        markChanged(event.getPlayer(), CATEGORY_HELD, CATEGORY_OFFHAND);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onItemBreak(PlayerItemBreakEvent event) {
+        markChanged(event.getPlayer(), CATEGORY_HELD, CATEGORY_OFFHAND, CATEGORY_ARMOR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShootBow(EntityShootBowEvent event) {
+        // Uses up arrows (from the offhand or inventory), and wears down the bow.
+        markChanged(event.getEntity(), CATEGORY_HELD, CATEGORY_OFFHAND, CATEGORY_INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDispenseArmor(BlockDispenseArmorEvent event) {
+        markChanged(event.getTargetEntity(), CATEGORY_ARMOR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeath(PlayerDeathEvent event) {
+        markChanged(event.getEntity(), CATEGORY_HELD, CATEGORY_OFFHAND, CATEGORY_ARMOR, CATEGORY_INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        markChanged(event.getPlayer(), CATEGORY_HELD, CATEGORY_OFFHAND, CATEGORY_ARMOR, CATEGORY_INVENTORY);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        remove(event.getPlayer().getUniqueId());
+    }
+
+    private static void markChanged(LivingEntity entity, int... categories) {
+        SentinelEquipmentFingerprint.markChanged(entity.getUniqueId(), categories);
+    }
+}
@@ -0,0 +1,125 @@
+package org.mcmonkey.sentinel.targeting;
+
+import org.mcmonkey.sentinel.SentinelUtilities;
+import org.mcmonkey.sentinel.utilities.SentinelPhraseMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled form of a list of name regexes (like 'player:' or 'npc:' targets), equivalent to {@link SentinelUtilities#getRegexTarget(String, List)}.
+ * Plain literal entries are all matched together in one pass over the name, so only real regexes need individual checks.
+ */
+public class SentinelNameMatcher {
+
+    /**
+     * Returns a matcher for the list, reusing the existing matcher if it's still up to date.
+     */
+    public static SentinelNameMatcher update(SentinelNameMatcher existing, List<String> list) {
+        if (existing != null && existing.isUpToDate(list)) {
+            return existing;
+        }
+        return new SentinelNameMatcher(list);
+    }
+
+    /**
+     * The list entries this matcher was compiled from.
+     */
+    public final String[] source;
+
+    /**
+     * Matcher for the literal entries.
+     */
+    public final SentinelPhraseMatcher literals;
+
+    /**
+     * Index in {@link #source} of each literal phrase in {@link #literals}.
+     */
+    public final int[] literalIndices;
+
+    /**
+     * Indices in {@link #source} of entries that need a real regex check.
+     */
+    public final int[] regexIndices;
+
+    /**
+     * Compiled patterns of the regex entries, parallel to {@link #regexIndices}.
+     */
+    public final Pattern[] regexPatterns;
+
+    /**
+     * Index in {@link #source} of the first empty entry (which matches any name), or the source length if none.
+     */
+    public final int firstEmpty;
+
+    public SentinelNameMatcher(List<String> list) {
+        source = list.toArray(new String[0]);
+        ArrayList<String> phrases = new ArrayList<>();
+        ArrayList<Integer> literalList = new ArrayList<>(), regexList = new ArrayList<>();
+        int empty = source.length;
+        for (int i = 0; i < source.length; i++) {
+            if (source[i].isEmpty()) {
+                empty = Math.min(empty, i);
+            }
+            else if (SentinelUtilities.isLiteralRegex(source[i])) {
+                phrases.add(SentinelUtilities.asciiLowerCaseSingleLine(source[i]));
+                literalList.add(i);
+            }
+            else {
+                regexList.add(i);
+            }
+        }
+        literals = new SentinelPhraseMatcher(phrases);
+        literalIndices = literalList.stream().mapToInt(Integer::intValue).toArray();
+        regexIndices = regexList.stream().mapToInt(Integer::intValue).toArray();
+        regexPatterns = new Pattern[regexIndices.length];
+        for (int i = 0; i < regexIndices.length; i++) {
+            regexPatterns[i] = SentinelUtilities.regexFor(".*" + source[regexIndices[i]] + ".*");
+        }
+        firstEmpty = empty;
+    }
+
+    /**
+     * Returns whether this matcher still represents the given list (compares entries by reference, so is cheap).
+     */
+    public boolean isUpToDate(List<String> list) {
+        if (list.size() != source.length) {
+            return false;
+        }
+        for (int i = 0; i < source.length; i++) {
+            if (list.get(i) != source[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first entry (in list order) that matches the name, or null if none do.
+     */
+    public String getMatch(String name) {
+        String lowerName = SentinelUtilities.asciiLowerCaseSingleLine(name);
+        if (lowerName == null) {
+            return SentinelUtilities.getRegexTarget(name, Arrays.asList(source));
+        }
+        int[] first = new int[] { firstEmpty };
+        if (literalIndices.length > 0) {
+            literals.match(lowerName, (phrase, start) -> {
+                first[0] = Math.min(first[0], literalIndices[phrase]);
+                return true;
+            });
+        }
+        for (int i = 0; i < regexIndices.length; i++) {
+            int index = regexIndices[i];
+            if (index >= first[0]) {
+                break;
+            }
+            if (regexPatterns[i].matcher(name).matches()) {
+                return source[index];
+            }
+        }
+        return first[0] < source.length ? source[first[0]] : null;
+    }
+}
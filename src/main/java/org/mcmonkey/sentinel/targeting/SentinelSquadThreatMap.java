@@ -0,0 +1,425 @@
+package org.mcmonkey.sentinel.targeting;
+
+import org.bukkit.Location;
+import org.bukkit.entity.LivingEntity;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+import org.mcmonkey.sentinel.SentinelUtilities;
+import org.mcmonkey.sentinel.metrics.SentinelMetrics;
+
+import java.util.*;
+
+/**
+ * Threat information shared by all members of a squad: known enemies, their last known positions, whether the squad can currently see them,
+ * and which members are engaging (and how much of the squad's damage is assigned to) each enemy.
+ * Members with nothing to fight search the last known position of enemies that have gone out of sight (see {@link #getSearchLocation(SentinelTrait)}).
+ * Refreshed at most once per update cycle per squad. Line-of-sight to each enemy is checked from a few representative members, rather than from every member.
+ * Members choosing a new target are greedily assigned one by one (see {@link #getAssignmentCost(SentinelTrait, LivingEntity, double)}),
+ * so that fire is spread across enemies instead of every member piling onto the nearest one.
+ */
+public class SentinelSquadThreatMap {
+
+    /**
+     * How many squad members are used for shared line-of-sight checks.
+     */
+    public static final int REPRESENTATIVES = 3;
+
+    /**
+     * How long (in ticks) a threat is remembered after it was last seen.
+     */
+    public static final long FORGET_TIME = 20 * 30;
+
+    /**
+     * How long (in ticks) an unused squad map is retained before being purged.
+     */
+    public static final long PURGE_AGE = 20 * 60;
+
+    /**
+     * Assignment cost added when all of a member's damage would be wasted on an enemy already assigned enough damage to kill it.
+     */
+    public static final double OVERKILL_WEIGHT = 1.0;
+
+    /**
+     * Assignment cost added for an enemy at full (unassigned) health, to prefer finishing off weakened enemies.
+     */
+    public static final double HEALTH_WEIGHT = 0.25;
+
+    /**
+     * Map of squad names to their threat maps.
+     */
+    public static HashMap<String, SentinelSquadThreatMap> squads = new HashMap<>();
+
+    /**
+     * Spawned Sentinel NPCs by squad name, rebuilt at most once per update cycle (for all squads at once).
+     */
+    public static HashMap<String, ArrayList<SentinelTrait>> membersBySquad = new HashMap<>();
+
+    /**
+     * The server tick {@link #membersBySquad} was last rebuilt on.
+     */
+    public static long membersIndexedTick = -1;
+
+    /**
+     * Gets the spawned members of a squad, rebuilding the squad index (with one pass over all Sentinel NPCs) if not already done within the current update cycle.
+     */
+    public static List<SentinelTrait> getMembers(String squad) {
+        long now = SentinelPlugin.instance.tickTimeTotal;
+        if (membersIndexedTick == -1 || now - membersIndexedTick >= SentinelPlugin.instance.tickRate) {
+            membersIndexedTick = now;
+            for (ArrayList<SentinelTrait> list : membersBySquad.values()) {
+                list.clear();
+            }
+            for (SentinelTrait sentinel : SentinelPlugin.instance.currentSentinelNPCs) {
+                if (sentinel.squad != null && sentinel.getNPC().isSpawned()) {
+                    membersBySquad.computeIfAbsent(sentinel.squad, k -> new ArrayList<>()).add(sentinel);
+                }
+            }
+            membersBySquad.values().removeIf(List::isEmpty);
+        }
+        List<SentinelTrait> result = membersBySquad.get(squad);
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /**
+     * Gets the (refreshed) threat map for the NPC's squad, or null if the NPC is not in a squad.
+     */
+    public static SentinelSquadThreatMap getFor(SentinelTrait sentinel) {
+        if (sentinel.squad == null) {
+            return null;
+        }
+        SentinelSquadThreatMap map = squads.get(sentinel.squad);
+        if (map == null) {
+            map = new SentinelSquadThreatMap(sentinel.squad);
+            squads.put(sentinel.squad, map);
+        }
+        map.refreshIfNeeded();
+        return map;
+    }
+
+    /**
+     * Removes any squad maps that have not been used recently.
+     */
+    public static void purgeStale() {
+        long now = SentinelPlugin.instance.tickTimeTotal;
+        squads.values().removeIf(map -> map.refreshedTick + PURGE_AGE < now);
+    }
+
+    /**
+     * One known enemy of the squad.
+     */
+    public static class Threat {
+
+        /**
+         * The enemy entity.
+         */
+        public LivingEntity entity;
+
+        /**
+         * Where the enemy was when last seen (or reported) by the squad (or null if never).
+         */
+        public Location lastKnown;
+
+        /**
+         * The server tick the enemy was last seen (or reported) on (or -1 if never).
+         */
+        public long lastSeenTick = -1;
+
+        /**
+         * Whether any representative member could see the enemy, as of {@link #visibilityTick}.
+         */
+        public boolean visible;
+
+        /**
+         * The server tick visibility was last checked on (or -1 if never).
+         */
+        public long visibilityTick = -1;
+
+        /**
+         * Whether a squad member has reached the last known position since the enemy was last seen, without finding it.
+         */
+        public boolean searched;
+
+        /**
+         * IDs of the squad NPCs currently engaging (chasing, or searching for) this enemy.
+         */
+        public HashSet<Integer> engagedBy = new HashSet<>();
+
+        /**
+         * Damage per hit of each squad NPC (by ID) assigned to this enemy in the current update cycle.
+         */
+        public HashMap<Integer, Double> assignedDamage = new HashMap<>();
+
+        /**
+         * Gets the total damage assigned to this enemy, not counting the given NPC's own share.
+         */
+        public double getAssignedDamage(int excludeId) {
+            double total = 0;
+            for (Map.Entry<Integer, Double> entry : assignedDamage.entrySet()) {
+                if (entry.getKey() != excludeId) {
+                    total += entry.getValue();
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The squad name.
+     */
+    public String name;
+
+    /**
+     * Known threats, by entity UUID.
+     */
+    public HashMap<UUID, Threat> threats = new HashMap<>();
+
+    /**
+     * Current spawned squad members.
+     */
+    public ArrayList<SentinelTrait> members = new ArrayList<>();
+
+    /**
+     * Members used for shared line-of-sight checks (spread out across the squad).
+     */
+    public ArrayList<SentinelTrait> representatives = new ArrayList<>();
+
+    /**
+     * The enemy (by UUID) each member (by NPC ID) is currently searching for, as given by {@link #getSearchLocation(SentinelTrait)}.
+     */
+    public HashMap<Integer, UUID> searches = new HashMap<>();
+
+    /**
+     * The server tick this map was last refreshed on.
+     */
+    public long refreshedTick = -1;
+
+    public SentinelSquadThreatMap(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Refreshes the member list and engagement data, if not already done within the current update cycle.
+     */
+    public void refreshIfNeeded() {
+        long now = SentinelPlugin.instance.tickTimeTotal;
+        if (refreshedTick != -1 && now - refreshedTick < SentinelPlugin.instance.tickRate) {
+            return;
+        }
+        refreshedTick = now;
+        members.clear();
+        members.addAll(getMembers(name));
+        pickRepresentatives();
+        Iterator<Threat> iterator = threats.values().iterator();
+        while (iterator.hasNext()) {
+            Threat threat = iterator.next();
+            if (!threat.entity.isValid() || threat.lastSeenTick == -1 || threat.lastSeenTick + FORGET_TIME < now) {
+                iterator.remove();
+                continue;
+            }
+            threat.engagedBy.clear();
+            threat.assignedDamage.clear();
+        }
+        HashMap<Integer, UUID> oldSearches = searches;
+        searches = new HashMap<>();
+        for (SentinelTrait member : members) {
+            int id = member.getNPC().getId();
+            if (member.chasing != null) {
+                Threat threat = getThreat(member.chasing);
+                threat.engagedBy.add(id);
+                threat.assignedDamage.put(id, getMemberDamage(member));
+            }
+            else if (member.pathingTo != null && oldSearches.containsKey(id)) {
+                Threat threat = threats.get(oldSearches.get(id));
+                if (threat != null && !threat.searched) {
+                    threat.engagedBy.add(id);
+                    searches.put(id, threat.entity.getUniqueId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks up to {@link #REPRESENTATIVES} members, each as far as possible from those already picked, so that together they cover the squad's area.
+     */
+    public void pickRepresentatives() {
+        representatives.clear();
+        if (members.isEmpty()) {
+            return;
+        }
+        representatives.add(members.get(0));
+        while (representatives.size() < REPRESENTATIVES && representatives.size() < members.size()) {
+            SentinelTrait best = null;
+            double bestDist = -1;
+            for (SentinelTrait member : members) {
+                if (representatives.contains(member)) {
+                    continue;
+                }
+                Location loc = member.getLivingEntity().getLocation();
+                double nearest = Double.MAX_VALUE;
+                for (SentinelTrait picked : representatives) {
+                    Location pickedLoc = picked.getLivingEntity().getLocation();
+                    nearest = Math.min(nearest, pickedLoc.getWorld().equals(loc.getWorld()) ? pickedLoc.distanceSquared(loc) : Double.MAX_VALUE);
+                }
+                if (nearest > bestDist) {
+                    bestDist = nearest;
+                    best = member;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            representatives.add(best);
+        }
+    }
+
+    /**
+     * Gets the squad's entry for an enemy, adding one (not yet seen) if missing.
+     * Entries for enemies the squad has never seen are dropped at the next refresh.
+     */
+    public Threat getThreat(LivingEntity entity) {
+        Threat threat = threats.get(entity.getUniqueId());
+        if (threat == null) {
+            threat = new Threat();
+            threat.entity = entity;
+            threats.put(entity.getUniqueId(), threat);
+        }
+        return threat;
+    }
+
+    /**
+     * Records an enemy as seen by the squad (eg when a member targets it), at its current position.
+     */
+    public Threat report(LivingEntity entity) {
+        Threat threat = getThreat(entity);
+        if (threat.lastKnown == null) {
+            threat.lastKnown = entity.getLocation();
+        }
+        else {
+            entity.getLocation(threat.lastKnown);
+        }
+        threat.lastSeenTick = SentinelPlugin.instance.tickTimeTotal;
+        threat.searched = false;
+        return threat;
+    }
+
+    /**
+     * Gets the last known location of an enemy, or null if the squad has never seen it.
+     */
+    public Location getLastKnownLocation(UUID id) {
+        Threat threat = threats.get(id);
+        return threat == null ? null : threat.lastKnown;
+    }
+
+    /**
+     * Gets the last known position of the nearest enemy (within the member's range) that has gone out of sight of the squad,
+     * has not already been searched for, and that no other member is engaging, and assigns the member to search for it.
+     * Returns null if there is nothing to search for.
+     */
+    public Location getSearchLocation(SentinelTrait member) {
+        int id = member.getNPC().getId();
+        Location pos = member.getLivingEntity().getLocation();
+        Threat best = null;
+        double bestDist = member.range * member.range;
+        for (Threat threat : threats.values()) {
+            if (threat.lastKnown == null || threat.searched || threat.lastSeenTick >= refreshedTick
+                    || !threat.lastKnown.getWorld().equals(pos.getWorld())) {
+                continue;
+            }
+            if (!threat.engagedBy.isEmpty() && !threat.engagedBy.contains(id)) {
+                continue;
+            }
+            double dist = threat.lastKnown.distanceSquared(pos);
+            if (dist < 2 * 2) {
+                threat.searched = true;
+                threat.engagedBy.remove(id);
+                continue;
+            }
+            if (dist < bestDist && member.canPathTo(threat.lastKnown)) {
+                best = threat;
+                bestDist = dist;
+            }
+        }
+        if (best == null) {
+            searches.remove(id);
+            return null;
+        }
+        best.engagedBy.add(id);
+        searches.put(id, best.entity.getUniqueId());
+        return best.lastKnown.clone();
+    }
+
+    /**
+     * Returns whether any representative squad member has line-of-sight to (and is within range of) the entity.
+     * The result is shared by all members until the next refresh.
+     */
+    public boolean isVisible(LivingEntity entity) {
+        Threat threat = threats.get(entity.getUniqueId());
+        if (threat != null && threat.visibilityTick >= refreshedTick) {
+            return threat.visible;
+        }
+        boolean visible = false;
+        for (SentinelTrait representative : representatives) {
+            LivingEntity eye = representative.getLivingEntity();
+            if (eye == null || !eye.getWorld().equals(entity.getWorld())
+                    || eye.getEyeLocation().distanceSquared(entity.getEyeLocation()) > representative.range * representative.range) {
+                continue;
+            }
+            SentinelMetrics.lineOfSightChecks.increment();
+            if (representative.ignoreLOS || SentinelUtilities.checkLineOfSightWithTransparency(eye, entity)) {
+                visible = true;
+                break;
+            }
+        }
+        threat = visible ? report(entity) : getThreat(entity);
+        threat.visible = visible;
+        threat.visibilityTick = SentinelPlugin.instance.tickTimeTotal;
+        return visible;
+    }
+
+    /**
+     * Returns whether target assignment should be used (ie whether there's more than one member to spread across enemies).
+     */
+    public boolean usesAssignment() {
+        return members.size() > 1;
+    }
+
+    /**
+     * Gets the damage per hit a member is expected to deal, for assignment purposes.
+     */
+    public static double getMemberDamage(SentinelTrait member) {
+        return Math.max(0.1, Math.max(member.getDamage(false), member.getDamage(true)));
+    }
+
+    /**
+     * Gets the cost of assigning a member to an enemy (lower is better), given the squared distance from the member's guard position to the enemy.
+     * Combines the distance (relative to the member's range), how much of the member's damage would be wasted on an enemy already assigned enough damage to kill it,
+     * and how much health the enemy has left after damage already assigned.
+     */
+    public double getAssignmentCost(SentinelTrait member, LivingEntity entity, double distanceSquared) {
+        Threat threat = threats.get(entity.getUniqueId());
+        double assigned = threat == null ? 0 : threat.getAssignedDamage(member.getNPC().getId());
+        double remaining = Math.max(0, entity.getHealth() - assigned);
+        double damage = getMemberDamage(member);
+        double useful = Math.min(1, remaining / damage);
+        double maxHealth = Math.max(1, entity.getMaxHealth());
+        return Math.sqrt(distanceSquared) / Math.max(1, member.range)
+                + OVERKILL_WEIGHT * (1 - useful)
+                + HEALTH_WEIGHT * Math.min(1, remaining / maxHealth);
+    }
+
+    /**
+     * Assigns a member to an enemy for the rest of the current update cycle (replacing any previous assignment of that member),
+     * so that members choosing a target after it account for its damage.
+     */
+    public void assign(SentinelTrait member, LivingEntity entity) {
+        int id = member.getNPC().getId();
+        for (Threat threat : threats.values()) {
+            threat.assignedDamage.remove(id);
+            threat.engagedBy.remove(id);
+        }
+        searches.remove(id);
+        Threat threat = getThreat(entity);
+        threat.engagedBy.add(id);
+        threat.assignedDamage.put(id, getMemberDamage(member));
+    }
+}
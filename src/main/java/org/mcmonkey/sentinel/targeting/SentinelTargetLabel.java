@@ -221,6 +221,9 @@ public class SentinelTargetLabel {
         if (doRecache && (list == listSet.targets || list == listSet.byOther)) {
             listSet.recalculateTargetsCache();
         }
+        if (doRecache && list == listSet.byEvent) {
+            SentinelChatIndex.markDirty();
+        }
         return true;
     }
 
@@ -263,6 +266,9 @@ public class SentinelTargetLabel {
         if (list == listSet.targets || list == listSet.byOther) {
             listSet.recalculateTargetsCache();
         }
+        if (list == listSet.byEvent) {
+            SentinelChatIndex.markDirty();
+        }
         return true;
     }
 
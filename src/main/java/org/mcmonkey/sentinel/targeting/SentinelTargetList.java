@@ -3,6 +3,7 @@ package org.mcmonkey.sentinel.targeting;
 import net.citizensnpcs.api.CitizensAPI;
 import net.citizensnpcs.api.npc.NPC;
 import net.citizensnpcs.api.persistence.Persist;
+import net.citizensnpcs.api.persistence.PersistenceLoader;
 import net.citizensnpcs.api.trait.trait.Owner;
 import net.citizensnpcs.api.util.DataKey;
 import org.bukkit.ChatColor;
@@ -17,11 +18,33 @@ import org.mcmonkey.sentinel.SentinelPlugin;
 import org.mcmonkey.sentinel.SentinelTrait;
 import org.mcmonkey.sentinel.SentinelUtilities;
 import org.mcmonkey.sentinel.commands.SentinelCommand;
+import org.mcmonkey.sentinel.metrics.SentinelCostTracker;
+import org.mcmonkey.sentinel.metrics.SentinelMetrics;
 
 import java.util.*;
 
 public class SentinelTargetList {
 
+    /**
+     * The target profile this list belongs to, if it is a shared list.
+     */
+    private SentinelTargetProfile sharedProfile;
+
+    /**
+     * Gets the target profile this list belongs to, if it is a shared list (must not be edited in place through an NPC if so).
+     * See {@link SentinelTrait#unshareTargetLists()}.
+     */
+    public SentinelTargetProfile getSharedProfile() {
+        return sharedProfile;
+    }
+
+    /**
+     * Marks this list as belonging to a target profile. Only profiles set this, see {@link SentinelTargetProfile#claimLists()}.
+     */
+    void setSharedProfile(SentinelTargetProfile profile) {
+        sharedProfile = profile;
+    }
+
     /**
      * Returns a duplicate of the target list, with all inner arrays duplicated.
      */
@@ -44,10 +67,25 @@ public class SentinelTargetList {
         return result;
     }
 
+    /**
+     * Whether {@link #init()} still needs to run (lists are compiled lazily on first use after loading).
+     */
+    public boolean needsInit = false;
+
+    /**
+     * Runs {@link #init()} if it hasn't yet been run since loading.
+     */
+    public void ensureInit() {
+        if (needsInit) {
+            init();
+        }
+    }
+
     /**
      * Initialize the targets list after loading it.
      */
     public void init() {
+        needsInit = false;
         recalculateTargetsCache();
         for (String str : new ArrayList<>(byEvent)) {
             if (str.startsWith("message,")) {
@@ -90,96 +128,221 @@ public class SentinelTargetList {
         if (totalTargetsCount() == 0) { // Opti
             return false;
         }
-        if (entity.getEquipment() != null) {
-            if (SentinelUtilities.isItemTarget(SentinelUtilities.getHeldItem(entity), byHeldItem)) {
+        // Cost tracking per category is only active while detailed tracking is enabled (see '/sentinel top').
+        SentinelCostTracker tracker = SentinelCostTracker.beginDetail();
+        String category = "item cache";
+        try {
+            if (isItemTargetMemoized(entity, tracker)) {
                 return true;
             }
-            if (SentinelUtilities.isItemTarget(SentinelUtilities.getOffhandItem(entity), byOffhandItem)) {
-                return true;
+            for (Map.Entry<String, ArrayList<CachedOtherTarget>> targets : otherTargetCache.entrySet()) {
+                SentinelCostTracker.mark(tracker, category);
+                category = targets.getKey();
+                for (CachedOtherTarget target : targets.getValue()) {
+                    if (target.integration.isTarget(entity, target.prefix, target.value)) {
+                        return true;
+                    }
+                }
             }
-            if (!byEquippedItem.isEmpty()) {
-                if (SentinelUtilities.isItemTarget(entity.getEquipment().getHelmet(), byEquippedItem)) {
-                    return true;
+            SentinelCostTracker.mark(tracker, category);
+            category = "allinone";
+            for (SentinelTargetList allInOne : byAllInOne) {
+                SentinelTargetList subList = allInOne.duplicate();
+                subList.recalculateCacheNoClear();
+                if (SentinelPlugin.debugMe) {
+                    SentinelPlugin.instance.getLogger().info("All-In-One Debug: " + subList.totalTargetsCount() + " at start: " + subList.toMultiTargetString());
                 }
-                if (SentinelUtilities.isItemTarget(entity.getEquipment().getChestplate(), byEquippedItem)) {
-                    return true;
+                while (subList.ifIsTargetDeleteTarget(entity)) {
                 }
-                if (SentinelUtilities.isItemTarget(entity.getEquipment().getLeggings(), byEquippedItem)) {
+                if (subList.totalTargetsCount() == 0) {
                     return true;
                 }
-                if (SentinelUtilities.isItemTarget(entity.getEquipment().getBoots(), byEquippedItem)) {
-                    return true;
+                if (SentinelPlugin.debugMe) {
+                    SentinelPlugin.instance.getLogger().info("All-In-One Debug: " + subList.totalTargetsCount() + " left: " + subList.toMultiTargetString());
                 }
             }
-        }
-        if (entity instanceof InventoryHolder && !byInventoryItem.isEmpty()) {
-            for (ItemStack item : ((InventoryHolder) entity).getInventory().getStorageContents()) {
-                if (SentinelUtilities.isItemTarget(item, byInventoryItem)) {
+            SentinelCostTracker.mark(tracker, category);
+            // Any NPCs cause instant return - things below should be non-NPC only target types
+            if (entity.hasMetadata("NPC")) {
+                category = "npc";
+                if (targetsProcessed.contains(SentinelTarget.NPCS)) {
                     return true;
                 }
+                NPC theNPC = CitizensAPI.getNPCRegistry().getNPC(entity);
+                if (theNPC == null) { // ???
+                    return false;
+                }
+                npcNameMatcher = SentinelNameMatcher.update(npcNameMatcher, byNpcName);
+                return npcNameMatcher.getMatch(theNPC.getName()) != null;
             }
-        }
-        for (ArrayList<CachedOtherTarget> targets : otherTargetCache.values()) {
-            for (CachedOtherTarget target : targets) {
-                if (target.integration.isTarget(entity, target.prefix, target.value)) {
+            if (entity instanceof Player) {
+                category = "player";
+                playerNameMatcher = SentinelNameMatcher.update(playerNameMatcher, byPlayerName);
+                if (playerNameMatcher.getMatch(((Player) entity).getName()) != null) {
                     return true;
                 }
+                if (SentinelPlugin.instance.vaultPerms != null) {
+                    SentinelCostTracker.mark(tracker, category);
+                    category = "group";
+                    for (String group : byGroup) {
+                        if (SentinelPlugin.instance.vaultPerms.playerInGroup((Player) entity, group)) {
+                            return true;
+                        }
+                    }
+                }
             }
-        }
-        for (SentinelTargetList allInOne : byAllInOne) {
-            SentinelTargetList subList = allInOne.duplicate();
-            subList.recalculateCacheNoClear();
-            if (SentinelPlugin.debugMe) {
-                SentinelPlugin.instance.getLogger().info("All-In-One Debug: " + subList.totalTargetsCount() + " at start: " + subList.toMultiTargetString());
-            }
-            while (subList.ifIsTargetDeleteTarget(entity)) {
+            else {
+                category = "entityname";
+                entityNameMatcher = SentinelNameMatcher.update(entityNameMatcher, byEntityName);
+                if (entityNameMatcher.getMatch(entity.getCustomName() == null ? entity.getType().name() : entity.getCustomName()) != null) {
+                    return true;
+                }
             }
-            if (subList.totalTargetsCount() == 0) {
+            SentinelCostTracker.mark(tracker, category);
+            category = "status and type";
+            if (byStatus.contains("angry") && entity instanceof Mob && ((Mob) entity).getTarget() != null) {
                 return true;
             }
-            if (SentinelPlugin.debugMe) {
-                SentinelPlugin.instance.getLogger().info("All-In-One Debug: " + subList.totalTargetsCount() + " left: " + subList.toMultiTargetString());
-            }
-        }
-        // Any NPCs cause instant return - things below should be non-NPC only target types
-        if (entity.hasMetadata("NPC")) {
-            if (targetsProcessed.contains(SentinelTarget.NPCS)) {
+            if (byStatus.contains("passive") && entity instanceof Mob && ((Mob) entity).getTarget() == null) {
                 return true;
             }
-            NPC theNPC = CitizensAPI.getNPCRegistry().getNPC(entity);
-            if (theNPC == null) { // ???
-                return false;
+            HashSet<SentinelTarget> possible = SentinelPlugin.entityToTargets.get(entity.getType());
+            for (SentinelTarget poss : possible) {
+                if (targetsProcessed.contains(poss)) {
+                    return true;
+                }
             }
-            return SentinelUtilities.isRegexTargeted(theNPC.getName(), byNpcName);
+            return false;
         }
-        if (entity instanceof Player) {
-            if (SentinelUtilities.isRegexTargeted(((Player) entity).getName(), byPlayerName)) {
-                return true;
+        finally {
+            SentinelCostTracker.mark(tracker, category);
+            SentinelCostTracker.endDetail(tracker);
+        }
+    }
+
+    /**
+     * Returns whether an entity's equipment or inventory matches any item-based target in this list.
+     * Does not use the item verdict cache.
+     * If the tracker isn't null, the time spent on each kind of item target is recorded into it.
+     */
+    public boolean isItemTargetNoCache(LivingEntity entity, SentinelCostTracker tracker) {
+        String category = "helditem";
+        try {
+            if (entity.getEquipment() != null) {
+                if (SentinelUtilities.isItemTarget(SentinelUtilities.getHeldItem(entity), byHeldItem)) {
+                    return true;
+                }
+                SentinelCostTracker.mark(tracker, category);
+                category = "offhand";
+                if (SentinelUtilities.isItemTarget(SentinelUtilities.getOffhandItem(entity), byOffhandItem)) {
+                    return true;
+                }
+                SentinelCostTracker.mark(tracker, category);
+                category = "equipped";
+                if (!byEquippedItem.isEmpty()) {
+                    if (SentinelUtilities.isItemTarget(entity.getEquipment().getHelmet(), byEquippedItem)) {
+                        return true;
+                    }
+                    if (SentinelUtilities.isItemTarget(entity.getEquipment().getChestplate(), byEquippedItem)) {
+                        return true;
+                    }
+                    if (SentinelUtilities.isItemTarget(entity.getEquipment().getLeggings(), byEquippedItem)) {
+                        return true;
+                    }
+                    if (SentinelUtilities.isItemTarget(entity.getEquipment().getBoots(), byEquippedItem)) {
+                        return true;
+                    }
+                }
             }
-            if (SentinelPlugin.instance.vaultPerms != null) {
-                for (String group : byGroup) {
-                    if (SentinelPlugin.instance.vaultPerms.playerInGroup((Player) entity, group)) {
+            SentinelCostTracker.mark(tracker, category);
+            category = "in_inventory";
+            if (entity instanceof InventoryHolder && !byInventoryItem.isEmpty()) {
+                for (ItemStack item : ((InventoryHolder) entity).getInventory().getStorageContents()) {
+                    if (SentinelUtilities.isItemTarget(item, byInventoryItem)) {
                         return true;
                     }
                 }
             }
+            return false;
         }
-        else if (SentinelUtilities.isRegexTargeted(entity.getCustomName() == null ? entity.getType().name() : entity.getCustomName(), byEntityName)) {
-            return true;
+        finally {
+            SentinelCostTracker.mark(tracker, category);
         }
-        if (byStatus.contains("angry") && entity instanceof Mob && ((Mob) entity).getTarget() != null) {
-            return true;
+    }
+
+    /**
+     * Represents a memoized item-target verdict for one entity, valid while the entity's equipment fingerprint versions are unchanged.
+     */
+    public static class ItemVerdict {
+
+        /**
+         * The fingerprint versions (per slot category) the verdict was computed against.
+         */
+        public long[] versions = new long[SentinelEquipmentFingerprint.CATEGORY_COUNT];
+
+        /**
+         * The server tick this verdict was last used on.
+         */
+        public long lastUsed;
+
+        /**
+         * Whether the entity matched an item target.
+         */
+        public boolean result;
+    }
+
+    /**
+     * Cache of item-target verdicts, by entity UUID.
+     */
+    public HashMap<UUID, ItemVerdict> itemVerdictCache = new HashMap<>();
+
+    private int itemTargetsHash = 0;
+
+    private long itemVerdictLastPurge = 0;
+
+    private long[] versionHelper = new long[SentinelEquipmentFingerprint.CATEGORY_COUNT];
+
+    /**
+     * Returns whether an entity's equipment or inventory matches any item-based target in this list.
+     * Reuses the prior verdict for the entity if none of the relevant slots have changed since.
+     * If the tracker isn't null, the time spent on the cache is recorded into it as 'item cache', and the time spent on a full check by kind of item target.
+     */
+    public boolean isItemTargetMemoized(LivingEntity entity, SentinelCostTracker tracker) {
+        boolean held = !byHeldItem.isEmpty(), offhand = !byOffhandItem.isEmpty(), armor = !byEquippedItem.isEmpty(), inventory = !byInventoryItem.isEmpty();
+        if (!held && !offhand && !armor && !inventory) {
+            return false;
         }
-        if (byStatus.contains("passive") && entity instanceof Mob && ((Mob) entity).getTarget() == null) {
-            return true;
+        int hash = ((byHeldItem.hashCode() * 31 + byOffhandItem.hashCode()) * 31 + byEquippedItem.hashCode()) * 31 + byInventoryItem.hashCode();
+        long now = SentinelPlugin.instance.tickTimeTotal;
+        if (hash != itemTargetsHash) {
+            itemTargetsHash = hash;
+            itemVerdictCache.clear();
         }
-        HashSet<SentinelTarget> possible = SentinelPlugin.entityToTargets.get(entity.getType());
-        for (SentinelTarget poss : possible) {
-            if (targetsProcessed.contains(poss)) {
-                return true;
-            }
+        else if (itemVerdictLastPurge + SentinelEquipmentFingerprint.PURGE_AGE < now) {
+            itemVerdictLastPurge = now;
+            itemVerdictCache.values().removeIf(verdict -> verdict.lastUsed + SentinelEquipmentFingerprint.PURGE_AGE < now);
         }
-        return false;
+        SentinelEquipmentFingerprint fingerprint = SentinelEquipmentFingerprint.getFor(entity);
+        versionHelper[SentinelEquipmentFingerprint.CATEGORY_HELD] = held ? fingerprint.version(entity, SentinelEquipmentFingerprint.CATEGORY_HELD) : 0;
+        versionHelper[SentinelEquipmentFingerprint.CATEGORY_OFFHAND] = offhand ? fingerprint.version(entity, SentinelEquipmentFingerprint.CATEGORY_OFFHAND) : 0;
+        versionHelper[SentinelEquipmentFingerprint.CATEGORY_ARMOR] = armor ? fingerprint.version(entity, SentinelEquipmentFingerprint.CATEGORY_ARMOR) : 0;
+        versionHelper[SentinelEquipmentFingerprint.CATEGORY_INVENTORY] = inventory ? fingerprint.version(entity, SentinelEquipmentFingerprint.CATEGORY_INVENTORY) : 0;
+        ItemVerdict verdict = itemVerdictCache.get(entity.getUniqueId());
+        if (verdict != null && Arrays.equals(verdict.versions, versionHelper)) {
+            verdict.lastUsed = now;
+            SentinelMetrics.itemVerdictHits.increment();
+            return verdict.result;
+        }
+        SentinelMetrics.itemVerdictMisses.increment();
+        if (verdict == null) {
+            verdict = new ItemVerdict();
+            itemVerdictCache.put(entity.getUniqueId(), verdict);
+        }
+        System.arraycopy(versionHelper, 0, verdict.versions, 0, versionHelper.length);
+        verdict.lastUsed = now;
+        SentinelCostTracker.mark(tracker, "item cache");
+        verdict.result = isItemTargetNoCache(entity, tracker);
+        return verdict.result;
     }
 
     /**
@@ -359,6 +522,7 @@ public class SentinelTargetList {
      * Returns whether a chat event is targeted by this list.
      */
     public boolean isEventTarget(SentinelTrait sentinel, AsyncPlayerChatEvent event) {
+        ensureInit();
         if (!sentinel.targetingHelper.canSee(event.getPlayer())) {
             return false;
         }
@@ -377,6 +541,7 @@ public class SentinelTargetList {
      * Returns whether the victim in a damage event is targeted by this list.
      */
     public boolean isReverseEventTarget(SentinelTrait sentinel, EntityDamageByEntityEvent event) {
+        ensureInit();
         if (byEvent.contains("guarded_fight")
                 && sentinel.getGuarding() != null
                 && event.getDamager().getUniqueId().equals(sentinel.getGuarding())) {
@@ -389,6 +554,7 @@ public class SentinelTargetList {
      * Returns whether the damager in a damage event is targeted by this list.
      */
     public boolean isEventTarget(EntityDamageByEntityEvent event) {
+        ensureInit();
         Entity damager = event.getDamager();
         if (event.getDamager() instanceof Projectile) {
             ProjectileSource source = ((Projectile) event.getDamager()).getShooter();
@@ -489,6 +655,11 @@ public class SentinelTargetList {
         public String value;
     }
 
+    /**
+     * Compiled matchers for the name target lists (rebuilt automatically when the lists change).
+     */
+    public SentinelNameMatcher playerNameMatcher, npcNameMatcher, entityNameMatcher;
+
     /**
      * Cache of "other" targets.
      */
@@ -500,6 +671,7 @@ public class SentinelTargetList {
      * Checks if the targets cache ('targetsProcessed') needs to be reprocessed, and refills it if so.
      */
     public void checkRecalculateTargetsCache() {
+        ensureInit();
         if (targets.size() != targetsProcessed.size() || byOther.size() != otherTargetSize) {
             recalculateTargetsCache();
         }
@@ -548,6 +720,171 @@ public class SentinelTargetList {
         }
     }
 
+    /**
+     * The encoded string this list was last saved as (or loaded from), if any.
+     */
+    public String lastSaveEncoded;
+
+    /**
+     * Returns whether the list (given its current encoding, see {@link #encode()}) needs to be written to the data key:
+     * that is, if its contents differ from when it was last saved, or the key doesn't already hold its saved data.
+     * Compares the full encoding, so direct edits to the lists are always noticed.
+     */
+    public boolean needsSaveTo(DataKey key, String encoded) {
+        return !encoded.equals(lastSaveEncoded) || !encoded.equals(key.getString("encoded", null));
+    }
+
+    /**
+     * The current version of the compact encoding produced by {@link #encode()}.
+     */
+    public static final int ENCODING_VERSION = 2;
+
+    private ArrayList<String> getEncodingList(String code) {
+        switch (code) {
+            case "t": return targets;
+            case "p": return byPlayerName;
+            case "n": return byNpcName;
+            case "en": return byEntityName;
+            case "hi": return byHeldItem;
+            case "oi": return byOffhandItem;
+            case "ei": return byEquippedItem;
+            case "ii": return byInventoryItem;
+            case "g": return byGroup;
+            case "ev": return byEvent;
+            case "s": return byStatus;
+            case "o": return byOther;
+        }
+        return null;
+    }
+
+    private static final String[] ENCODING_CODES = new String[] { "t", "p", "n", "en", "hi", "oi", "ei", "ii", "g", "ev", "s", "o" };
+
+    private static void encodeEntry(StringBuilder builder, String code, String value) {
+        builder.append(';').append(code).append('=');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == ';') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+    }
+
+    /**
+     * Encodes this list (including any nested multi-target lists) as a single compact string, prefixed with the encoding version.
+     * Entries are written as 'code=value' separated by semicolons (with backslash escaping). See {@link #decode(String)}.
+     */
+    public String encode() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(ENCODING_VERSION);
+        for (String code : ENCODING_CODES) {
+            for (String value : getEncodingList(code)) {
+                encodeEntry(builder, code, value);
+            }
+        }
+        for (SentinelTargetList list : byAllInOne) {
+            encodeEntry(builder, "aio", list.encode());
+        }
+        for (SentinelTargetList list : byMultiple) {
+            encodeEntry(builder, "m", list.encode());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Loads a list from a Citizens data key, either from the compact encoded string or (for saves from before it existed) the older one-key-per-entry layout.
+     * The result is marked as needing {@link #init()}.
+     */
+    public static SentinelTargetList loadFrom(DataKey key) {
+        String encoded = key.getString("encoded", null);
+        if (encoded != null) {
+            SentinelTargetList list = decode(encoded);
+            list.lastSaveEncoded = encoded;
+            return list;
+        }
+        SentinelTargetList list = PersistenceLoader.load(new SentinelTargetList(), key);
+        list.needsInit = true;
+        return list;
+    }
+
+    /**
+     * Saves this list to a Citizens data key as a single compact encoded string, removing any older-layout sub-keys.
+     */
+    public void saveTo(DataKey key) {
+        saveTo(key, encode());
+    }
+
+    /**
+     * Saves this list to a Citizens data key as the given encoded string (from {@link #encode()}), removing any older-layout sub-keys.
+     */
+    public void saveTo(DataKey key, String encoded) {
+        for (DataKey subKey : key.getSubKeys()) {
+            if (!subKey.name().equals("encoded")) {
+                key.removeKey(subKey.name());
+            }
+        }
+        key.setString("encoded", encoded);
+        lastSaveEncoded = encoded;
+    }
+
+    /**
+     * Decodes a list from a string produced by {@link #encode()}. The result is marked as needing {@link #init()}.
+     */
+    public static SentinelTargetList decode(String encoded) {
+        SentinelTargetList result = new SentinelTargetList();
+        ArrayList<String> entries = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == '\\' && i + 1 < encoded.length()) {
+                current.append(encoded.charAt(++i));
+            }
+            else if (c == ';') {
+                entries.add(current.toString());
+                current.setLength(0);
+            }
+            else {
+                current.append(c);
+            }
+        }
+        entries.add(current.toString());
+        int version;
+        try {
+            version = Integer.parseInt(entries.get(0));
+        }
+        catch (NumberFormatException ex) {
+            version = -1;
+        }
+        if (version != ENCODING_VERSION) {
+            SentinelPlugin.instance.getLogger().warning("Sentinel target list has unknown encoding version '" + entries.get(0) + "', will try to load anyway.");
+        }
+        for (int i = 1; i < entries.size(); i++) {
+            String entry = entries.get(i);
+            int equals = entry.indexOf('=');
+            if (equals < 0) {
+                continue;
+            }
+            String code = entry.substring(0, equals);
+            String value = entry.substring(equals + 1);
+            if (code.equals("aio")) {
+                result.byAllInOne.add(decode(value));
+            }
+            else if (code.equals("m")) {
+                result.byMultiple.add(decode(value));
+            }
+            else {
+                ArrayList<String> list = result.getEncodingList(code);
+                if (list == null) {
+                    SentinelPlugin.instance.getLogger().warning("Sentinel target list has unknown entry type '" + code + "', ignoring it.");
+                    continue;
+                }
+                list.add(value);
+            }
+        }
+        result.needsInit = true;
+        return result;
+    }
+
     /**
      * Returns the total count of targets (other than multi-targets).
      */
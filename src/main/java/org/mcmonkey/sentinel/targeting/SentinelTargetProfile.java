@@ -0,0 +1,188 @@
+package org.mcmonkey.sentinel.targeting;
+
+import net.citizensnpcs.api.CitizensAPI;
+import net.citizensnpcs.api.npc.NPC;
+import net.citizensnpcs.api.npc.NPCRegistry;
+import net.citizensnpcs.api.util.DataKey;
+import net.citizensnpcs.api.util.YamlStorage;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A named set of target lists (targets, ignores, avoids) that can be shared by many NPCs.
+ * NPCs using a profile hold the profile's own list objects (and thus share all list caches),
+ * until the NPC's lists are edited, at which point that NPC gets its own copy (copy-on-write).
+ */
+public class SentinelTargetProfile {
+
+    /**
+     * All known profiles, by lowercase name.
+     */
+    public static HashMap<String, SentinelTargetProfile> profiles = new HashMap<>();
+
+    /**
+     * The storage all profiles are saved into.
+     */
+    public static YamlStorage storage;
+
+    /**
+     * Loads all profiles from the 'profiles.yml' file in the plugin folder.
+     */
+    public static void loadAll() {
+        storage = new YamlStorage(new File(SentinelPlugin.instance.getDataFolder(), "profiles.yml"));
+        storage.load();
+        profiles.clear();
+        for (DataKey key : storage.getKey("profiles").getSubKeys()) {
+            SentinelTargetProfile profile = new SentinelTargetProfile(key.name());
+            profile.targets = loadList(key.getRelative("targets"));
+            profile.ignores = loadList(key.getRelative("ignores"));
+            profile.avoids = loadList(key.getRelative("avoids"));
+            profile.claimLists();
+            profiles.put(profile.name, profile);
+        }
+    }
+
+    /**
+     * Saves all profiles to the 'profiles.yml' file in the plugin folder.
+     */
+    public static void saveAll() {
+        if (storage == null) {
+            return;
+        }
+        storage.getKey("").removeKey("profiles");
+        DataKey root = storage.getKey("profiles");
+        for (SentinelTargetProfile profile : profiles.values()) {
+            DataKey key = root.getRelative(profile.name);
+            profile.targets.saveTo(key.getRelative("targets"));
+            profile.ignores.saveTo(key.getRelative("ignores"));
+            profile.avoids.saveTo(key.getRelative("avoids"));
+        }
+        storage.save();
+    }
+
+    private static SentinelTargetList loadList(DataKey key) {
+        SentinelTargetList list = SentinelTargetList.loadFrom(key);
+        list.init();
+        return list;
+    }
+
+    /**
+     * Gets the profile for a name (case insensitive), or null if none.
+     */
+    public static SentinelTargetProfile getProfile(String name) {
+        return profiles.get(name.toLowerCase());
+    }
+
+    /**
+     * Creates a new profile from copies of a Sentinel NPC's current lists, and registers it.
+     */
+    public static SentinelTargetProfile createFrom(String name, SentinelTrait sentinel) {
+        SentinelTargetProfile profile = new SentinelTargetProfile(name.toLowerCase());
+        profile.targets = copyList(sentinel.allTargets);
+        profile.ignores = copyList(sentinel.allIgnores);
+        profile.avoids = copyList(sentinel.allAvoids);
+        profile.claimLists();
+        profiles.put(profile.name, profile);
+        saveAll();
+        return profile;
+    }
+
+    /**
+     * Returns a separate (unshared) copy of a target list.
+     */
+    public static SentinelTargetList copyList(SentinelTargetList list) {
+        SentinelTargetList result = list.duplicate();
+        result.recalculateTargetsCache();
+        return result;
+    }
+
+    /**
+     * Gets the profile's copy of a list for the given Citizens save key name ("allTargets", "allIgnores", or "allAvoids").
+     */
+    public SentinelTargetList getListForKey(String keyName) {
+        switch (keyName) {
+            case "allTargets":
+                return targets;
+            case "allIgnores":
+                return ignores;
+            case "allAvoids":
+                return avoids;
+        }
+        return null;
+    }
+
+    /**
+     * The name of this profile (lowercase).
+     */
+    public String name;
+
+    /**
+     * The shared target lists.
+     */
+    public SentinelTargetList targets, ignores, avoids;
+
+    public SentinelTargetProfile(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the profile's list for a list type name ("target", "ignore", or "avoid", optionally plural), or null if unknown.
+     */
+    public SentinelTargetList getListForType(String type) {
+        switch (type.toLowerCase()) {
+            case "target":
+            case "targets":
+                return targets;
+            case "ignore":
+            case "ignores":
+                return ignores;
+            case "avoid":
+            case "avoids":
+                return avoids;
+        }
+        return null;
+    }
+
+    /**
+     * Marks this profile's lists as shared, so edits from any NPC cause a copy.
+     */
+    public void claimLists() {
+        targets.setSharedProfile(this);
+        ignores.setSharedProfile(this);
+        avoids.setSharedProfile(this);
+    }
+
+    /**
+     * Gets all loaded Sentinel NPCs, in any NPC registry, whose target lists are currently shared from this profile.
+     */
+    public List<SentinelTrait> getUsers() {
+        List<SentinelTrait> users = new ArrayList<>();
+        for (NPCRegistry registry : CitizensAPI.getNPCRegistries()) {
+            for (NPC npc : registry) {
+                SentinelTrait sentinel = npc.getTraitNullable(SentinelTrait.class);
+                if (sentinel != null && sentinel.getTargetProfile() == this) {
+                    users.add(sentinel);
+                }
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Applies this profile to a Sentinel NPC, replacing its current target lists with the shared ones.
+     */
+    public void applyTo(SentinelTrait sentinel) {
+        if (sentinel.getTargetProfile() == this) {
+            return;
+        }
+        sentinel.allTargets = targets;
+        sentinel.allIgnores = ignores;
+        sentinel.allAvoids = avoids;
+        SentinelChatIndex.markDirty();
+    }
+}
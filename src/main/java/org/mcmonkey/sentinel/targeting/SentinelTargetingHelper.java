@@ -12,10 +12,15 @@ import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 import org.mcmonkey.sentinel.*;
 import org.mcmonkey.sentinel.events.SentinelNoMoreTargetsEvent;
+import org.mcmonkey.sentinel.metrics.SentinelFlightRecorder;
+import org.mcmonkey.sentinel.metrics.SentinelMetrics;
+import org.mcmonkey.sentinel.utilities.SentinelSnapshotBlockSource;
+import org.mcmonkey.sentinel.utilities.SentinelTracer;
+import org.mcmonkey.sentinel.utilities.SentinelWorldGuardHelper;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Helper for targeting logic on an NPC.
@@ -32,7 +37,36 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
         if (getLivingEntity().getEyeLocation().distanceSquared(entity.getEyeLocation()) > sentinel.range * sentinel.range) {
             return false;
         }
-        if (!sentinel.ignoreLOS && !SentinelUtilities.checkLineOfSightWithTransparency(getLivingEntity(), entity)) {
+        if (!sentinel.ignoreLOS) {
+            SentinelMetrics.lineOfSightChecks.increment();
+            boolean visible = SentinelUtilities.checkLineOfSightWithTransparency(getLivingEntity(), entity);
+            SentinelTracer.record(sentinel, SentinelTracer.Code.LINE_OF_SIGHT, ((long) entity.getEntityId() << 1) | (visible ? 1 : 0), null);
+            if (!visible) {
+                return false;
+            }
+        }
+        if (sentinel.realistic && !SentinelUtilities.isLookingTowards(getLivingEntity().getEyeLocation(), entity.getLocation(), 90, 110)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the NPC can see the target entity, using the squad's shared line-of-sight results if the NPC is in a squad.
+     * Range and facing checks are still specific to this NPC.
+     */
+    public boolean canSeeWithSquad(LivingEntity entity) {
+        SentinelSquadThreatMap squadMap = sentinel.ignoreLOS ? null : SentinelSquadThreatMap.getFor(sentinel);
+        if (squadMap == null) {
+            return canSee(entity);
+        }
+        if (!getLivingEntity().getWorld().equals(entity.getWorld())) {
+            return false;
+        }
+        if (getLivingEntity().getEyeLocation().distanceSquared(entity.getEyeLocation()) > sentinel.range * sentinel.range) {
+            return false;
+        }
+        if (!squadMap.isVisible(entity)) {
             return false;
         }
         if (sentinel.realistic && !SentinelUtilities.isLookingTowards(getLivingEntity().getEyeLocation(), entity.getLocation(), 90, 110)) {
@@ -92,6 +126,7 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
         target.ticksLeft = SentinelPlugin.instance.runAwayTime;
         currentAvoids.remove(target);
         currentAvoids.add(target);
+        sentinel.wakeUp();
     }
 
     /**
@@ -101,7 +136,8 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
         if (id.equals(getLivingEntity().getUniqueId())) {
             return;
         }
-        if (!(SentinelUtilities.getEntityForID(id) instanceof LivingEntity)) {
+        Entity entity = SentinelUtilities.getEntityForID(id);
+        if (!(entity instanceof LivingEntity)) {
             return;
         }
         addTargetNoBounce(id);
@@ -111,6 +147,7 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
                     squadMate.targetingHelper.addTargetNoBounce(id);
                 }
             }
+            SentinelSquadThreatMap.getFor(sentinel).report((LivingEntity) entity);
         }
     }
 
@@ -149,6 +186,13 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
         return false;
     }
 
+    private void traceTargetAcquired(UUID id) {
+        if (SentinelTracer.enabled) {
+            Entity entity = SentinelUtilities.getEntityForID(id);
+            SentinelTracer.record(sentinel, SentinelTracer.Code.TARGET_ACQUIRED, entity == null ? -1 : entity.getEntityId(), null);
+        }
+    }
+
     /**
      * Adds a target directly to the NPC. Prefer {@code addTarget} over this in most cases.
      */
@@ -157,13 +201,23 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
         target.targetID = id;
         target.ticksLeft = sentinel.enemyTargetTime;
         if (sentinel.reactionSlowdown == 0) {
-            currentTargets.remove(target);
+            if (!currentTargets.remove(target)) {
+                SentinelMetrics.targetsAcquired.increment();
+                SentinelFlightRecorder.targetAcquired(sentinel, id);
+                traceTargetAcquired(id);
+            }
             currentTargets.add(target);
+            sentinel.wakeUp();
         }
         else {
             Bukkit.getScheduler().scheduleSyncDelayedTask(SentinelPlugin.instance, () -> {
-                currentTargets.remove(target);
+                if (!currentTargets.remove(target)) {
+                    SentinelMetrics.targetsAcquired.increment();
+                    SentinelFlightRecorder.targetAcquired(sentinel, id);
+                    traceTargetAcquired(id);
+                }
                 currentTargets.add(target);
+                sentinel.wakeUp();
             }, sentinel.reactionSlowdown);
         }
     }
@@ -201,6 +255,14 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
 
     private SentinelCurrentTarget tempTarget = new SentinelCurrentTarget();
 
+    /**
+     * Returns whether an entity is one of this NPC's current targets (eg from fightback, squad sharing, or a temporary target).
+     */
+    public boolean isCurrentTarget(UUID id) {
+        tempTarget.targetID = id;
+        return currentTargets.contains(tempTarget);
+    }
+
     /**
      * Returns whether an entity is targeted by this NPC's target lists.
      * Consider calling 'shouldTarget' instead.
@@ -272,21 +334,76 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
         if (avoidanceList.isEmpty()) {
             return;
         }
+        Object jfrEvent = SentinelFlightRecorder.beginPathRequest();
+        SentinelTracer.record(sentinel, SentinelTracer.Code.PATH_REQUEST, 0, "avoidance");
         Location runTo = findBestRunSpot();
+        SentinelFlightRecorder.endPathRequest(jfrEvent, sentinel, "avoidance");
         if (runTo != null) {
             sentinel.pathTo(runTo);
-            if (SentinelPlugin.debugMe) {
+            if (sentinel.debugMe) {
                 sentinel.debug("Running from threats, movement vector: " +
                         runTo.clone().subtract(getLivingEntity().getLocation()).toVector().toBlockVector().toString());
             }
         }
+        else if (pendingRunSpot != null) {
+            if (sentinel.debugMe) {
+                sentinel.debug("Still searching for a spot to run to...");
+            }
+        }
         else {
-            if (SentinelPlugin.debugMe) {
+            if (sentinel.debugMe) {
                 sentinel.debug("I have nowhere to run!");
             }
         }
     }
 
+    /**
+     * Simplified avoidance for low-detail combat: finds the nearest entity to avoid within avoid range (without line-of-sight checks),
+     * and runs straight away from it (or to the avoid return point, if set) without searching for a spot.
+     * Returns whether anything needed avoiding.
+     */
+    public boolean processLowDetailAvoidance() {
+        if (currentAvoids.isEmpty() && sentinel.allAvoids.totalTargetsCount() == 0) { // Opti
+            return false;
+        }
+        Location pos = getLivingEntity().getLocation();
+        double range = sentinel.avoidRange;
+        LivingEntity closestThreat = null;
+        double threatRangeSquared = range * range;
+        for (Entity entity : getLivingEntity().getWorld().getNearbyEntities(pos, range, 16, range)) {
+            if (!(entity instanceof LivingEntity)) {
+                continue;
+            }
+            double dist = entity.getLocation().distanceSquared(pos);
+            if (dist < threatRangeSquared && shouldAvoid((LivingEntity) entity)) {
+                closestThreat = (LivingEntity) entity;
+                threatRangeSquared = dist;
+            }
+        }
+        if (closestThreat == null) {
+            return false;
+        }
+        if (sentinel.pathingTo != null) {
+            return true;
+        }
+        Location runTo;
+        if (sentinel.avoidReturnPoint != null && sentinel.avoidReturnPoint.getWorld().equals(pos.getWorld())) {
+            runTo = sentinel.avoidReturnPoint.clone();
+        }
+        else {
+            Vector away = pos.toVector().subtract(closestThreat.getLocation().toVector()).setY(0);
+            if (away.lengthSquared() < 0.01) {
+                away = directionReferenceVectors[0].clone();
+            }
+            runTo = pos.clone().add(away.normalize().multiply(range));
+        }
+        if (sentinel.debugMe) {
+            sentinel.debug("Low-detail: running from " + closestThreat.getType().name());
+        }
+        sentinel.pathTo(runTo);
+        return true;
+    }
+
     /**
      * Finds a spot this NPC should run to, to avoid threats. Returns null if there's nowhere to run.
      */
@@ -315,7 +432,7 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
             return null;
         }
         if (threatRangeSquared >= sentinel.avoidRange * sentinel.avoidRange) {
-            if (SentinelPlugin.debugMe) {
+            if (sentinel.debugMe) {
                 sentinel.debug("Threats are getting close... holding my post.");
             }
             return pos.clone();
@@ -344,9 +461,17 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
      * Returns null if can't reasonably run that direction.
      */
     public static Location findSpotForRunDirection(Location start, double distance, Vector direction) {
+        return findSpotForRunDirection(ASTAR, new ChunkBlockSource(start, (float) distance + 10), examiner, start, distance, direction);
+    }
+
+    /**
+     * Returns a spot to run to if running in a certain direction, using a specific pathfinder and block source.
+     * Returns null if can't reasonably run that direction.
+     */
+    public static Location findSpotForRunDirection(AStarMachine machine, BlockSource source, BlockExaminer blockExaminer, Location start, double distance, Vector direction) {
         VectorGoal goal = new VectorGoal(start.clone().add(direction.clone().multiply(distance)), 4);
-        VectorNode startNode = new VectorNode(goal, start, new ChunkBlockSource(start, (float)distance + 10), examiner);
-        Path resultPath = (Path) ASTAR.runFully(goal, startNode, (int)(distance * 50));
+        VectorNode startNode = new VectorNode(goal, start, source, blockExaminer);
+        Path resultPath = (Path) machine.runFully(goal, startNode, (int)(distance * 50));
         if (resultPath == null || resultPath.isComplete()) {
             return null;
         }
@@ -358,10 +483,32 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
         return current.toLocation(start.getWorld());
     }
 
+    /**
+     * Run-spot search currently in progress on the pathing worker pool (if any).
+     */
+    public CompletableFuture<Location> pendingRunSpot;
+
+    /**
+     * The guard zone the latest run-spot search was started from.
+     */
+    public Location pendingRunCenter;
+
+    /**
+     * The safest direction (index into the reference directions) when the latest run-spot search was started, or -1 if none was.
+     */
+    public int pendingRunDirection = -1;
+
+    /**
+     * The result of the latest completed run-spot search (null if it found nowhere to run).
+     */
+    public Location lastRunSpot;
+
     /**
      * Returns a direction to run in, avoiding threatening entities as best as possible.
      * Returns a location of the spot to run to.
      * Returns null if nowhere to run.
+     * When off-thread pathing is enabled, this returns the result of the latest completed search (or null while one is still running),
+     * and only starts a new search once the guard zone has moved or the safest direction has changed since the last one.
      */
     public Location runDirection(Location center) {
         for (int i = 0; i < 36; i++) {
@@ -378,26 +525,114 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
                 }
             }
         }
-        double longestDistance = 0;
-        Location runTo = null;
+        // Directions furthest from any threat first, so the first direction with a usable path is the best one.
+        Integer[] order = new Integer[36];
         for (int i = 0; i < 36; i++) {
-            if (threatDists[i] > longestDistance) {
-                Location newRunTo = findSpotForRunDirection(center, range, directionReferenceVectors[i].clone());
-                if (newRunTo != null) {
-                    runTo = newRunTo;
-                    longestDistance = threatDists[i];
+            order[i] = i;
+        }
+        final double[] dists = threatDists.clone();
+        Arrays.sort(order, (a, b) -> Double.compare(dists[b], dists[a]));
+        SentinelMetrics.pathfindingRequests.increment();
+        ExecutorService executor = SentinelPlugin.instance.pathingExecutor;
+        if (executor == null) {
+            for (int i : order) {
+                Location runTo = findSpotForRunDirection(center, range, directionReferenceVectors[i].clone());
+                if (runTo != null) {
+                    if (sentinel.debugMe) {
+                        sentinel.debug("Run to get threat distance: " + dists[i] + " to " + runTo.toVector() + " from " + centerVec);
+                    }
+                    return runTo;
                 }
             }
+            return null;
+        }
+        if (pendingRunSpot != null) {
+            if (!pendingRunSpot.isDone()) {
+                return null;
+            }
+            lastRunSpot = pendingRunSpot.getNow(null);
+            pendingRunSpot = null;
+        }
+        boolean changed = pendingRunCenter == null || !pendingRunCenter.getWorld().equals(center.getWorld())
+                || pendingRunCenter.distanceSquared(center) > 4 * 4 || pendingRunDirection != order[0];
+        if (changed) {
+            pendingRunCenter = center.clone();
+            pendingRunDirection = order[0];
+            lastRunSpot = null;
+            pendingRunSpot = planRunSpot(executor, new SentinelSnapshotBlockSource(center, range + 10), center.clone(), range, order, 0);
+            return null;
+        }
+        if (sentinel.debugMe && lastRunSpot != null) {
+            sentinel.debug("Run to " + lastRunSpot.toVector() + " from " + centerVec);
+        }
+        return lastRunSpot == null ? null : lastRunSpot.clone();
+    }
+
+    private static volatile boolean runSpotFailureLogged = false;
+
+    /**
+     * Searches one run direction, for use on a worker thread. Any failure counts as no usable path, and the first one is logged.
+     */
+    private static Location searchRunDirection(BlockSource source, Location center, double range, Vector direction) {
+        try {
+            return findSpotForRunDirection(AStarMachine.createWithDefaultStorage(), source, examiner, center, range, direction);
+        }
+        catch (Throwable ex) {
+            if (!runSpotFailureLogged) {
+                runSpotFailureLogged = true;
+                SentinelPlugin.instance.getLogger().warning("Off-thread avoidance path search failed (further failures will not be logged): " + ex);
+                ex.printStackTrace();
+            }
+            return null;
         }
-        if (SentinelPlugin.debugMe) {
-            SentinelPlugin.instance.getLogger().info("(TEMP) Run to get threat distance: " + longestDistance + " to " + runTo + " from " + center.toVector());
+    }
+
+    /**
+     * Searches run directions (in the given priority order) on the worker pool.
+     * Each batch of directions is searched in parallel, and the best direction in the first batch with any usable path wins.
+     * The block source must be captured on the main thread before calling.
+     */
+    public static CompletableFuture<Location> planRunSpot(ExecutorService executor, BlockSource source, Location center, double range, Integer[] order, int start) {
+        if (start >= order.length) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int batchSize = Math.max(1, SentinelPlugin.instance.avoidancePathThreads);
+        int end = Math.min(order.length, start + batchSize);
+        List<CompletableFuture<Location>> batch = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            Vector direction = directionReferenceVectors[order[i]].clone();
+            batch.add(CompletableFuture.supplyAsync(() -> searchRunDirection(source, center, range, direction), executor));
+        }
+        return CompletableFuture.allOf(batch.toArray(new CompletableFuture[0])).handle((ignored, ex) -> {
+            for (CompletableFuture<Location> result : batch) {
+                Location spot = result.isCompletedExceptionally() ? null : result.join();
+                if (spot != null) {
+                    return spot;
+                }
+            }
+            return null;
+        }).thenCompose(spot -> spot != null ? CompletableFuture.completedFuture(spot) : planRunSpot(executor, source, center, range, order, end));
+    }
+
+    /**
+     * Gets all entities near the position that could be considered as targets.
+     * If the NPC is limited to a WorldGuard region, entities outside of the region are excluded up front.
+     */
+    public Collection<Entity> getNearbyTargetCandidates(Location pos) {
+        if (SentinelPlugin.instance.hasWorldGuard && SentinelPlugin.instance.worldGuardRegionLimitsTargets
+                && sentinel.worldguardRegion != null && !sentinel.worldguardRegion.isEmpty()) {
+            Collection<Entity> inRegion = SentinelWorldGuardHelper.getNearbyEntitiesInRegion(sentinel, pos, sentinel.range);
+            if (inRegion != null) {
+                return inRegion;
+            }
         }
-        return runTo;
+        return pos.getWorld().getNearbyEntities(pos, sentinel.range, sentinel.range, sentinel.range);
     }
 
     /**
      * This method searches for the nearest targetable entity with direct line-of-sight.
      * Failing a direct line of sight, the nearest entity in range at all will be chosen.
+     * For NPCs in a squad, rather than the nearest entity, the one with the lowest squad assignment cost is chosen (to spread fire across enemies).
      */
     public LivingEntity findBestTarget() {
         boolean ignoreGlow = itemHelper.usesSpectral(itemHelper.getHeldItem());
@@ -416,9 +651,12 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
                 return sentinel.chasing;
             }
         }
+        SentinelSquadThreatMap squadMap = SentinelSquadThreatMap.getFor(sentinel);
+        boolean assign = squadMap != null && squadMap.usesAssignment();
+        double bestCost = Double.MAX_VALUE;
         LivingEntity closest = null;
         boolean wasLos = false;
-        for (Entity loopEnt : getLivingEntity().getWorld().getNearbyEntities(pos, sentinel.range, sentinel.range, sentinel.range)) {
+        for (Entity loopEnt : getNearbyTargetCandidates(pos)) {
             if (!(loopEnt instanceof LivingEntity)) {
                 continue;
             }
@@ -430,7 +668,7 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
             tempTarget.targetID = ent.getUniqueId();
             boolean isExistingTarget = dist < crsq && dist < rangesquared && currentTargets.contains(tempTarget) && sentinel.canPathTo(ent.getLocation());
             if (isExistingTarget || (dist < rangesquared && shouldTarget(ent))) {
-                boolean hasLos = canSee(ent);
+                boolean hasLos = canSeeWithSquad(ent);
                 if (!hasLos && !isExistingTarget) {
                     continue;
                 }
@@ -439,13 +677,26 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
                     continue;
                 }
                 if (!wasLos || hasLos) {
-                    rangesquared = dist;
-                    closest = ent;
-                    wasLos = hasLos;
+                    if (assign) {
+                        double cost = squadMap.getAssignmentCost(sentinel, ent, dist);
+                        if (closest == null || hasLos != wasLos || cost < bestCost) {
+                            bestCost = cost;
+                            closest = ent;
+                            wasLos = hasLos;
+                        }
+                    }
+                    else {
+                        rangesquared = dist;
+                        closest = ent;
+                        wasLos = hasLos;
+                    }
                 }
             }
         }
         if (closest != null) {
+            if (assign) {
+                squadMap.assign(sentinel, closest);
+            }
             addTarget(closest.getUniqueId());
         }
         return closest;
@@ -483,12 +734,14 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
             SentinelTargetList toAdd = list.duplicate();
             toAdd.recalculateCacheNoClear();
             subList.add(toAdd);
-            if (SentinelPlugin.debugMe) {
+            if (sentinel.debugMe) {
                 SentinelPlugin.instance.getLogger().info("Multi-Target Debug: " + toAdd.totalTargetsCount() + " at start: " + toAdd.toMultiTargetString());
             }
         }
         Location pos = sentinel.getGuardZone();
-        for (Entity loopEnt : getLivingEntity().getWorld().getNearbyEntities(pos, sentinel.range, sentinel.range, sentinel.range)) {
+        Collection<Entity> nearby = type == TargetListType.TARGETS ? getNearbyTargetCandidates(pos)
+                : getLivingEntity().getWorld().getNearbyEntities(pos, sentinel.range, sentinel.range, sentinel.range);
+        for (Entity loopEnt : nearby) {
             if (!(loopEnt instanceof LivingEntity)) {
                 continue;
             }
@@ -504,12 +757,12 @@ public class SentinelTargetingHelper extends SentinelHelperObject {
             }
             for (SentinelTargetList lister : subList) {
                 if (lister.ifIsTargetDeleteTarget(ent)) {
-                    if (SentinelPlugin.debugMe) {
+                    if (sentinel.debugMe) {
                         SentinelPlugin.instance.getLogger().info("Multi-Target Debug: " + ent.getName() + " (" + ent.getType().name() + ") checked off for a list.");
                     }
                     lister.tempTargeted.add(ent);
                     if (lister.totalTargetsCount() == 0) {
-                        if (SentinelPlugin.debugMe) {
+                        if (sentinel.debugMe) {
                             SentinelPlugin.instance.getLogger().info("Multi-Target Debug: " + lister.totalTargetsCount() + " completed: " + lister.toMultiTargetString());
                         }
                         for (LivingEntity subEnt : lister.tempTargeted) {
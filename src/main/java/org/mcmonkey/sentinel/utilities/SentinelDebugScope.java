@@ -0,0 +1,78 @@
+package org.mcmonkey.sentinel.utilities;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+
+import java.util.HashSet;
+import java.util.UUID;
+
+/**
+ * Selects which Sentinel NPCs have debug output enabled, when not debugging all of them (see {@link SentinelPlugin#debugMe}).
+ * Each NPC caches the result in {@link SentinelTrait#debugMe}, refreshed once per update, so NPCs outside the scope pay only a single field check.
+ */
+public class SentinelDebugScope {
+
+    /**
+     * IDs of NPCs to debug.
+     */
+    public static HashSet<Integer> npcIds = new HashSet<>();
+
+    /**
+     * The player to debug NPCs near, or null if none.
+     */
+    public static UUID nearPlayer = null;
+
+    /**
+     * The radius around {@link #nearPlayer} to debug NPCs within.
+     */
+    public static double nearRadius = 16;
+
+    /**
+     * Whether any scope is set (other than debugging all NPCs).
+     */
+    public static boolean isActive() {
+        return !npcIds.isEmpty() || nearPlayer != null;
+    }
+
+    /**
+     * Returns whether debug output should be enabled for the NPC.
+     */
+    public static boolean includes(SentinelTrait sentinel) {
+        if (SentinelPlugin.debugMe) {
+            return true;
+        }
+        if (npcIds.contains(sentinel.getNPC().getId())) {
+            return true;
+        }
+        if (nearPlayer != null && sentinel.getNPC().isSpawned()) {
+            Player player = Bukkit.getPlayer(nearPlayer);
+            if (player == null) {
+                return false;
+            }
+            Location playerLocation = player.getLocation();
+            Location npcLocation = sentinel.getLivingEntity().getLocation();
+            return playerLocation.getWorld().equals(npcLocation.getWorld()) && playerLocation.distanceSquared(npcLocation) <= nearRadius * nearRadius;
+        }
+        return false;
+    }
+
+    /**
+     * Clears the scope (does not change whether all NPCs are debugged).
+     */
+    public static void clear() {
+        npcIds.clear();
+        nearPlayer = null;
+    }
+
+    /**
+     * Immediately refreshes the debug state of all NPCs, after the scope or global debug flag has changed.
+     */
+    public static void refreshAll() {
+        for (SentinelTrait sentinel : SentinelPlugin.instance.currentSentinelNPCs) {
+            sentinel.refreshDebug();
+        }
+    }
+}
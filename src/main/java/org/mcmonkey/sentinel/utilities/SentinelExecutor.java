@@ -0,0 +1,128 @@
+package org.mcmonkey.sentinel.utilities;
+
+import org.mcmonkey.sentinel.SentinelPlugin;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executor for Sentinel's blocking side work (network calls, file writes, and similar), plus a queue of results to hand back to the main thread.
+ * Uses virtual threads on Java 21+, or a small pool of platform threads otherwise.
+ * Do not use this for CPU-heavy work (see {@link SentinelPlugin#pathingExecutor} for that).
+ */
+public class SentinelExecutor {
+
+    /**
+     * The executor, or null if not started.
+     */
+    public static ExecutorService executor;
+
+    /**
+     * Whether the executor uses virtual threads.
+     */
+    public static boolean virtual = false;
+
+    /**
+     * Tasks waiting to run on the main thread.
+     */
+    public static final ConcurrentLinkedQueue<Runnable> mainThreadQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Starts the executor, with the given number of threads if virtual threads aren't available.
+     */
+    public static void start(int platformThreads) {
+        try {
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            virtual = true;
+            return;
+        }
+        catch (NoSuchMethodException ex) {
+            // Java 20 and older, fall through.
+        }
+        catch (Throwable ex) {
+            SentinelPlugin.instance.getLogger().warning("Failed to create virtual thread executor, using platform threads: " + ex.getMessage());
+        }
+        AtomicInteger threadId = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(Math.max(1, platformThreads), Math.max(1, platformThreads), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), (runnable) -> {
+            Thread thread = new Thread(runnable, "Sentinel-Worker-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+        virtual = false;
+    }
+
+    /**
+     * Stops the executor, waiting briefly for running tasks to finish. Tasks still queued for the main thread are dropped.
+     */
+    public static void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        }
+        catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        mainThreadQueue.clear();
+    }
+
+    /**
+     * Runs a task on the shared executor (or immediately on the calling thread, if the executor isn't running).
+     */
+    public static void runAsync(Runnable task) {
+        ExecutorService current = executor;
+        if (current != null) {
+            try {
+                current.execute(() -> {
+                    try {
+                        task.run();
+                    }
+                    catch (Throwable ex) {
+                        ex.printStackTrace();
+                    }
+                });
+                return;
+            }
+            catch (RejectedExecutionException ex) {
+                // Shutting down, fall through.
+            }
+        }
+        task.run();
+    }
+
+    /**
+     * Queues a task to run on the main thread, during the next tick. Safe to call from any thread.
+     */
+    public static void runOnMainThread(Runnable task) {
+        mainThreadQueue.add(task);
+    }
+
+    /**
+     * Runs the tasks queued for the main thread. Called once per tick.
+     * Tasks queued while draining wait for the next tick.
+     */
+    public static void drainMainThreadQueue() {
+        int count = mainThreadQueue.size();
+        for (int i = 0; i < count; i++) {
+            Runnable task = mainThreadQueue.poll();
+            if (task == null) {
+                return;
+            }
+            try {
+                task.run();
+            }
+            catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
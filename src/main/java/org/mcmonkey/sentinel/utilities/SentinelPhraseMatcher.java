@@ -0,0 +1,166 @@
+package org.mcmonkey.sentinel.utilities;
+
+import java.util.*;
+
+/**
+ * Finds every occurrence of a fixed set of phrases in a text in a single pass (an Aho-Corasick automaton).
+ * Immutable once built, so can be safely used from any thread.
+ */
+public class SentinelPhraseMatcher {
+
+    /**
+     * Receives matches found by {@link #match(String, Listener)}.
+     */
+    public interface Listener {
+
+        /**
+         * Called for each match of a phrase (by its index in the original phrase list), starting at the given index of the text.
+         * Return false to stop matching.
+         */
+        boolean found(int phrase, int start);
+    }
+
+    /**
+     * Sorted transition characters of each state.
+     */
+    private final char[][] keys;
+
+    /**
+     * Target states for each transition character, parallel to {@link #keys}.
+     */
+    private final int[][] next;
+
+    /**
+     * Fallback state of each state, for when no transition matches.
+     */
+    private final int[] fail;
+
+    /**
+     * Phrases that end at each state (including those of its fallback states).
+     */
+    private final int[][] outputs;
+
+    /**
+     * Length of each phrase.
+     */
+    private final int[] lengths;
+
+    /**
+     * Builds a matcher for a list of phrases. Empty phrases are never matched.
+     */
+    public SentinelPhraseMatcher(List<String> phrases) {
+        ArrayList<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        ArrayList<ArrayList<Integer>> ends = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ends.add(new ArrayList<>());
+        lengths = new int[phrases.size()];
+        for (int i = 0; i < phrases.size(); i++) {
+            String phrase = phrases.get(i);
+            lengths[i] = phrase.length();
+            if (phrase.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int c = 0; c < phrase.length(); c++) {
+                Integer target = trie.get(state).get(phrase.charAt(c));
+                if (target == null) {
+                    target = trie.size();
+                    trie.add(new TreeMap<>());
+                    ends.add(new ArrayList<>());
+                    trie.get(state).put(phrase.charAt(c), target);
+                }
+                state = target;
+            }
+            ends.get(state).add(i);
+        }
+        int stateCount = trie.size();
+        keys = new char[stateCount][];
+        next = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            TreeMap<Character, Integer> transitions = trie.get(state);
+            keys[state] = new char[transitions.size()];
+            next[state] = new int[transitions.size()];
+            int index = 0;
+            for (Map.Entry<Character, Integer> entry : transitions.entrySet()) {
+                keys[state][index] = entry.getKey();
+                next[state][index] = entry.getValue();
+                index++;
+            }
+        }
+        fail = new int[stateCount];
+        outputs = new int[stateCount][];
+        outputs[0] = new int[0];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : next[0]) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            ArrayList<Integer> stateEnds = ends.get(state);
+            int[] inherited = outputs[fail[state]];
+            int[] output = new int[stateEnds.size() + inherited.length];
+            for (int i = 0; i < stateEnds.size(); i++) {
+                output[i] = stateEnds.get(i);
+            }
+            System.arraycopy(inherited, 0, output, stateEnds.size(), inherited.length);
+            outputs[state] = output;
+            for (int i = 0; i < keys[state].length; i++) {
+                int child = next[state][i];
+                int fallback = fail[state];
+                int target = step(fallback, keys[state][i]);
+                while (target == -1 && fallback != 0) {
+                    fallback = fail[fallback];
+                    target = step(fallback, keys[state][i]);
+                }
+                fail[child] = target == -1 ? 0 : target;
+                queue.add(child);
+            }
+        }
+    }
+
+    private int step(int state, char c) {
+        int index = Arrays.binarySearch(keys[state], c);
+        return index < 0 ? -1 : next[state][index];
+    }
+
+    /**
+     * Returns whether the matcher has any (non-empty) phrases.
+     */
+    public boolean isEmpty() {
+        return keys[0].length == 0;
+    }
+
+    /**
+     * Finds all phrase matches in the text, passing each to the listener.
+     */
+    public void match(String text, Listener listener) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int target = step(state, c);
+            while (target == -1 && state != 0) {
+                state = fail[state];
+                target = step(state, c);
+            }
+            state = target == -1 ? 0 : target;
+            for (int phrase : outputs[state]) {
+                if (!listener.found(phrase, i + 1 - lengths[phrase])) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the set of phrases (by index) that occur anywhere in the text.
+     */
+    public BitSet findAll(String text) {
+        BitSet result = new BitSet(lengths.length);
+        match(text, (phrase, start) -> {
+            result.set(phrase);
+            return true;
+        });
+        return result;
+    }
+}
@@ -0,0 +1,175 @@
+package org.mcmonkey.sentinel.utilities;
+
+import net.citizensnpcs.api.astar.pathfinder.BlockSource;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelUtilities;
+import org.mcmonkey.sentinel.metrics.SentinelMetrics;
+
+import java.util.HashMap;
+
+/**
+ * A pathfinder block source that reads from chunk snapshots captured in advance (on the main thread),
+ * so that pathfinding can safely run on a worker thread.
+ * Blocks outside the captured area (or in unloaded chunks) read as solid, to keep paths within the known area.
+ * Live {@link Block} access is not supported, as it would read the world off the main thread.
+ */
+public class SentinelSnapshotBlockSource extends BlockSource {
+
+    /**
+     * How long (in ticks) a captured chunk snapshot may be reused for.
+     */
+    public static final long SNAPSHOT_MAX_AGE = 20;
+
+    /**
+     * Represents a captured chunk snapshot and when it was captured.
+     */
+    public static class CachedSnapshot {
+
+        /**
+         * The snapshot itself.
+         */
+        public ChunkSnapshot snapshot;
+
+        /**
+         * The server tick the snapshot was captured on.
+         */
+        public long tick;
+    }
+
+    /**
+     * Cache of recently captured chunk snapshots, keyed by world name and chunk coordinates.
+     * Only ever accessed from the main thread.
+     */
+    public static HashMap<String, CachedSnapshot> snapshotCache = new HashMap<>();
+
+    /**
+     * Material and block data to return for anything outside the captured area.
+     */
+    private static Material outsideMaterial = Material.BEDROCK;
+
+    private static BlockData outsideData;
+
+    /**
+     * Gets a (possibly cached) snapshot of a loaded chunk, or null if the chunk is not loaded.
+     * Must be called from the main thread.
+     */
+    public static ChunkSnapshot getSnapshot(World world, int chunkX, int chunkZ) {
+        if (!world.isChunkLoaded(chunkX, chunkZ)) {
+            return null;
+        }
+        long now = SentinelPlugin.instance.tickTimeTotal;
+        String key = world.getName() + "," + chunkX + "," + chunkZ;
+        CachedSnapshot cached = snapshotCache.get(key);
+        if (cached != null && cached.tick + SNAPSHOT_MAX_AGE >= now) {
+            SentinelMetrics.snapshotHits.increment();
+            return cached.snapshot;
+        }
+        SentinelMetrics.snapshotMisses.increment();
+        if (cached == null) {
+            cached = new CachedSnapshot();
+            snapshotCache.put(key, cached);
+        }
+        cached.snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+        cached.tick = now;
+        return cached.snapshot;
+    }
+
+    /**
+     * Removes any outdated snapshots from the cache.
+     */
+    public static void purgeStale() {
+        long now = SentinelPlugin.instance.tickTimeTotal;
+        snapshotCache.values().removeIf(cached -> cached.tick + SNAPSHOT_MAX_AGE < now);
+    }
+
+    /**
+     * The world this source represents.
+     */
+    public World world;
+
+    /**
+     * Captured snapshots, indexed as [chunkX - minChunkX][chunkZ - minChunkZ].
+     */
+    public ChunkSnapshot[][] snapshots;
+
+    /**
+     * The lowest chunk coordinates captured.
+     */
+    public int minChunkX, minChunkZ;
+
+    /**
+     * The world height limits.
+     */
+    public int minY, maxY;
+
+    /**
+     * Captures a block source around a center location, within a radius.
+     * Must be constructed on the main thread.
+     */
+    public SentinelSnapshotBlockSource(Location center, double radius) {
+        world = center.getWorld();
+        if (outsideData == null) {
+            outsideData = outsideMaterial.createBlockData();
+        }
+        minChunkX = ((int) Math.floor(center.getX() - radius)) >> 4;
+        minChunkZ = ((int) Math.floor(center.getZ() - radius)) >> 4;
+        int maxChunkX = ((int) Math.floor(center.getX() + radius)) >> 4;
+        int maxChunkZ = ((int) Math.floor(center.getZ() + radius)) >> 4;
+        snapshots = new ChunkSnapshot[maxChunkX - minChunkX + 1][maxChunkZ - minChunkZ + 1];
+        for (int x = 0; x < snapshots.length; x++) {
+            for (int z = 0; z < snapshots[x].length; z++) {
+                snapshots[x][z] = getSnapshot(world, minChunkX + x, minChunkZ + z);
+            }
+        }
+        minY = SentinelUtilities.getMinWorldHeight(world);
+        maxY = SentinelUtilities.getMaxWorldHeight(world);
+    }
+
+    /**
+     * Gets the snapshot holding a block position, or null if outside the captured area.
+     */
+    public ChunkSnapshot getSnapshotFor(int x, int y, int z) {
+        if (y < minY || y >= maxY) {
+            return null;
+        }
+        int chunkX = (x >> 4) - minChunkX, chunkZ = (z >> 4) - minChunkZ;
+        if (chunkX < 0 || chunkZ < 0 || chunkX >= snapshots.length || chunkZ >= snapshots[chunkX].length) {
+            return null;
+        }
+        return snapshots[chunkX][chunkZ];
+    }
+
+    @Override
+    public BlockData getBlockDataAt(int x, int y, int z) {
+        ChunkSnapshot snapshot = getSnapshotFor(x, y, z);
+        if (snapshot == null) {
+            return outsideData;
+        }
+        return snapshot.getBlockData(x & 15, y, z & 15);
+    }
+
+    @Override
+    public Material getMaterialAt(int x, int y, int z) {
+        ChunkSnapshot snapshot = getSnapshotFor(x, y, z);
+        if (snapshot == null) {
+            return outsideMaterial;
+        }
+        return snapshot.getBlockType(x & 15, y, z & 15);
+    }
+
+    @Override
+    public Block getBlockAt(int x, int y, int z) {
+        throw new UnsupportedOperationException("Snapshot block sources can't read live blocks (at " + x + "," + y + "," + z + ")");
+    }
+
+    @Override
+    public World getWorld() {
+        return world;
+    }
+}
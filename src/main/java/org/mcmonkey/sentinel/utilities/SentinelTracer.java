@@ -0,0 +1,282 @@
+package org.mcmonkey.sentinel.utilities;
+
+import org.bukkit.command.CommandSender;
+import org.mcmonkey.sentinel.SentinelPlugin;
+import org.mcmonkey.sentinel.SentinelTrait;
+import org.mcmonkey.sentinel.commands.SentinelCommand;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A low-overhead structured trace of Sentinel NPC activity, as an alternative to logging debug output to the console.
+ * Each thread writes compact records (NPC ID, event code, one numeric argument, and an optional message) into its own ring buffer,
+ * without any locking. Records are only formatted to text when dumped, on a separate thread.
+ */
+public class SentinelTracer {
+
+    /**
+     * Types of trace event, each with a category that can be filtered on.
+     */
+    public enum Code {
+        MESSAGE("debug"),
+        UPDATE("update"),
+        DORMANCY("update"),
+        TARGET_ACQUIRED("targeting"),
+        LINE_OF_SIGHT("targeting"),
+        PATH_REQUEST("movement"),
+        PROJECTILE("combat");
+
+        /**
+         * The category name of this code.
+         */
+        public final String category;
+
+        Code(String category) {
+            this.category = category;
+        }
+    }
+
+    /**
+     * A single thread's ring buffer of trace records.
+     */
+    public static class Ring {
+
+        public final String threadName;
+
+        /**
+         * The trace session (see {@link SentinelTracer#generation}) this ring was created for.
+         */
+        public final int generation;
+
+        public final long[] times, ticks, args;
+
+        public final int[] npcIds;
+
+        public final Code[] codes;
+
+        public final Object[] messages;
+
+        public final int mask;
+
+        /**
+         * Total count of records ever written (the next slot is 'written & mask').
+         */
+        public volatile long written = 0;
+
+        public Ring(String threadName, int generation, int size) {
+            this.threadName = threadName;
+            this.generation = generation;
+            times = new long[size];
+            ticks = new long[size];
+            args = new long[size];
+            npcIds = new int[size];
+            codes = new Code[size];
+            messages = new Object[size];
+            mask = size - 1;
+        }
+
+        /**
+         * Writes a record. Must only be called from the thread that owns this ring.
+         */
+        public void write(int npcId, Code code, long arg, Object message) {
+            long position = written;
+            int slot = (int) (position & mask);
+            times[slot] = System.currentTimeMillis();
+            ticks[slot] = SentinelPlugin.instance.tickTimeTotal;
+            npcIds[slot] = npcId;
+            codes[slot] = code;
+            args[slot] = arg;
+            messages[slot] = message;
+            written = position + 1;
+        }
+    }
+
+    /**
+     * Whether tracing is currently active.
+     */
+    public static volatile boolean enabled = false;
+
+    /**
+     * If not empty, only these NPC IDs are traced.
+     */
+    public static volatile Set<Integer> npcFilter = Collections.emptySet();
+
+    /**
+     * If not empty, only these categories are traced.
+     */
+    public static volatile Set<String> categoryFilter = Collections.emptySet();
+
+    /**
+     * Size of each thread's ring buffer (a power of two).
+     */
+    public static volatile int bufferSize = 65536;
+
+    /**
+     * The current trace session, incremented by each start. Rings from older sessions are ignored, and replaced by their thread on its next write.
+     */
+    public static volatile int generation = 0;
+
+    /**
+     * All rings that have been created (one per thread that has written a record).
+     */
+    public static final List<Ring> rings = new CopyOnWriteArrayList<>();
+
+    private static final ThreadLocal<Ring> localRing = new ThreadLocal<>();
+
+    /**
+     * Gets the calling thread's ring for the current session, creating it if needed.
+     */
+    private static Ring getRing() {
+        Ring ring = localRing.get();
+        int current = generation;
+        if (ring == null || ring.generation != current) {
+            ring = new Ring(Thread.currentThread().getName(), current, bufferSize);
+            rings.add(ring);
+            localRing.set(ring);
+        }
+        return ring;
+    }
+
+    /**
+     * Returns whether debug messages of the NPC are currently traced (used to enable debug output for just the traced NPCs).
+     */
+    public static boolean tracesDebug(SentinelTrait sentinel) {
+        if (!enabled) {
+            return false;
+        }
+        Set<Integer> npcs = npcFilter;
+        Set<String> categories = categoryFilter;
+        return (npcs.isEmpty() || npcs.contains(sentinel.getNPC().getId())) && (categories.isEmpty() || categories.contains(Code.MESSAGE.category));
+    }
+
+    /**
+     * Records a trace event for an NPC, if tracing is enabled and the event passes the filters.
+     */
+    public static void record(SentinelTrait sentinel, Code code, long arg, Object message) {
+        if (!enabled) {
+            return;
+        }
+        int npcId = sentinel == null ? -1 : sentinel.getNPC().getId();
+        if (!npcFilter.isEmpty() && !npcFilter.contains(npcId)) {
+            return;
+        }
+        if (!categoryFilter.isEmpty() && !categoryFilter.contains(code.category)) {
+            return;
+        }
+        getRing().write(npcId, code, arg, message);
+    }
+
+    /**
+     * Starts tracing with the given filters (empty sets to trace everything). Previous buffers are discarded.
+     * Threads still writing to a previous buffer are not disturbed: each thread switches to a new buffer on its next write.
+     */
+    public static void start(Set<Integer> npcs, Set<String> categories, int size) {
+        enabled = false;
+        bufferSize = Integer.highestOneBit(Math.max(1024, size));
+        npcFilter = npcs;
+        categoryFilter = categories;
+        int current = ++generation;
+        rings.removeIf(ring -> ring.generation != current);
+        enabled = true;
+    }
+
+    /**
+     * Stops tracing (buffers are kept until the next start, so they can still be dumped).
+     */
+    public static void stop() {
+        enabled = false;
+    }
+
+    /**
+     * Formats one record argument as text.
+     */
+    private static String describe(Code code, long arg, Object message) {
+        switch (code) {
+            case MESSAGE:
+                return String.valueOf(message);
+            case UPDATE:
+                return "update took " + (arg / 1000) + "us";
+            case DORMANCY:
+                return arg == 1 ? "going dormant" : "waking up";
+            case TARGET_ACQUIRED:
+                return "acquired target, entity id " + arg;
+            case LINE_OF_SIGHT:
+                return "line of sight check to entity id " + (arg >> 1) + ": " + ((arg & 1) == 1 ? "visible" : "blocked");
+            case PATH_REQUEST:
+                return "path request: " + message + (arg == 0 ? "" : ", entity id " + arg);
+            case PROJECTILE:
+                return "fired " + message;
+        }
+        return code.name() + " " + arg;
+    }
+
+    /**
+     * Copies the current buffers (on the calling thread), then formats them to a file in the 'traces' folder on a separate thread.
+     * Reports the result to the sender.
+     * Other threads may keep writing while their buffer is copied, so any records they overwrote (or may have been overwriting) during the copy are discarded.
+     */
+    public static void dump(CommandSender sender) {
+        ArrayList<long[]> order = new ArrayList<>();
+        ArrayList<Object[]> records = new ArrayList<>();
+        int current = generation;
+        for (Ring ring : rings) {
+            if (ring.generation != current) {
+                continue;
+            }
+            long written = ring.written;
+            long first = Math.max(0, written - ring.times.length);
+            int start = records.size();
+            for (long position = first; position < written; position++) {
+                int slot = (int) (position & ring.mask);
+                order.add(new long[] { ring.times[slot], ring.ticks[slot], ring.npcIds[slot], ring.args[slot], records.size(), position });
+                records.add(new Object[] { ring.threadName, ring.codes[slot], ring.messages[slot] });
+            }
+            // A record may be part-way through being written over the oldest remaining slot, so that slot is treated as overwritten too.
+            long firstIntact = ring.written + 1 - ring.times.length;
+            if (firstIntact > first) {
+                for (int i = start; i < records.size(); i++) {
+                    if (order.get(i)[5] < firstIntact) {
+                        records.set(i, null);
+                    }
+                }
+            }
+        }
+        order.removeIf(entry -> records.get((int) entry[4]) == null);
+        File folder = new File(SentinelPlugin.instance.getDataFolder(), "traces");
+        File file = new File(folder, "trace-" + new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date()) + ".log");
+        SentinelExecutor.runAsync(() -> {
+            String result;
+            try {
+                folder.mkdirs();
+                order.sort(Comparator.comparingLong((long[] entry) -> entry[1]).thenComparingLong(entry -> entry[0]));
+                SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+                try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                    for (long[] entry : order) {
+                        Object[] record = records.get((int) entry[4]);
+                        Code code = (Code) record[1];
+                        if (code == null) {
+                            continue;
+                        }
+                        writer.write(timeFormat.format(new Date(entry[0])) + " tick " + entry[1] + " [" + record[0] + "] npc " + entry[2]
+                                + " " + code.category + ": " + describe(code, entry[3], record[2]));
+                        writer.newLine();
+                    }
+                }
+                result = SentinelCommand.prefixGood + "Wrote " + order.size() + " trace records to " + file.getPath();
+            }
+            catch (Exception ex) {
+                ex.printStackTrace();
+                result = SentinelCommand.prefixBad + "Failed to write trace dump: " + ex.getMessage();
+            }
+            final String message = result;
+            SentinelExecutor.runOnMainThread(() -> sender.sendMessage(message));
+        });
+    }
+}
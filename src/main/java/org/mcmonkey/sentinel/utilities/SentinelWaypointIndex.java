@@ -0,0 +1,249 @@
+package org.mcmonkey.sentinel.utilities;
+
+import net.citizensnpcs.trait.waypoint.WanderWaypointProvider;
+import net.citizensnpcs.trait.waypoint.Waypoint;
+import net.citizensnpcs.trait.waypoint.WaypointProvider;
+import org.bukkit.Location;
+import org.mcmonkey.sentinel.SentinelPlugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A per-NPC spatial index (a uniform grid of cells) over the NPC's waypoints, for fast nearest-waypoint lookups.
+ * The index is rebuilt when the waypoint provider or its list of waypoints changes.
+ */
+public class SentinelWaypointIndex {
+
+    /**
+     * The width (in blocks) of one grid cell.
+     */
+    public static final int CELL_SIZE = 16;
+
+    /**
+     * How often (in ticks) to re-check the waypoint list for changes.
+     */
+    public static final long CHANGE_CHECK_RATE = 20;
+
+    /**
+     * Represents the indexed waypoints within one world.
+     */
+    public static class WorldCells {
+
+        /**
+         * Map of packed cell coordinates to the waypoint locations within that cell.
+         */
+        public HashMap<Long, ArrayList<Location>> cells = new HashMap<>();
+
+        /**
+         * All waypoint locations in the world, for a linear scan when the grid search would be slower.
+         */
+        public ArrayList<Location> all = new ArrayList<>();
+
+        /**
+         * The bounds of populated cells.
+         */
+        public int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        /**
+         * Adds a location to the relevant cell.
+         */
+        public void add(Location loc) {
+            int x = cellCoord(loc.getX()), z = cellCoord(loc.getZ());
+            cells.computeIfAbsent(packCell(x, z), (k) -> new ArrayList<>()).add(loc);
+            all.add(loc);
+            minX = Math.min(minX, x);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        /**
+         * Finds the nearest location to the given base location that is closer than the given squared distance, or null if none.
+         * Searches outward ring-by-ring from the base cell, falling back to a linear scan once more cells have been probed than there are waypoints
+         * (eg when the base location is far from every waypoint).
+         */
+        public Location nearest(Location base, double maxDistSquared) {
+            int baseX = cellCoord(base.getX()), baseZ = cellCoord(base.getZ());
+            int maxRing = Math.max(Math.max(Math.abs(baseX - minX), Math.abs(baseX - maxX)), Math.max(Math.abs(baseZ - minZ), Math.abs(baseZ - maxZ)));
+            maxRing = (int) Math.min(maxRing, Math.ceil(Math.sqrt(maxDistSquared) / CELL_SIZE));
+            Location nearest = null;
+            double dist = maxDistSquared;
+            int probes = 0;
+            for (int ring = 0; ring <= maxRing; ring++) {
+                for (int x = baseX - ring; x <= baseX + ring; x++) {
+                    boolean edgeX = x == baseX - ring || x == baseX + ring;
+                    for (int z = baseZ - ring; z <= baseZ + ring; z += (edgeX || ring == 0) ? 1 : ring * 2) {
+                        if (++probes > all.size()) {
+                            return nearestLinear(base, maxDistSquared);
+                        }
+                        ArrayList<Location> cell = cells.get(packCell(x, z));
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (Location loc : cell) {
+                            double d = base.distanceSquared(loc);
+                            if (d < dist) {
+                                dist = d;
+                                nearest = loc;
+                            }
+                        }
+                    }
+                }
+                // Anything in a further ring is at least this far away horizontally.
+                double ringDist = ring * (double) CELL_SIZE;
+                if (nearest != null && dist <= ringDist * ringDist) {
+                    break;
+                }
+            }
+            return nearest;
+        }
+
+        /**
+         * Finds the nearest location to the given base location that is closer than the given squared distance, or null if none, by checking every location.
+         */
+        public Location nearestLinear(Location base, double maxDistSquared) {
+            Location nearest = null;
+            double dist = maxDistSquared;
+            for (Location loc : all) {
+                double d = base.distanceSquared(loc);
+                if (d < dist) {
+                    dist = d;
+                    nearest = loc;
+                }
+            }
+            return nearest;
+        }
+    }
+
+    /**
+     * Gets the cell coordinate for a block coordinate.
+     */
+    public static int cellCoord(double coord) {
+        return (int) Math.floor(coord / CELL_SIZE);
+    }
+
+    /**
+     * Packs two cell coordinates into a single map key.
+     */
+    public static long packCell(int x, int z) {
+        return (((long) x) << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The waypoint provider the index was built from.
+     */
+    public WaypointProvider provider;
+
+    /**
+     * A signature of the waypoint list the index was built from.
+     */
+    public int signature;
+
+    /**
+     * The server tick the waypoint list was last checked for changes.
+     */
+    public long lastCheckTick = -1;
+
+    /**
+     * Map of world names to the indexed waypoints in that world.
+     */
+    public HashMap<String, WorldCells> worlds = new HashMap<>();
+
+    /**
+     * The location of the last lookup.
+     */
+    public Location lastQuery;
+
+    /**
+     * The result of the last lookup.
+     */
+    public Location lastResult;
+
+    /**
+     * Gets the list of waypoint locations from a provider, or null if the provider is not supported.
+     */
+    public static ArrayList<Location> getLocations(WaypointProvider provider) {
+        ArrayList<Location> result = new ArrayList<>();
+        if (provider instanceof WaypointProvider.EnumerableWaypointProvider) {
+            for (Waypoint wayp : ((WaypointProvider.EnumerableWaypointProvider) provider).waypoints()) {
+                result.add(wayp.getLocation());
+            }
+        }
+        else if (provider instanceof WanderWaypointProvider) {
+            for (Location loc : ((WanderWaypointProvider) provider).getRegionCentres()) {
+                result.add(loc);
+            }
+        }
+        else {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Computes a signature for a list of locations, that changes if any location is added, removed, or moved.
+     */
+    public static int computeSignature(ArrayList<Location> locations) {
+        int result = locations.size();
+        for (Location loc : locations) {
+            result = result * 31 + (loc.getWorld() == null ? 0 : loc.getWorld().getName().hashCode());
+            result = result * 31 + Double.hashCode(loc.getX());
+            result = result * 31 + Double.hashCode(loc.getY());
+            result = result * 31 + Double.hashCode(loc.getZ());
+        }
+        return result;
+    }
+
+    /**
+     * Rebuilds the index if the provider or its waypoints have changed since it was last built.
+     * Returns false if the provider is not supported.
+     */
+    public boolean update(WaypointProvider newProvider) {
+        long now = SentinelPlugin.instance.tickTimeTotal;
+        if (newProvider == provider && lastCheckTick + CHANGE_CHECK_RATE > now) {
+            return true;
+        }
+        lastCheckTick = now;
+        ArrayList<Location> locations = getLocations(newProvider);
+        if (locations == null) {
+            provider = null;
+            worlds.clear();
+            return false;
+        }
+        int newSignature = computeSignature(locations);
+        if (newProvider == provider && newSignature == signature) {
+            return true;
+        }
+        provider = newProvider;
+        signature = newSignature;
+        lastQuery = null;
+        lastResult = null;
+        worlds.clear();
+        for (Location loc : locations) {
+            if (loc.getWorld() == null) {
+                continue;
+            }
+            worlds.computeIfAbsent(loc.getWorld().getName(), (k) -> new WorldCells()).add(loc);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the nearest waypoint location of a provider to a base location, if closer than the given squared distance.
+     * Reuses the previous result if the base location has moved less than a block since the last lookup.
+     * Returns null if there are no waypoints that close in the base location's world, or the provider is not supported.
+     */
+    public Location nearest(WaypointProvider newProvider, Location base, double maxDistSquared) {
+        if (!update(newProvider)) {
+            return null;
+        }
+        if (lastQuery != null && lastQuery.getWorld().equals(base.getWorld()) && lastQuery.distanceSquared(base) < 1) {
+            return lastResult;
+        }
+        WorldCells cells = worlds.get(base.getWorld().getName());
+        lastQuery = base.clone();
+        lastResult = cells == null ? null : cells.nearest(base, maxDistSquared);
+        return lastResult;
+    }
+}
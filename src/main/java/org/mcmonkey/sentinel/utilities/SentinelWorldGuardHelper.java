@@ -2,16 +2,24 @@ package org.mcmonkey.sentinel.utilities;
 
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldguard.WorldGuard;
+import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.GlobalProtectedRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedCuboidRegion;
 import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.entity.Entity;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.mcmonkey.sentinel.SentinelPlugin;
 import org.mcmonkey.sentinel.SentinelTrait;
 import org.mcmonkey.sentinel.events.SentinelWantsToPathEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SentinelWorldGuardHelper implements Listener {
 
     public SentinelWorldGuardHelper() {
@@ -39,14 +47,113 @@ public class SentinelWorldGuardHelper implements Listener {
         return (ProtectedRegion) sentinel.worldguardRegionCache;
     }
 
-    @EventHandler
-    public void onWantsPath(SentinelWantsToPathEvent event) {
-        SentinelTrait sentinel = event.getNPC().getOrAddTrait(SentinelTrait.class);
+    /**
+     * Cached axis-aligned bounding box of a region, used to quickly reject locations outside the region.
+     */
+    public static class RegionBounds {
+
+        /**
+         * The region these bounds are for.
+         */
+        public ProtectedRegion region;
+
+        /**
+         * The block bounds of the region (inclusive).
+         */
+        public int minX, minY, minZ, maxX, maxY, maxZ;
+
+        /**
+         * Whether the region is exactly its bounding box (so no further check is needed after the box check).
+         */
+        public boolean isCuboid;
+
+        /**
+         * Whether the region has no meaningful bounds (eg the global region), so the box check must be skipped.
+         */
+        public boolean unbounded;
+
+        public RegionBounds(ProtectedRegion region) {
+            this.region = region;
+            unbounded = region instanceof GlobalProtectedRegion;
+            isCuboid = region instanceof ProtectedCuboidRegion;
+            BlockVector3 min = region.getMinimumPoint(), max = region.getMaximumPoint();
+            minX = min.getBlockX();
+            minY = min.getBlockY();
+            minZ = min.getBlockZ();
+            maxX = max.getBlockX();
+            maxY = max.getBlockY();
+            maxZ = max.getBlockZ();
+        }
+
+        /**
+         * Returns whether the block location is within the region.
+         */
+        public boolean contains(Location loc) {
+            if (unbounded) {
+                return region.contains(BukkitAdapter.asBlockVector(loc));
+            }
+            int x = loc.getBlockX(), y = loc.getBlockY(), z = loc.getBlockZ();
+            if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+                return false;
+            }
+            return isCuboid || region.contains(x, y, z);
+        }
+    }
+
+    /**
+     * Gets the cached bounds of the WorldGuard region a Sentinel is limited to (if any).
+     */
+    public static RegionBounds getBoundsFor(SentinelTrait sentinel) {
         ProtectedRegion region = getRegionFor(sentinel);
         if (region == null) {
-            return;
+            return null;
+        }
+        RegionBounds bounds = (RegionBounds) sentinel.worldguardRegionBoundsCache;
+        if (bounds == null || bounds.region != region) {
+            bounds = new RegionBounds(region);
+            sentinel.worldguardRegionBoundsCache = bounds;
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns whether a location is within the WorldGuard region a Sentinel is limited to (or true if it has no region limit).
+     */
+    public static boolean isInRegion(SentinelTrait sentinel, Location loc) {
+        RegionBounds bounds = getBoundsFor(sentinel);
+        return bounds == null || bounds.contains(loc);
+    }
+
+    /**
+     * Gets all entities within range of a center location that are also within the WorldGuard region a Sentinel is limited to.
+     * The entity query is clipped to the overlap of the range and the region's bounding box.
+     * Returns null if the Sentinel has no (bounded) region limit.
+     */
+    public static List<Entity> getNearbyEntitiesInRegion(SentinelTrait sentinel, Location center, double range) {
+        RegionBounds bounds = getBoundsFor(sentinel);
+        if (bounds == null || bounds.unbounded) {
+            return null;
         }
-        if (!region.contains(BukkitAdapter.asBlockVector(event.destination))) {
+        ArrayList<Entity> result = new ArrayList<>();
+        double minX = Math.max(center.getX() - range, bounds.minX), maxX = Math.min(center.getX() + range, bounds.maxX + 1);
+        double minY = Math.max(center.getY() - range, bounds.minY), maxY = Math.min(center.getY() + range, bounds.maxY + 1);
+        double minZ = Math.max(center.getZ() - range, bounds.minZ), maxZ = Math.min(center.getZ() + range, bounds.maxZ + 1);
+        if (minX > maxX || minY > maxY || minZ > maxZ) {
+            return result;
+        }
+        Location middle = new Location(center.getWorld(), (minX + maxX) * 0.5, (minY + maxY) * 0.5, (minZ + maxZ) * 0.5);
+        for (Entity entity : center.getWorld().getNearbyEntities(middle, (maxX - minX) * 0.5, (maxY - minY) * 0.5, (maxZ - minZ) * 0.5)) {
+            if (bounds.contains(entity.getLocation())) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    @EventHandler
+    public void onWantsPath(SentinelWantsToPathEvent event) {
+        SentinelTrait sentinel = event.getNPC().getOrAddTrait(SentinelTrait.class);
+        if (!isInRegion(sentinel, event.destination)) {
             event.setCancelled(true);
         }
     }